@@ -0,0 +1,93 @@
+package ru.psavinov.chile.earthquake;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Streaming EMSC parser against the line-based path of the first release, on
+ * the bundled export and on a synthetic 10M rows export. Both read the input
+ * from the same source, the legacy path materialises all lines first, like it
+ * always did.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EmscParserBenchmark {
+
+	/**
+	 * "bundled" or synthetic rows count
+	 */
+	@Param({ "bundled", "10000000" })
+	public String data;
+
+	private byte[] bytes;
+	private File file;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		if ("bundled".equals(data)) {
+			bytes = Synthetic.bundled();
+		} else {
+			file = Synthetic.csv(Integer.parseInt(data));
+		}
+	}
+
+	@Benchmark
+	public EarthquakeCatalog streaming() throws Exception {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		InputStream stream = open();
+		try {
+			new EmscParser(catalog).parse(stream);
+		} finally {
+			stream.close();
+		}
+		return catalog;
+	}
+
+	@Benchmark
+	public Set<Earthquake> legacy() throws Exception {
+		Set<Earthquake> earthquakes = new HashSet<Earthquake>();
+		InputStream stream = open();
+		try {
+			List<String> lines = IOUtils.readLines(stream, "UTF-8");
+			Legacy.parseStrings(lines, earthquakes);
+		} finally {
+			stream.close();
+		}
+		return earthquakes;
+	}
+
+	/* private members goes below */
+
+	private InputStream open() throws Exception {
+		return bytes != null ? new ByteArrayInputStream(bytes)
+				: new FileInputStream(file);
+	}
+
+}
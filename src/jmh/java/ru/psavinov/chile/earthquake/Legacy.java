@@ -0,0 +1,71 @@
+package ru.psavinov.chile.earthquake;
+
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Set;
+
+import ru.psavinov.chile.earthquake.exception.UnknownRegionException;
+
+/**
+ * Ingestion path of the first release, kept as the benchmarks baseline: lines
+ * are split by regular expression, dates parsed by SimpleDateFormat and
+ * regions resolved by a substring scan over all region names.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+final class Legacy {
+
+	private Legacy() {
+	}
+
+	/**
+	 * Parse lines into the set, like EarthquakeBase.parseStrings did
+	 */
+	static void parseStrings(List<String> strings, Set<Earthquake> earthquakes)
+			throws Exception {
+		SimpleDateFormat dateFormat = new SimpleDateFormat(
+				"yyyy-MM-dd HH:mm:ss");
+		for (String string : strings) {
+			if (!string.toUpperCase().contains("WEST CHILE")
+					&& !string.toUpperCase().contains("DATE")) {
+				String[] array = string.split("\\;");
+				Earthquake quake = new Earthquake();
+				quake.setDateTime(dateFormat.parse(array[0].concat(" ").concat(
+						array[1])));
+				quake.setLatitude(Double.valueOf(array[2]));
+				quake.setLongitude(Double.valueOf(array[3]));
+				quake.setDepth(Double.valueOf(array[4]));
+				quake.setScaleType(ScaleType.getScaleType(array[6]));
+				quake.setMagnitude(Double.valueOf(array[7]));
+				quake.setRegion(getRegion(array[8]));
+				if (!earthquakes.contains(quake)) {
+					earthquakes.add(quake);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resolve region like Region.getRegion did, first region with a name
+	 * contained in the label wins
+	 */
+	static Region getRegion(String string) throws UnknownRegionException {
+		string = string.toUpperCase().trim();
+		for (Region r : Region.values()) {
+			if (string.contains(r.name().toUpperCase())) {
+				return r;
+			}
+			if (r.getNames() != null && r.getNames().length > 0) {
+				for (String name : r.getNames()) {
+					if (string.contains(name.toUpperCase())) {
+						return r;
+					}
+				}
+			}
+		}
+
+		throw new UnknownRegionException(string);
+	}
+
+}
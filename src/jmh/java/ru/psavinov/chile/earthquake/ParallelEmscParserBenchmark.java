@@ -0,0 +1,63 @@
+package ru.psavinov.chile.earthquake;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parallel import throughput of a synthetic export by pool size, one thread
+ * being the baseline
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParallelEmscParserBenchmark {
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	@Param({ "1000000" })
+	public int rows;
+
+	private File file;
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		file = Synthetic.csv(rows);
+		pool = new ForkJoinPool(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public EarthquakeCatalog parse() throws Exception {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		new ParallelEmscParser(catalog, pool).parse(file);
+		return catalog;
+	}
+
+}
@@ -0,0 +1,58 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ru.psavinov.chile.earthquake.exception.UnknownRegionException;
+
+/**
+ * Region resolution of every EMSC feed label: memoised exact lookup against
+ * the substring scan of the first release
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RegionBenchmark {
+
+	private String[] labels;
+
+	@Setup
+	public void setUp() {
+		labels = Synthetic.LABELS.clone();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(36)
+	public void resolver(Blackhole bh) throws UnknownRegionException {
+		for (String label : labels) {
+			bh.consume(Region.getRegion(label));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(36)
+	public void legacy(Blackhole bh) throws UnknownRegionException {
+		for (String label : labels) {
+			bh.consume(Legacy.getRegion(label));
+		}
+	}
+
+}
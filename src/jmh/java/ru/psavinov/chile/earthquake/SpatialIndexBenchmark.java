@@ -0,0 +1,106 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Distance and box queries around Santiago on synthetic catalogs spread over
+ * Chile: grid index against a scan of all rows. Index is built in setup, its
+ * build time is measured separately.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SpatialIndexBenchmark {
+
+	private static final double LATITUDE = -33.45;
+	private static final double LONGITUDE = -70.66;
+
+	@Param({ "1000000", "4000000" })
+	public int rows;
+
+	/**
+	 * Distance, km, the box is the circle bounding box
+	 */
+	@Param({ "50", "500" })
+	public double radius;
+
+	private EarthquakeCatalog catalog;
+	private SpatialIndex index;
+	private double dLatitude;
+	private double dLongitude;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		catalog = Synthetic.catalog(rows);
+		index = catalog.getSpatialIndex();
+		dLatitude = radius / 111.2;
+		dLongitude = dLatitude / Math.cos(Math.toRadians(LATITUDE));
+	}
+
+	@Benchmark
+	public int radiusGrid() {
+		return index.inRadius(LATITUDE, LONGITUDE, radius).size();
+	}
+
+	@Benchmark
+	public int radiusBruteForce() {
+		RowList result = new RowList();
+		for (int row = 0; row < catalog.size(); row++) {
+			if (SpatialIndex.distance(LATITUDE, LONGITUDE,
+					catalog.getLatitude(row), catalog.getLongitude(row)) <= radius) {
+				result.add(row);
+			}
+		}
+		return result.size();
+	}
+
+	@Benchmark
+	public int boxGrid() {
+		return index.inBox(LATITUDE - dLatitude, LATITUDE + dLatitude,
+				LONGITUDE - dLongitude, LONGITUDE + dLongitude).size();
+	}
+
+	@Benchmark
+	public int boxBruteForce() {
+		RowList result = new RowList();
+		for (int row = 0; row < catalog.size(); row++) {
+			float latitude = catalog.getLatitude(row);
+			float longitude = catalog.getLongitude(row);
+			if (latitude >= LATITUDE - dLatitude
+					&& latitude <= LATITUDE + dLatitude
+					&& longitude >= LONGITUDE - dLongitude
+					&& longitude <= LONGITUDE + dLongitude) {
+				result.add(row);
+			}
+		}
+		return result.size();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Measurement(iterations = 5)
+	public SpatialIndex build() {
+		return new SpatialIndex(catalog);
+	}
+
+}
@@ -0,0 +1,161 @@
+package ru.psavinov.chile.earthquake;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Benchmark data: the bundled EMSC export and synthetic catalogs of any size.
+ * Synthetic rows are spread over Chile and all EMSC region labels, event ids
+ * are unique so no row is dropped as a duplicate. Generation is seeded, the
+ * same size always gives the same data.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public final class Synthetic {
+
+	/**
+	 * EMSC region labels of the EMSC feed filter, except West Chile Rise
+	 */
+	public static final String[] LABELS = { "AISEN, CHILE",
+			"ANTOFAGASTA, CHILE", "ARAUCANIA, CHILE", "ATACAMA, CHILE",
+			"BIO-BIO, CHILE", "COQUIMBO, CHILE", "ISLA CHILOE, LOS LAGOS, CHILE",
+			"LIBERTADOR O`HIGGINS, CHILE", "LOS LAGOS, CHILE",
+			"MAGALLANES, CHILE", "MAULE, CHILE", "NEAR COAST OF AISEN, CHILE",
+			"OFF COAST OF AISEN, CHILE", "OFF COAST OF ANTOFAGASTA, CHILE",
+			"OFF COAST OF ARAUCANIA, CHILE", "OFF COAST OF ATACAMA, CHILE",
+			"OFF COAST OF BIO-BIO, CHILE", "OFF COAST OF COQUIMBO, CHILE",
+			"OFF COAST OF LOS LAGOS, CHILE", "OFF COAST OF MAULE, CHILE",
+			"OFF COAST OF O`HIGGINS, CHILE", "OFF COAST OF TARAPACA, CHILE",
+			"OFF COAST OF VALPARAISO, CHILE", "OFFSHORE ANTOFAGASTA, CHILE",
+			"OFFSHORE ARAUCANIA, CHILE", "OFFSHORE ATACAMA, CHILE",
+			"OFFSHORE BIO-BIO, CHILE", "OFFSHORE COQUIMBO, CHILE",
+			"OFFSHORE LOS LAGOS, CHILE", "OFFSHORE MAULE, CHILE",
+			"OFFSHORE O`HIGGINS, CHILE", "OFFSHORE TARAPACA, CHILE",
+			"OFFSHORE VALPARAISO, CHILE", "REGION METROPOLITANA, CHILE",
+			"TARAPACA, CHILE", "VALPARAISO, CHILE" };
+
+	/**
+	 * 2004-01-01 00:00:00 UTC
+	 */
+	private static final long START = 1072915200000L;
+
+	private Synthetic() {
+	}
+
+	/**
+	 * Get the bundled EMSC export
+	 *
+	 * @return File bytes
+	 */
+	public static byte[] bundled() throws IOException {
+		InputStream stream = Synthetic.class
+				.getResourceAsStream(EarthquakeBase.RESOURCE_BASE);
+		try {
+			return IOUtils.toByteArray(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Get synthetic EMSC export, generated into the temporary directory on
+	 * first use and reused by later runs
+	 *
+	 * @param rows
+	 *            Rows count
+	 *
+	 * @return Export file
+	 */
+	public static File csv(int rows) throws IOException {
+		File file = new File(System.getProperty("java.io.tmpdir"),
+				"earthquakes-synthetic-" + rows + ".csv");
+		if (file.exists()) {
+			return file;
+		}
+
+		File tmp = new File(file.getPath().concat(".tmp"));
+		OutputStream stream = new BufferedOutputStream(new FileOutputStream(
+				tmp), 1 << 16);
+		try {
+			Random random = new Random(rows);
+			StringBuilder b = new StringBuilder(128);
+			long time = START;
+			for (int i = 0; i < rows; i++) {
+				time += 1000L * random.nextInt(120);
+				b.setLength(0);
+				DateCodec.append(b, time, ';');
+				b.append(';').append(round(latitude(random), 100)).append(';')
+						.append(round(longitude(random), 100)).append(';')
+						.append(random.nextInt(200)).append("; ;ML;")
+						.append(round(magnitude(random), 10)).append(';')
+						.append(LABELS[random.nextInt(LABELS.length)])
+						.append(';');
+				DateCodec.append(b, time, ' ');
+				b.append(';').append(i + 1).append(";\n");
+				for (int j = 0; j < b.length(); j++) {
+					stream.write(b.charAt(j));
+				}
+			}
+		} finally {
+			stream.close();
+		}
+		if (!tmp.renameTo(file)) {
+			throw new IOException("Could not create " + file);
+		}
+		return file;
+	}
+
+	/**
+	 * Build synthetic catalog in memory, sorted
+	 *
+	 * @param rows
+	 *            Rows count
+	 *
+	 * @return Catalog
+	 */
+	public static EarthquakeCatalog catalog(int rows) {
+		Random random = new Random(rows);
+		Region[] regions = Region.values();
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		long time = START;
+		for (int i = 0; i < rows; i++) {
+			time += 1000L * random.nextInt(120);
+			catalog.add(i + 1, time, (float) magnitude(random),
+					(float) latitude(random), (float) longitude(random),
+					random.nextInt(200), regions[random.nextInt(regions.length)],
+					ScaleType.ML);
+		}
+		catalog.sort();
+		return catalog;
+	}
+
+	/* private members goes below */
+
+	private static double latitude(Random random) {
+		return -56 + 39 * random.nextDouble();
+	}
+
+	private static double longitude(Random random) {
+		return -76 + 10 * random.nextDouble();
+	}
+
+	/*
+	 * Roughly Gutenberg-Richter distributed, b = 1 above 2.0
+	 */
+	private static double magnitude(Random random) {
+		return Math.min(9.0, 2.0 - Math.log10(1 - random.nextDouble()));
+	}
+
+	private static double round(double value, int scale) {
+		return Math.round(value * scale) / (double) scale;
+	}
+
+}
@@ -0,0 +1,93 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.psavinov.chile.earthquake.EarthquakeBase;
+import ru.psavinov.chile.earthquake.EarthquakeCatalog;
+import ru.psavinov.chile.earthquake.EmscParser;
+import ru.psavinov.chile.earthquake.Region;
+import ru.psavinov.chile.earthquake.exception.PredictionException;
+
+/**
+ * Holt-Winters forecasts per second on a region series of the bundled base:
+ * the kernel of the first releases, refitting the model in place for every
+ * forecast, and serving forecasts from a fitted model
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HoltWintersBenchmark {
+
+	@Param({ "Tarapaca", "Antofagasta" })
+	public String region;
+
+	@Param({ "10", "80" })
+	public int window;
+
+	private double[] values;
+	private int count;
+	private int seasonLen;
+	private HoltWintersModel model;
+	private HoltWintersModel fitted;
+	private int step;
+
+	@Setup
+	public void setUp() throws Exception {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		InputStream stream = EarthquakeBase.class
+				.getResourceAsStream(EarthquakeBase.RESOURCE_BASE);
+		try {
+			new EmscParser(catalog).parse(stream);
+		} finally {
+			stream.close();
+		}
+
+		TimeSeries series = EarthquakePredictor.series(catalog,
+				Region.valueOf(region));
+		values = series.values();
+		count = series.size();
+		seasonLen = new HoltWintersPredictor(series, 0, 0, 0, 0)
+				.getSeasonLen();
+		model = new HoltWintersModel(seasonLen);
+		fitted = new HoltWintersModel(seasonLen);
+		fitted.fit(values, count, window, 0.7, 0.7, 0.7);
+	}
+
+	@Benchmark
+	public double legacy() throws PredictionException {
+		return LegacyHoltWinters.predictNext(values, count, seasonLen, window,
+				0.7, 0.7, 0.7);
+	}
+
+	@Benchmark
+	public double refit() throws PredictionException {
+		model.fit(values, count, window, 0.7, 0.7, 0.7);
+		return model.forecast(1);
+	}
+
+	@Benchmark
+	public double fitted() {
+		step = step % 30 + 1;
+		return fitted.forecast(step);
+	}
+
+}
@@ -0,0 +1,118 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import ru.psavinov.chile.earthquake.exception.PredictionException;
+
+/**
+ * Holt-Winters forecast of the releases before the fitted model, kept as the
+ * benchmarks baseline: every forecast fits the whole window into freshly
+ * allocated arrays, forecasts the next season and scans it to the season end.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+final class LegacyHoltWinters {
+
+	private LegacyHoltWinters() {
+	}
+
+	/**
+	 * Next value like HoltWintersPredictor.predictNext did
+	 */
+	static double predictNext(double[] values, int count, int seasonLen,
+			int window, double alpha, double beta, double gamma)
+			throws PredictionException {
+		int index = 0;
+		Double valor = new Double(0);
+		double nextSeason[] = holtwinters(values, count, seasonLen, window,
+				alpha, beta, gamma);
+
+		do {
+			if (nextSeason.length == 0 || index >= nextSeason.length) {
+				break;
+			}
+
+			valor = nextSeason[index];
+			index++;
+
+		} while (valor == 0 || valor.isNaN() || valor.isInfinite() || index < nextSeason.length);
+
+		if (valor.isNaN() || valor.isInfinite()) {
+			return 0;
+		}
+
+		return Math.abs(new BigDecimal(valor).setScale(1, RoundingMode.HALF_UP)
+				.doubleValue());
+	}
+
+	/*
+	 * Fit the model to the last window of the first count values and
+	 * forecast the next season
+	 */
+	private static double[] holtwinters(double[] values, int count, int seasonLen,
+			int window, double alpha, double beta, double gamma)
+			throws PredictionException {
+		if (window < seasonLen * 2) {
+			window = seasonLen * 2;
+		}
+
+		if (count < seasonLen * 2)
+			throw new PredictionException("Too few data.");
+		int ylen = Math.min(window, count);
+		int offset1 = window >= count ? 0 : count - window;
+		int offset = ylen % seasonLen;
+		ylen -= offset;
+		offset += offset1;
+		double fc = seasonLen;
+		double ybar2 = 0.0D;
+		for (int i = offset + seasonLen; i < offset + seasonLen * 2; i++)
+			ybar2 += values[i];
+
+		ybar2 /= fc;
+		double ybar1 = 0.0D;
+		for (int i = offset; i < offset + seasonLen; i++)
+			ybar1 += values[i];
+
+		ybar1 /= fc;
+		double b0 = (ybar2 - ybar1) / fc;
+		double tbar = (double) ((2 + seasonLen) * seasonLen) / 2D / fc;
+		double a0 = ybar1 - b0 * tbar;
+		double I[] = new double[ylen];
+		for (int i = 0; i < ylen; i++)
+			I[i] = values[offset + i] / (a0 + (double) (i + 1) * b0);
+
+		double S[] = new double[ylen + seasonLen];
+		double sumS = 0.0D;
+		for (int i = 0; i < seasonLen; i++) {
+			S[i] = (I[i] + I[i + seasonLen]) / 2D;
+			sumS += S[i];
+		}
+
+		double tS = (double) seasonLen / sumS;
+		for (int i = 0; i < seasonLen; i++)
+			S[i] *= tS;
+
+		double F[] = new double[ylen + seasonLen];
+		double At = a0;
+		double Bt = b0;
+		for (int i = 0; i < ylen; i++) {
+			double Atm1 = At;
+			double Btm1 = Bt;
+			At = (alpha * values[offset + i]) / S[i] + (1.0D - alpha)
+					* (Atm1 + Btm1);
+			Bt = beta * (At - Atm1) + (1.0D - beta) * Btm1;
+			S[i + seasonLen] = (gamma * values[offset + i]) / At + (1.0D - gamma)
+					* S[i];
+			F[i] = (a0 + b0 * (double) (i + 1)) * S[i];
+		}
+
+		double forecast[] = new double[seasonLen];
+		for (int i = 0; i < seasonLen; i++)
+			forecast[i] = (At + Bt * (double) (i + 1)) * S[ylen + i];
+
+		return forecast;
+	}
+
+}
@@ -0,0 +1,131 @@
+package ru.psavinov.chile.earthquake;
+
+/**
+ * Earthquake counts grouped by one or more dimensions, stored in a flat
+ * row-major primitive array
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class CountMatrix {
+
+	private final EarthquakeAggregator.Dimension[] dimensions;
+	private final int[] strides;
+	private final int[] counts;
+
+	CountMatrix(EarthquakeAggregator.Dimension... dimensions) {
+		if (dimensions.length == 0) {
+			throw new IllegalArgumentException(
+					"At least one dimension must be specified!");
+		}
+
+		this.dimensions = dimensions;
+		this.strides = new int[dimensions.length];
+		int length = 1;
+		for (int i = dimensions.length - 1; i >= 0; i--) {
+			strides[i] = length;
+			length *= dimensions[i].getSize();
+		}
+		this.counts = new int[length];
+	}
+
+	/**
+	 * Get earthquakes count in the cell with given bucket numbers, one per
+	 * dimension
+	 *
+	 * @param buckets
+	 *            Bucket numbers
+	 *
+	 * @return Earthquakes count
+	 */
+	public int get(int... buckets) {
+		if (buckets.length != dimensions.length) {
+			throw new IllegalArgumentException("Expected "
+					+ dimensions.length + " bucket numbers, got "
+					+ buckets.length);
+		}
+
+		int offset = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			offset += buckets[i] * strides[i];
+		}
+		return counts[offset];
+	}
+
+	/**
+	 * Get total earthquakes count
+	 *
+	 * @return Sum of all cells
+	 */
+	public int getTotal() {
+		int total = 0;
+		for (int count : counts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Get raw counts, row-major
+	 *
+	 * @return Counts array
+	 */
+	public int[] getCounts() {
+		return counts;
+	}
+
+	public EarthquakeAggregator.Dimension[] getDimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * Get counts of one-dimensional matrix as values array
+	 *
+	 * @return Values array
+	 */
+	public double[] toArray() {
+		if (dimensions.length != 1) {
+			throw new IllegalStateException("Matrix is not one-dimensional");
+		}
+
+		double[] data = new double[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			data[i] = counts[i];
+		}
+		return data;
+	}
+
+	/**
+	 * Get counts of two-dimensional matrix as values table, first dimension
+	 * gives table rows
+	 *
+	 * @return Values table, as expected by category datasets
+	 */
+	public double[][] toTable() {
+		if (dimensions.length != 2) {
+			throw new IllegalStateException("Matrix is not two-dimensional");
+		}
+
+		double[][] data = new double[dimensions[0].getSize()][dimensions[1]
+				.getSize()];
+		for (int i = 0; i < data.length; i++) {
+			for (int j = 0; j < data[i].length; j++) {
+				data[i][j] = counts[i * strides[0] + j];
+			}
+		}
+		return data;
+	}
+
+	void count(EarthquakeCatalog catalog, int row) {
+		int offset = 0;
+		for (int i = 0; i < dimensions.length; i++) {
+			int bucket = dimensions[i].bucketOf(catalog, row);
+			if (bucket < 0) {
+				return;
+			}
+			offset += bucket * strides[i];
+		}
+		counts[offset]++;
+	}
+
+}
@@ -0,0 +1,177 @@
+package ru.psavinov.chile.earthquake;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Date/time codec between epoch millis and the fixed
+ * <code>yyyy-MM-dd HH:mm:ss</code> layout(with any date/time separator) in the
+ * default time zone. Calendar fields are computed arithmetically, time zone
+ * offsets come from immutable java.time zone rules, so all methods are
+ * thread-safe, lock-free and create no calendars or formats.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public final class DateCodec {
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	private static final ZoneRules RULES = ZoneId.systemDefault().getRules();
+
+	private static final ZoneOffset FIXED_OFFSET = RULES.isFixedOffset() ? RULES
+			.getOffset(Instant.EPOCH) : null;
+
+	private DateCodec() {
+	}
+
+	/**
+	 * Convert local date/time fields to epoch millis
+	 *
+	 * @param month
+	 *            Month, 1 - 12
+	 *
+	 * @return Epoch millis
+	 */
+	public static long toEpochMillis(int year, int month, int day, int hour,
+			int minute, int second) {
+		long local = ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute)
+				* 60 + second;
+		if (FIXED_OFFSET != null) {
+			return (local - FIXED_OFFSET.getTotalSeconds()) * 1000L;
+		}
+
+		int offset = offsetSeconds(local
+				- RULES.getStandardOffset(Instant.ofEpochSecond(local))
+						.getTotalSeconds());
+		offset = offsetSeconds(local - offset);
+		return (local - offset) * 1000L;
+	}
+
+	/**
+	 * Format epoch millis as <code>yyyy-MM-dd HH:mm:ss</code>
+	 *
+	 * @param millis
+	 *            Epoch millis
+	 *
+	 * @return Formatted date/time
+	 */
+	public static String format(long millis) {
+		StringBuilder b = new StringBuilder(19);
+		append(b, millis, ' ');
+		return b.toString();
+	}
+
+	/**
+	 * Append epoch millis formatted as <code>yyyy-MM-dd HH:mm:ss</code>
+	 *
+	 * @param b
+	 *            Target builder
+	 * @param millis
+	 *            Epoch millis
+	 * @param separator
+	 *            Separator between date and time
+	 */
+	public static void append(StringBuilder b, long millis, char separator) {
+		long local = toLocalMillis(millis);
+		long days = Math.floorDiv(local, MILLIS_PER_DAY);
+		int secondOfDay = (int) (Math.floorMod(local, MILLIS_PER_DAY) / 1000);
+
+		long date = civilFromDays(days);
+		append(b, (int) (date >> 9), 4).append('-');
+		append(b, (int) (date >> 5) & 0xf, 2).append('-');
+		append(b, (int) date & 0x1f, 2).append(separator);
+		append(b, secondOfDay / 3600, 2).append(':');
+		append(b, secondOfDay / 60 % 60, 2).append(':');
+		append(b, secondOfDay % 60, 2);
+	}
+
+	/**
+	 * Get year in the default time zone
+	 *
+	 * @param millis
+	 *            Epoch millis
+	 *
+	 * @return Year
+	 */
+	public static int yearOf(long millis) {
+		return (int) (civilFromDays(Math.floorDiv(toLocalMillis(millis),
+				MILLIS_PER_DAY)) >> 9);
+	}
+
+	/**
+	 * Get month of year in the default time zone
+	 *
+	 * @param millis
+	 *            Epoch millis
+	 *
+	 * @return Month, 0 - 11 as in Calendar.MONTH
+	 */
+	public static int monthOf(long millis) {
+		return ((int) (civilFromDays(Math.floorDiv(toLocalMillis(millis),
+				MILLIS_PER_DAY)) >> 5) & 0xf) - 1;
+	}
+
+	/* private members goes below */
+
+	private static long toLocalMillis(long millis) {
+		if (FIXED_OFFSET != null) {
+			return millis + FIXED_OFFSET.getTotalSeconds() * 1000L;
+		}
+		return millis + offsetSeconds(Math.floorDiv(millis, 1000L)) * 1000L;
+	}
+
+	private static int offsetSeconds(long epochSecond) {
+		return RULES.getOffset(Instant.ofEpochSecond(epochSecond))
+				.getTotalSeconds();
+	}
+
+	private static StringBuilder append(StringBuilder b, int value, int digits) {
+		for (int d = digits - 1, p = pow10(d); d > 0 && value < p; d--, p /= 10) {
+			b.append('0');
+		}
+		return b.append(value);
+	}
+
+	private static int pow10(int n) {
+		int p = 1;
+		while (n-- > 0) {
+			p *= 10;
+		}
+		return p;
+	}
+
+	/*
+	 * Days since 1970-01-01 of the proleptic Gregorian date
+	 */
+	static long daysFromCivil(int year, int month, int day) {
+		year -= month <= 2 ? 1 : 0;
+		int era = (year >= 0 ? year : year - 399) / 400;
+		int yearOfEra = year - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day
+				- 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+				+ dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	/*
+	 * Proleptic Gregorian date of the day since 1970-01-01, packed as
+	 * year << 9 | month << 5 | day
+	 */
+	static long civilFromDays(long days) {
+		days += 719468;
+		long era = (days >= 0 ? days : days - 146096) / 146097;
+		long dayOfEra = days - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		long month = mp < 10 ? mp + 3 : mp - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return year << 9 | month << 5 | day;
+	}
+
+}
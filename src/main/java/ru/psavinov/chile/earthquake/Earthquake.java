@@ -1,6 +1,5 @@
 package ru.psavinov.chile.earthquake;
 
-import java.math.BigDecimal;
 import java.util.Date;
 
 /**
@@ -11,6 +10,7 @@ import java.util.Date;
  */
 public class Earthquake implements Comparable<Earthquake> {
 
+	private Long eventId;
 	private Region region;
 	private Date dateTime;
 	private Double magnitude;
@@ -19,6 +19,19 @@ public class Earthquake implements Comparable<Earthquake> {
 	private Double latitude;
 	private Double depth;
 
+	/**
+	 * Get EMSC event id
+	 * 
+	 * @return Event id or null if unknown
+	 */
+	public Long getEventId() {
+		return eventId;
+	}
+
+	public void setEventId(Long eventId) {
+		this.eventId = eventId;
+	}
+
 	public Region getRegion() {
 		return region;
 	}
@@ -79,17 +92,28 @@ public class Earthquake implements Comparable<Earthquake> {
 		return o.getDateTime().compareTo(this.getDateTime());
 	}
 	
+	/**
+	 * Earthquakes with EMSC event id are hashed by id, others by date/time
+	 */
 	@Override
 	public int hashCode() {
-		return new BigDecimal(this.getDateTime().getTime()).intValue();
+		long key = this.getEventId() != null ? this.getEventId() : this.getDateTime().getTime();
+		return (int) (key ^ (key >>> 32));
 	}
 	
+	/**
+	 * Earthquakes with EMSC event id are equal if ids are equal, earthquakes
+	 * without id are equal if date/time, region and magnitude are equal
+	 */
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof Earthquake) {
 			Earthquake e = (Earthquake) obj;
+			if (this.getEventId() != null || e.getEventId() != null) {
+				return this.getEventId() != null && this.getEventId().equals(e.getEventId());
+			}
 			if (e.getDateTime().getTime() == this.getDateTime().getTime() &&
-					this.getRegion().equals(e.getRegion()) &&
+					this.getRegion() == e.getRegion() &&
 					this.getMagnitude().doubleValue() == e.getMagnitude().doubleValue()){
 				return true;
 			}
@@ -100,7 +124,7 @@ public class Earthquake implements Comparable<Earthquake> {
 	
 	@Override
 	public String toString() {
-		StringBuilder builder = new StringBuilder(EarthquakeBase.dateFormat.format(getDateTime()));
+		StringBuilder builder = new StringBuilder(DateCodec.format(getDateTime().getTime()));
 		builder.append(" ").append(getRegion().name()).append(" ").append(getMagnitude())
 		.append(getScaleType().name()).append(" ").append(getDepth()).append(" lng: ").append(getLongitude())
 		.append(" lat: ").append(getLatitude());
@@ -0,0 +1,225 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Group-by/count aggregation over the earthquakes catalog. Any number of count
+ * matrices could be registered, all of them are filled in a single pass.
+ *
+ * <pre>
+ * EarthquakeAggregator aggregator = new EarthquakeAggregator();
+ * CountMatrix byRegion = aggregator.count(EarthquakeAggregator.byRegion());
+ * CountMatrix byMonth = aggregator.count(EarthquakeAggregator.byMonth());
+ * aggregator.aggregate(base.getCatalog());
+ * </pre>
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeAggregator {
+
+	/**
+	 * Grouping dimension, maps catalog row to a bucket number
+	 */
+	public interface Dimension {
+
+		/**
+		 * Get buckets count
+		 *
+		 * @return Buckets count
+		 */
+		int getSize();
+
+		/**
+		 * Get bucket of the earthquake
+		 *
+		 * @param catalog
+		 *            Earthquakes catalog
+		 * @param row
+		 *            Catalog row
+		 *
+		 * @return Bucket number or -1 to leave earthquake out
+		 */
+		int bucketOf(EarthquakeCatalog catalog, int row);
+
+	}
+
+	private final List<CountMatrix> matrices = new ArrayList<CountMatrix>();
+
+	/**
+	 * Register a count matrix to be filled by the next aggregation
+	 *
+	 * @param dimensions
+	 *            Grouping dimensions
+	 *
+	 * @return Empty count matrix
+	 */
+	public CountMatrix count(Dimension... dimensions) {
+		CountMatrix matrix = new CountMatrix(dimensions);
+		matrices.add(matrix);
+		return matrix;
+	}
+
+	/**
+	 * Fill all registered count matrices in a single pass over the catalog
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog
+	 */
+	public void aggregate(EarthquakeCatalog catalog) {
+		CountMatrix[] targets = matrices.toArray(new CountMatrix[matrices
+				.size()]);
+		int size = catalog.size();
+		for (int row = 0; row < size; row++) {
+			for (CountMatrix target : targets) {
+				target.count(catalog, row);
+			}
+		}
+	}
+
+	/**
+	 * Group by region, buckets are region ordinals
+	 *
+	 * @return Region dimension
+	 */
+	public static Dimension byRegion() {
+		return new Dimension() {
+
+			public int getSize() {
+				return Region.values().length;
+			}
+
+			public int bucketOf(EarthquakeCatalog catalog, int row) {
+				return catalog.getRegionOrdinal(row);
+			}
+		};
+	}
+
+	/**
+	 * Group by month of year, buckets are Calendar.MONTH values
+	 *
+	 * @return Month dimension
+	 */
+	public static Dimension byMonth() {
+		return new Dimension() {
+
+			private final MonthCursor months = new MonthCursor();
+
+			public int getSize() {
+				return 12;
+			}
+
+			public int bucketOf(EarthquakeCatalog catalog, int row) {
+				return months.monthOf(catalog.getTime(row));
+			}
+		};
+	}
+
+	/**
+	 * Group by year, earthquakes out of the years range are left out
+	 *
+	 * @param first
+	 *            First year, inclusive
+	 * @param last
+	 *            Last year, inclusive
+	 *
+	 * @return Year dimension, bucket 0 is the first year
+	 */
+	public static Dimension byYear(final int first, final int last) {
+		if (last < first) {
+			throw new IllegalArgumentException("Wrong years range: " + first
+					+ " - " + last);
+		}
+
+		return new Dimension() {
+
+			public int getSize() {
+				return last - first + 1;
+			}
+
+			public int bucketOf(EarthquakeCatalog catalog, int row) {
+				int year = DateCodec.yearOf(catalog.getTime(row));
+				return year < first || year > last ? -1 : year - first;
+			}
+		};
+	}
+
+	/**
+	 * Group by magnitude. Bucket 0 holds magnitudes below the first edge,
+	 * bucket i holds magnitudes from edge i-1(inclusive) to edge i(exclusive),
+	 * the last bucket holds magnitudes from the last edge and above.
+	 *
+	 * @param edges
+	 *            Ascending bucket edges
+	 *
+	 * @return Magnitude dimension, with edges count + 1 buckets
+	 */
+	public static Dimension byMagnitude(double... edges) {
+		final float[] limits = toLimits(edges);
+
+		return new Dimension() {
+
+			public int getSize() {
+				return limits.length + 1;
+			}
+
+			public int bucketOf(EarthquakeCatalog catalog, int row) {
+				return bucket(limits, catalog.getMagnitude(row));
+			}
+		};
+	}
+
+	/**
+	 * Group by depth, buckets are formed like in
+	 * {@link #byMagnitude(double...)}
+	 *
+	 * @param edges
+	 *            Ascending bucket edges
+	 *
+	 * @return Depth dimension, with edges count + 1 buckets
+	 */
+	public static Dimension byDepth(double... edges) {
+		final float[] limits = toLimits(edges);
+
+		return new Dimension() {
+
+			public int getSize() {
+				return limits.length + 1;
+			}
+
+			public int bucketOf(EarthquakeCatalog catalog, int row) {
+				return bucket(limits, catalog.getDepth(row));
+			}
+		};
+	}
+
+	/* private members goes below */
+
+	private static float[] toLimits(double[] edges) {
+		float[] limits = new float[edges.length];
+		for (int i = 0; i < edges.length; i++) {
+			limits[i] = (float) edges[i];
+			if (i > 0 && limits[i] < limits[i - 1]) {
+				throw new IllegalArgumentException(
+						"Bucket edges must be ascending!");
+			}
+		}
+		return limits;
+	}
+
+	private static int bucket(float[] limits, float value) {
+		int low = 0;
+		int high = limits.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (limits[middle] <= value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+}
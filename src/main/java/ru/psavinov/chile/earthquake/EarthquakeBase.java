@@ -1,23 +1,27 @@
 package ru.psavinov.chile.earthquake;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.io.IOUtils;
 
 import ru.psavinov.chile.earthquake.exception.BaseLoadException;
+import ru.psavinov.chile.earthquake.exception.UnknownRegionException;
 
 /**
  * 
@@ -33,9 +37,6 @@ public class EarthquakeBase {
 	 */
 	public static final String RESOURCE_BASE = "/ru/psavinov/chile/earthquake/data.csv";
 
-	public static final SimpleDateFormat dateFormat = new SimpleDateFormat(
-			"yyyy-MM-dd HH:mm:ss");
-
 	private static final String EMCS_URL = "http://www.emsc-csem.org/Earthquake/?filter=yes&region=AISEN%2C+CHILE%7CANTOFAGASTA%2C+CHILE%7CARAUCANIA%2C+CHILE%7CATACAMA%2C+CHILE%7CBIO-BIO%2C+CHILE%7CCOQUIMBO%2C+CHILE%7CISLA+CHILOE%2C+LOS+LAGOS%2C+CHILE%7CLIBERTADOR+O%60HIGGINS%2C+CHILE%7CLOS+LAGOS%2C+CHILE%7CMAGALLANES%2C+CHILE%7CMAULE%2C+CHILE%7CNEAR+COAST+OF+AISEN%2C+CHILE%7COFF+COAST+OF+AISEN%2C+CHILE%7COFF+COAST+OF+ANTOFAGASTA%2C+CHILE%7COFF+COAST+OF+ARAUCANIA%2C+CHILE%7COFF+COAST+OF+ATACAMA%2C+CHILE%7COFF+COAST+OF+BIO-BIO%2C+CHILE%7COFF+COAST+OF+COQUIMBO%2C+CHILE%7COFF+COAST+OF+LOS+LAGOS%2C+CHILE%7COFF+COAST+OF+MAULE%2C+CHILE%7COFF+COAST+OF+O%60HIGGINS%2C+CHILE%7COFF+COAST+OF+TARAPACA%2C+CHILE%7COFF+COAST+OF+VALPARAISO%2C+CHILE%7COFFSHORE+ANTOFAGASTA%2C+CHILE%7COFFSHORE+ARAUCANIA%2C+CHILE%7COFFSHORE+ATACAMA%2C+CHILE%7COFFSHORE+BIO-BIO%2C+CHILE%7COFFSHORE+COQUIMBO%2C+CHILE%7COFFSHORE+LOS+LAGOS%2C+CHILE%7COFFSHORE+MAULE%2C+CHILE%7COFFSHORE+O%60HIGGINS%2C+CHILE%7COFFSHORE+TARAPACA%2C+CHILE%7COFFSHORE+VALPARAISO%2C+CHILE%7CREGION+METROPOLITANA%2C+CHILE%7CTARAPACA%2C+CHILE%7CVALPARAISO%2C+CHILE%7CWEST+CHILE+RISE&min_intens=0&max_intens=8&export=csv";
 
 	/**
@@ -48,33 +49,255 @@ public class EarthquakeBase {
 	 *             in case of missing/corrupted earthquakes base
 	 */
 	public EarthquakeBase(boolean loadRemote) throws BaseLoadException {
+		this(loadRemote, EMCS_URL);
+	}
+
+	/**
+	 * Load base in constructor
+	 * 
+	 * @param loadRemote
+	 *            Load latest earthquakes data from Web
+	 * @param feedUrl
+	 *            URL of EMSC CSV export to load and poll earthquakes from
+	 * 
+	 * @throws BaseLoadException
+	 *             in case of missing/corrupted earthquakes base
+	 */
+	public EarthquakeBase(boolean loadRemote, String feedUrl)
+			throws BaseLoadException {
+		this.feedUrl = feedUrl;
+		this.catalog = new EarthquakeCatalog();
 		loadBase(loadRemote);
 	}
 
+	/**
+	 * Create base over a published catalog, see {@link #getSnapshot()}
+	 */
+	private EarthquakeBase(EarthquakeCatalog catalog) {
+		this.catalog = catalog;
+		this.feedUrl = null;
+	}
+
+	/**
+	 * Get base frozen at the current state. Every single query sees a
+	 * consistent catalog anyway, snapshot is needed to run several queries
+	 * against the same data while the base is being polled.
+	 * 
+	 * @return Read-only base snapshot, can not be polled
+	 */
+	public EarthquakeBase getSnapshot() {
+		return new EarthquakeBase(getCatalog());
+	}
+
+	/**
+	 * Start fetching new earthquakes from Web periodically. New earthquakes
+	 * are journaled, indexed and published without blocking queries: the
+	 * poller prepares a new catalog aside and swaps it in at once.
+	 * 
+	 * @param period
+	 *            Period between polls
+	 * @param unit
+	 *            Period unit
+	 */
+	public synchronized void startPolling(long period, TimeUnit unit) {
+		if (journal == null) {
+			throw new IllegalStateException("Base snapshot can not be polled");
+		}
+		if (poller != null) {
+			throw new IllegalStateException("Base is polled already");
+		}
+
+		poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "earthquakes-poller");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		poller.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					poll();
+				} catch (Throwable th) {
+					th.printStackTrace();
+				}
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Stop fetching new earthquakes, poll in progress is completed
+	 */
+	public synchronized void stopPolling() {
+		if (poller != null) {
+			poller.shutdown();
+			poller = null;
+		}
+	}
+
+	/**
+	 * Fetch new earthquakes from Web once and publish them
+	 * 
+	 * @return Count of new earthquakes
+	 * 
+	 * @throws IOException
+	 *             in case of network or journal error, malformed response
+	 * @throws UnknownRegionException
+	 *             in case of earthquake with unknown region
+	 */
+	public int poll() throws IOException, UnknownRegionException {
+		if (journal == null) {
+			throw new IllegalStateException("Base snapshot can not be polled");
+		}
+
+		/*
+		 * Polls run one at a time, the feed is fetched outside of the journal
+		 * lock, so a slow feed never blocks analytics
+		 */
+		synchronized (polling) {
+			EmscSync sync = getSync();
+			EarthquakeCatalog fetched = new EarthquakeCatalog();
+			int count = sync.fetch(getCatalog(), fetched);
+
+			synchronized (journal) {
+				EarthquakeCatalog current = getCatalog();
+				if (count == 0 || !hasUnknown(current, fetched)) {
+					sync.commit();
+					return 0;
+				}
+				long parsed = sync.getParsed();
+
+				EarthquakeCatalog next = current.copy();
+				int from = next.size();
+				int added = next.addAll(fetched);
+				journal.append(next, from, next.size());
+				/*
+				 * Sync state moves past the fetched earthquakes only once they
+				 * are journaled, otherwise the next poll fetches them again
+				 */
+				sync.commit();
+				analyze(next, from);
+				Map<EarthquakeSubscription, List<Earthquake>> matched = match(
+						next, from);
+				next.sort();
+				next.getIndex().sync();
+
+				catalog = next;
+				publish(matched, parsed);
+
+				if (journal.needsCompaction(next.size())) {
+					journal.compact(next);
+				}
+				return added;
+			}
+		}
+	}
+
+	/**
+	 * Subscribe to earthquakes ingested by the poller from now on, dropping
+	 * the oldest queued earthquakes once the queue is full
+	 * 
+	 * @param filter
+	 *            Earthquakes to deliver
+	 * @param capacity
+	 *            Queue capacity
+	 * @return Subscription
+	 */
+	public EarthquakeSubscription subscribe(EarthquakeFilter filter,
+			int capacity) {
+		return subscribe(filter, capacity,
+				EarthquakeSubscription.Overflow.DROP_OLDEST);
+	}
+
+	/**
+	 * Subscribe to earthquakes ingested by the poller from now on. Earthquakes
+	 * of a poll are delivered at once after the whole response is parsed,
+	 * journaled and published, not one by one as they are parsed, so they are
+	 * already visible to queries. Earthquakes loaded by the constructor,
+	 * including its remote sync, are never delivered. Latency is measured
+	 * from the start of the response parsing.
+	 * 
+	 * @param filter
+	 *            Earthquakes to deliver
+	 * @param capacity
+	 *            Queue capacity
+	 * @param overflow
+	 *            What to drop once the queue is full
+	 * @return Subscription
+	 */
+	public EarthquakeSubscription subscribe(EarthquakeFilter filter,
+			int capacity, EarthquakeSubscription.Overflow overflow) {
+		EarthquakeSubscription subscription = new EarthquakeSubscription(
+				filter, capacity, overflow);
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Start Gutenberg-Richter analytics: all earthquakes of the base are
+	 * counted at once, earthquakes ingested by the poller from now on are
+	 * counted as they come.
+	 * 
+	 * @param windowDays
+	 *            Sliding window length, days
+	 * @param filter
+	 *            Earthquakes to count, null to count all
+	 * @return Analytics, updated until cancelled
+	 */
+	public GutenbergRichter analyze(int windowDays, EarthquakeFilter filter) {
+		GutenbergRichter analytics = new GutenbergRichter(windowDays, filter);
+		if (journal == null) {
+			analytics.add(getCatalog());
+			return analytics;
+		}
+
+		synchronized (journal) {
+			analytics.add(getCatalog());
+			analyses.add(analytics);
+		}
+		return analytics;
+	}
+
 	/**
 	 * Get latest earthquake from base
 	 * 
-	 * @return Latest earthquake
+	 * @return Latest earthquake, null if base is empty
 	 */
 	public Earthquake getLatest() {
-		List<Earthquake> list = new ArrayList<Earthquake>(getEarthquakes());
-		Collections.sort(list);
-		return list.get(0);
+		return getLatest(null);
+	}
+
+	/**
+	 * Get latest earthquake of the region
+	 * 
+	 * @param region
+	 *            Region, null for all regions
+	 * @return Latest earthquake, null if there are no earthquakes
+	 */
+	public Earthquake getLatest(Region region) {
+		EarthquakeCatalog c = getCatalog();
+		return get(c, c.getLatestRow(region));
 	}
 
 	/**
 	 * Get earliest earthquake from base
 	 * 
-	 * @return Earliest earthquake
+	 * @return Earliest earthquake, null if base is empty
 	 */
 	public Earthquake getOldest() {
-		List<Earthquake> list = new ArrayList<Earthquake>(getEarthquakes());
-		Collections.sort(list, new Comparator<Earthquake>() {
-			public int compare(Earthquake o1, Earthquake o2) {
-				return o1.getDateTime().compareTo(o2.getDateTime());
-			}
-		});
-		return list.get(0);
+		return getOldest(null);
+	}
+
+	/**
+	 * Get earliest earthquake of the region
+	 * 
+	 * @param region
+	 *            Region, null for all regions
+	 * @return Earliest earthquake, null if there are no earthquakes
+	 */
+	public Earthquake getOldest(Region region) {
+		EarthquakeCatalog c = getCatalog();
+		return get(c, c.getOldestRow(region));
 	}
 
 	/**
@@ -83,10 +306,17 @@ public class EarthquakeBase {
 	 * @return All earthquakes
 	 */
 	public Set<Earthquake> getEarthquakes() {
-		if (earthquakes == null) {
-			earthquakes = new HashSet<Earthquake>();
-		}
-		return earthquakes;
+		return new EarthquakeView(getCatalog());
+	}
+
+	/**
+	 * Get columnar earthquakes catalog, the catalog is never changed once
+	 * published, poller publishes a new one instead
+	 * 
+	 * @return Earthquakes catalog
+	 */
+	public EarthquakeCatalog getCatalog() {
+		return catalog;
 	}
 
 	/**
@@ -95,16 +325,19 @@ public class EarthquakeBase {
 	 * @return Strongest earthquak
 	 */
 	public Earthquake getStrongest() {
-		Earthquake strongest = null;
-
-		for (Earthquake quake : getEarthquakes()) {
-			if (strongest == null
-					|| quake.getMagnitude() > strongest.getMagnitude()) {
-				strongest = quake;
-			}
-		}
+		return getStrongest(null);
+	}
 
-		return strongest;
+	/**
+	 * Get strongest earthquake of the region
+	 * 
+	 * @param region
+	 *            Region, null for all regions
+	 * @return Strongest earthquake, null if there are no earthquakes
+	 */
+	public Earthquake getStrongest(Region region) {
+		EarthquakeCatalog c = getCatalog();
+		return get(c, c.getStrongestRow(region));
 	}
 
 	/**
@@ -115,20 +348,20 @@ public class EarthquakeBase {
 	 * @return Set of earthquakes in specified regions
 	 */
 	public Set<Earthquake> getByRegion(Region... regiones) {
-		Set<Earthquake> set = new HashSet<Earthquake>();
-
-		for (Region r : regiones) {
-			if (r == null) {
-				throw new IllegalArgumentException("Region must be not null!");
-			}
+		return query(new EarthquakeFilter().regions(regiones)).toSet();
+	}
 
-			for (Earthquake quake : getEarthquakes()) {
-				if (r.equals(quake.getRegion())) {
-					set.add(quake);
-				}
-			}
-		}
-		return set;
+	/**
+	 * Create query over the current catalog, conditions are taken from the
+	 * filter, order and limit are set on the query
+	 * 
+	 * @param filter
+	 *            Earthquakes filter
+	 * 
+	 * @return Earthquakes query
+	 */
+	public EarthquakeQuery query(EarthquakeFilter filter) {
+		return new EarthquakeQuery(getCatalog(), filter);
 	}
 
 	/**
@@ -140,17 +373,123 @@ public class EarthquakeBase {
 	 * @return Set of earthquakes for specified month
 	 */
 	public Set<Earthquake> getByMonth(int month) {
-		Set<Earthquake> set = new HashSet<Earthquake>();
+		EarthquakeCatalog c = getCatalog();
+		if (month < Calendar.JANUARY || month > Calendar.DECEMBER) {
+			return new RowList().toView(c);
+		}
 
-		Calendar c = Calendar.getInstance();
-		for (Earthquake quake : getEarthquakes()) {
-			c.setTime(quake.getDateTime());
-			if (c.get(Calendar.MONTH) == month) {
-				set.add(quake);
-			}
+		return c.getIndex().getMonthRows(month).toView(c);
+	}
+
+	/**
+	 * Get earthquakes set by specific month of specific year
+	 * 
+	 * @param year
+	 *            Year
+	 * @param month
+	 *            Month, as in Calendar.MONTH
+	 * 
+	 * @return Set of earthquakes for specified month
+	 */
+	public Set<Earthquake> getByMonth(int year, int month) {
+		if (month < Calendar.JANUARY || month > Calendar.DECEMBER) {
+			return new RowList().toView(getCatalog());
 		}
 
-		return set;
+		long from = DateCodec.toEpochMillis(year, month + 1, 1, 0, 0, 0);
+		long to = month == Calendar.DECEMBER ? DateCodec.toEpochMillis(
+				year + 1, 1, 1, 0, 0, 0) : DateCodec.toEpochMillis(year,
+				month + 2, 1, 0, 0, 0);
+		return getByTime(from, to);
+	}
+
+	/**
+	 * Get earthquakes set by date/time range
+	 * 
+	 * @param from
+	 *            Range start, inclusive
+	 * @param to
+	 *            Range end, exclusive
+	 * 
+	 * @return Set of earthquakes in date/time order
+	 */
+	public Set<Earthquake> getByTime(Date from, Date to) {
+		return getByTime(from.getTime(), to.getTime());
+	}
+
+	/**
+	 * Iterate over earthquakes in date/time range matching the filter, date/time
+	 * range of the filter itself still applies
+	 * 
+	 * @param from
+	 *            Range start, inclusive
+	 * @param to
+	 *            Range end, exclusive
+	 * @param filter
+	 *            Earthquakes filter
+	 * 
+	 * @return Iterator of earthquakes in date/time order
+	 */
+	public Iterator<Earthquake> getByTime(Date from, Date to,
+			EarthquakeFilter filter) {
+		return query(
+				filter.copy().between(
+						Math.max(from.getTime(), filter.getTimeFrom()),
+						Math.min(to.getTime(), filter.getTimeTo()))).iterator();
+	}
+
+	/**
+	 * Get earthquakes of the last days, up to now
+	 * 
+	 * @param days
+	 *            Days count
+	 * 
+	 * @return Set of earthquakes in date/time order
+	 */
+	public Set<Earthquake> getLastDays(int days) {
+		long now = System.currentTimeMillis();
+		return getByTime(now - days * 86400000L, now + 1);
+	}
+
+	/**
+	 * Get earthquakes set by geographic box, bounds inclusive. Box does not
+	 * wrap around the antimeridian.
+	 * 
+	 * @param minLatitude
+	 *            South bound, degrees
+	 * @param maxLatitude
+	 *            North bound, degrees
+	 * @param minLongitude
+	 *            West bound, degrees
+	 * @param maxLongitude
+	 *            East bound, degrees
+	 * 
+	 * @return Set of earthquakes in the box
+	 */
+	public Set<Earthquake> getByBox(double minLatitude, double maxLatitude,
+			double minLongitude, double maxLongitude) {
+		return query(
+				new EarthquakeFilter().box(minLatitude, maxLatitude,
+						minLongitude, maxLongitude)).toSet();
+	}
+
+	/**
+	 * Get earthquakes set by great-circle distance from the point
+	 * 
+	 * @param latitude
+	 *            Point latitude, degrees
+	 * @param longitude
+	 *            Point longitude, degrees
+	 * @param radius
+	 *            Distance, km, inclusive
+	 * 
+	 * @return Set of earthquakes within the distance
+	 */
+	public Set<Earthquake> getByDistance(double latitude, double longitude,
+			double radius) {
+		return query(
+				new EarthquakeFilter().distance(latitude, longitude, radius))
+				.toSet();
 	}
 
 	/**
@@ -162,15 +501,7 @@ public class EarthquakeBase {
 	 * @return Set of corresponding earthquakes
 	 */
 	public Set<Earthquake> getByMagnitudeGT(double gt) {
-		Set<Earthquake> set = new HashSet<Earthquake>();
-
-		for (Earthquake quake : getEarthquakes()) {
-			if (quake.getMagnitude() > gt) {
-				set.add(quake);
-			}
-		}
-
-		return set;
+		return getByMagnitudeGTRegion(null, gt);
 	}
 
 	/**
@@ -182,15 +513,7 @@ public class EarthquakeBase {
 	 * @return Set of corresponding earthquakes
 	 */
 	public Set<Earthquake> getByMagnitudeLT(double lt) {
-		Set<Earthquake> set = new HashSet<Earthquake>();
-
-		for (Earthquake quake : getEarthquakes()) {
-			if (quake.getMagnitude() < lt) {
-				set.add(quake);
-			}
-		}
-
-		return set;
+		return getByMagnitudeLTRegion(null, lt);
 	}
 
 	/**
@@ -200,20 +523,12 @@ public class EarthquakeBase {
 	 * @param gt
 	 *            Lower magnitude limit
 	 * @param r
-	 *            Region
+	 *            Region, null for all regions
 	 * 
 	 * @return Set of corresponding earthquakes
 	 */
 	public Set<Earthquake> getByMagnitudeGTRegion(Region r, double gt) {
-		Set<Earthquake> set = new HashSet<Earthquake>();
-
-		for (Earthquake quake : getEarthquakes()) {
-			if (quake.getMagnitude() > gt && r.equals(quake.getRegion())) {
-				set.add(quake);
-			}
-		}
-
-		return set;
+		return query(byRegion(r).magnitudeGT(gt)).toSet();
 	}
 
 	/**
@@ -222,20 +537,12 @@ public class EarthquakeBase {
 	 * @param lt
 	 *            Upper magnitude limit
 	 * @param r
-	 *            Region
+	 *            Region, null for all regions
 	 * 
 	 * @return Set of corresponding earthquakes
 	 */
 	public Set<Earthquake> getByMagnitudeLTRegion(Region r, double lt) {
-		Set<Earthquake> set = new HashSet<Earthquake>();
-
-		for (Earthquake quake : getEarthquakes()) {
-			if (quake.getMagnitude() < lt && r.equals(quake.getRegion())) {
-				set.add(quake);
-			}
-		}
-
-		return set;
+		return query(byRegion(r).magnitudeLT(lt)).toSet();
 	}
 
 	/**
@@ -246,22 +553,13 @@ public class EarthquakeBase {
 	 * @param le
 	 *            Upper magnitude limit
 	 * @param r
-	 *            Region
+	 *            Region, null for all regions
 	 * 
 	 * @return Set of corresponding earthquakes
 	 */
 	public Set<Earthquake> getByMagnitudeLEGERegion(Region r, double ge,
 			double le) {
-		Set<Earthquake> set = new HashSet<Earthquake>();
-
-		for (Earthquake quake : getEarthquakes()) {
-			if (quake.getMagnitude() >= ge && quake.getMagnitude() <= le
-					&& r.equals(quake.getRegion())) {
-				set.add(quake);
-			}
-		}
-
-		return set;
+		return query(byRegion(r).magnitudeGE(ge).magnitudeLE(le)).toSet();
 	}
 
 	/**
@@ -275,15 +573,7 @@ public class EarthquakeBase {
 	 * @return Set of corresponding earthquakes
 	 */
 	public Set<Earthquake> getByMagnitudeLEGE(double ge, double le) {
-		Set<Earthquake> set = new HashSet<Earthquake>();
-
-		for (Earthquake quake : getEarthquakes()) {
-			if (quake.getMagnitude() >= ge && quake.getMagnitude() <= le) {
-				set.add(quake);
-			}
-		}
-
-		return set;
+		return getByMagnitudeLEGERegion(null, ge, le);
 	}
 
 	/**
@@ -292,10 +582,8 @@ public class EarthquakeBase {
 	 * @return Year of earliest earthquake
 	 */
 	public int getFirstYear() {
-		Calendar c = Calendar.getInstance();
-		c.setTime(getOldest().getDateTime());
-
-		return c.get(Calendar.YEAR);
+		EarthquakeCatalog c = getCatalog();
+		return DateCodec.yearOf(c.getTime(c.getOldestRow(null)));
 	}
 
 	/**
@@ -304,52 +592,182 @@ public class EarthquakeBase {
 	 * @return Year of latest earthquake
 	 */
 	public int getLastYear() {
-		Calendar c = Calendar.getInstance();
-		c.setTime(getLatest().getDateTime());
-
-		return c.get(Calendar.YEAR);
+		EarthquakeCatalog c = getCatalog();
+		return DateCodec.yearOf(c.getTime(c.getLatestRow(null)));
 	}
 
 	/* private members goes below */
 
-	private Set<Earthquake> earthquakes;
+	/*
+	 * Catalog is never changed once published, poller swaps in a new one
+	 */
+	private volatile EarthquakeCatalog catalog;
+
+	private EarthquakeJournal journal;
+
+	private final String feedUrl;
+
+	private EmscSync sync;
+
+	private final Object polling = new Object();
+
+	private ScheduledExecutorService poller;
+
+	private final List<EarthquakeSubscription> subscriptions = new CopyOnWriteArrayList<EarthquakeSubscription>();
+
+	private final List<GutenbergRichter> analyses = new CopyOnWriteArrayList<GutenbergRichter>();
+
+	/*
+	 * Count the rows since specified one by all running analytics
+	 */
+	private void analyze(EarthquakeCatalog c, int from) {
+		for (GutenbergRichter analytics : analyses) {
+			if (analytics.isCancelled()) {
+				analyses.remove(analytics);
+			} else {
+				analytics.add(c, from, c.size());
+			}
+		}
+	}
+
+	/*
+	 * Earthquakes of the rows since specified one matching each subscription,
+	 * every earthquake is created once however many subscriptions match it
+	 */
+	private Map<EarthquakeSubscription, List<Earthquake>> match(
+			EarthquakeCatalog c, int from) {
+		Map<EarthquakeSubscription, List<Earthquake>> matched = new LinkedHashMap<EarthquakeSubscription, List<Earthquake>>();
+		Earthquake[] quakes = new Earthquake[c.size() - from];
+		for (EarthquakeSubscription subscription : subscriptions) {
+			if (subscription.isCancelled()) {
+				subscriptions.remove(subscription);
+				continue;
+			}
+			List<Earthquake> list = new ArrayList<Earthquake>();
+			for (int row = from; row < c.size(); row++) {
+				if (subscription.getFilter().accept(c, row)) {
+					if (quakes[row - from] == null) {
+						quakes[row - from] = c.get(row);
+					}
+					list.add(quakes[row - from]);
+				}
+			}
+			if (!list.isEmpty()) {
+				matched.put(subscription, list);
+			}
+		}
+		return matched;
+	}
+
+	private static void publish(
+			Map<EarthquakeSubscription, List<Earthquake>> matched,
+			long parsed) {
+		for (Map.Entry<EarthquakeSubscription, List<Earthquake>> entry : matched
+				.entrySet()) {
+			for (Earthquake quake : entry.getValue()) {
+				entry.getKey().offer(quake, parsed);
+			}
+		}
+	}
+
+	private static EarthquakeFilter byRegion(Region r) {
+		EarthquakeFilter filter = new EarthquakeFilter();
+		return r == null ? filter : filter.regions(r);
+	}
+
+	private EarthquakeView getByTime(long from, long to) {
+		EarthquakeCatalog c = getCatalog();
+		return new EarthquakeView(c, c.lowerBound(from), c.lowerBound(to));
+	}
+
+	private static Earthquake get(EarthquakeCatalog c, int row) {
+		return row < 0 ? null : c.get(row);
+	}
+
+	private EmscSync getSync() {
+		if (sync == null) {
+			sync = new EmscSync(feedUrl, journal.getSyncFile());
+		}
+		return sync;
+	}
+
+	/*
+	 * Check if any of the fetched earthquakes is not in the catalog yet(or
+	 * brings an id to the earthquake known without it)
+	 */
+	private static boolean hasUnknown(EarthquakeCatalog catalog,
+			EarthquakeCatalog fetched) {
+		for (int row = 0; row < fetched.size(); row++) {
+			long eventId = fetched.getEventId(row);
+			if (eventId != 0 ? catalog.find(eventId) < 0 : catalog.find(
+					fetched.getTime(row), fetched.getRegion(row),
+					fetched.getMagnitude(row)) < 0) {
+				return true;
+			}
+		}
+		return false;
+	}
 
 	private void loadBase(boolean loadRemote) throws BaseLoadException {
 		try {
 
-			File localBase = new File(System.getProperty("user.home")
-					.concat(File.separator).concat("earthquakes.base"));
+			journal = new EarthquakeJournal(new File(
+					System.getProperty("user.home")));
 
 			boolean loaded = false;
-			if (localBase.exists()) {
-				List<String> strings = IOUtils.readLines(new FileInputStream(
-						localBase));
-				parseStrings(strings);
+			if (journal.getSnapshotFile().exists()) {
+				try {
+					catalog = EarthquakeSnapshot.read(journal
+							.getSnapshotFile());
+					loaded = true;
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+
+			if (!loaded && journal.getBaseFile().exists()) {
+				parseFile(journal.getBaseFile());
 				loaded = true;
 			}
 
+			for (File journalFile : journal.getJournalFiles()) {
+				int count = getCatalog().size();
+				parseFile(journalFile);
+				journal.replayed(getCatalog().size() - count);
+			}
+
 			if (!loaded) {
-				List<String> strings = IOUtils.readLines(this.getClass()
-						.getResourceAsStream(RESOURCE_BASE));
-				parseStrings(strings);
+				InputStream stream = this.getClass().getResourceAsStream(
+						RESOURCE_BASE);
+				try {
+					new EmscParser(getCatalog()).parse(stream);
+				} finally {
+					IOUtils.closeQuietly(stream);
+				}
 			}
 
-			int resourceCount = getEarthquakes().size();
+			int resourceCount = getCatalog().size();
 
 			System.out.println("Resources base count: " + resourceCount);
 
 			if (loadRemote) {
-				HttpClient client = new HttpClient();
-				GetMethod get = new GetMethod(EMCS_URL);
-				client.executeMethod(get);
-				if (get.getStatusCode() == 200) {
-					parseStrings(IOUtils.readLines(get
-							.getResponseBodyAsStream()));
-				}
+				getSync().fetch(getCatalog(), getCatalog());
 			}
 
-			IOUtils.writeLines(createList(), "\n", new FileOutputStream(
-					localBase));
+			/*
+			 * Newly ingested earthquakes are appended at the end of the
+			 * catalog until it is sorted
+			 */
+			journal.append(getCatalog(), resourceCount, getCatalog().size());
+			if (loadRemote) {
+				getSync().commit();
+			}
+			getCatalog().sort();
+			getCatalog().getIndex().sync();
+
+			if (journal.needsCompaction(getCatalog().size())) {
+				journal.compact(getCatalog());
+			}
 
 		} catch (Throwable th) {
 			th.printStackTrace();
@@ -357,39 +775,9 @@ public class EarthquakeBase {
 		}
 	}
 
-	private Collection<String> createList() {
-		List<String> list = new ArrayList<String>();
-		for (Earthquake q : getEarthquakes()) {
-			StringBuffer b = new StringBuffer();
-			String dateString = dateFormat.format(q.getDateTime());
-			b.append(dateString.split(" ")[0]).append(";").append(dateString.split(" ")[1]).append(";")
-			.append(q.getLatitude()).append(";").append(q.getLongitude()).append(";").append(q.getDepth())
-			.append("; ;").append(q.getScaleType().name()).append(";").append(q.getMagnitude()).append(";")
-			.append(q.getRegion()).append(";");
-			list.add(b.toString());
-		}
-		return list;
-	}
-
-	private void parseStrings(List<String> strings) throws Exception {
-		for (String string : strings) {
-			if (!string.toUpperCase().contains("WEST CHILE")
-					&& !string.toUpperCase().contains("DATE")) {
-				String[] array = string.split("\\;");
-				Earthquake quake = new Earthquake();
-				quake.setDateTime(dateFormat.parse(array[0].concat(" ").concat(
-						array[1])));
-				quake.setLatitude(Double.valueOf(array[2]));
-				quake.setLongitude(Double.valueOf(array[3]));
-				quake.setDepth(Double.valueOf(array[4]));
-				quake.setScaleType(ScaleType.getScaleType(array[6]));
-				quake.setMagnitude(Double.valueOf(array[7]));
-				quake.setRegion(Region.getRegion(array[8]));
-				if (!getEarthquakes().contains(quake)) {
-					getEarthquakes().add(quake);
-				}
-			}
-		}
+	private void parseFile(File file) throws Exception {
+		new ParallelEmscParser(getCatalog(), ForkJoinPool.commonPool())
+				.parse(file);
 	}
 
 }
@@ -0,0 +1,660 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Columnar earthquakes storage. Every earthquake attribute is kept in its own
+ * primitive array, all arrays are kept sorted by earthquake date/time
+ * (oldest first), so a row number identifies an earthquake inside the catalog.
+ *
+ * Magnitudes and coordinates are stored with single precision, which is more
+ * than enough for the one-two decimal digits published by EMSC.
+ *
+ * Earthquakes are identified by EMSC event id. Earthquakes without id(loaded
+ * from bases written by the previous versions) are identified by date/time
+ * second, region and magnitude tenth instead, such earthquakes get their id
+ * once the same earthquake is ingested from EMSC.
+ *
+ * Catalog is only filled inside the package, by parsers and the base, so a
+ * catalog published by the base is read-only to everyone else.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeCatalog {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static final Region[] REGIONS = Region.values();
+
+	private static final ScaleType[] SCALE_TYPES = ScaleType.values();
+
+	/**
+	 * Tracker slot of the whole catalog, after per region slots
+	 */
+	private static final int ALL = REGIONS.length;
+
+	/**
+	 * Create an empty catalog
+	 */
+	public EarthquakeCatalog() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	private EarthquakeCatalog(EarthquakeCatalog source) {
+		eventIds = Arrays.copyOf(source.eventIds, source.size);
+		times = Arrays.copyOf(source.times, source.size);
+		magnitudes = Arrays.copyOf(source.magnitudes, source.size);
+		latitudes = Arrays.copyOf(source.latitudes, source.size);
+		longitudes = Arrays.copyOf(source.longitudes, source.size);
+		depths = Arrays.copyOf(source.depths, source.size);
+		regions = Arrays.copyOf(source.regions, source.size);
+		scaleTypes = Arrays.copyOf(source.scaleTypes, source.size);
+		ids = source.ids.copy();
+		legacyKeys = source.legacyKeys == null ? null : source.legacyKeys
+				.copy();
+		size = source.size;
+		sorted = source.sorted;
+		latestRows = source.latestRows.clone();
+		oldestRows = source.oldestRows.clone();
+		strongestRows = source.strongestRows.clone();
+	}
+
+	/**
+	 * Create catalog over given columns, the arrays are not copied
+	 *
+	 * @throws IllegalArgumentException
+	 *             in case of unknown region or scale type ordinals
+	 */
+	EarthquakeCatalog(long[] eventIds, long[] times, float[] magnitudes,
+			float[] latitudes, float[] longitudes, float[] depths,
+			byte[] regions, byte[] scaleTypes, int size) {
+		for (int row = 0; row < size; row++) {
+			if (regions[row] < 0 || regions[row] >= REGIONS.length
+					|| scaleTypes[row] < 0
+					|| scaleTypes[row] >= SCALE_TYPES.length) {
+				throw new IllegalArgumentException("Wrong ordinals at row "
+						+ row);
+			}
+			if (row > 0 && times[row] < times[row - 1]) {
+				sorted = false;
+			}
+		}
+
+		this.eventIds = eventIds;
+		this.times = times;
+		this.magnitudes = magnitudes;
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.depths = depths;
+		this.regions = regions;
+		this.scaleTypes = scaleTypes;
+		this.size = size;
+		rehash();
+	}
+
+	/**
+	 * Add earthquake to the catalog, unless the same earthquake is already
+	 * stored
+	 *
+	 * @param quake
+	 *            Earthquake to add
+	 *
+	 * @return true if earthquake was added, false if it is a duplicate
+	 */
+	boolean add(Earthquake quake) {
+		return add(quake.getEventId() == null ? 0 : quake.getEventId(), quake
+				.getDateTime().getTime(), quake.getMagnitude()
+				.floatValue(), quake.getLatitude().floatValue(), quake
+				.getLongitude().floatValue(), quake.getDepth().floatValue(),
+				quake.getRegion(), quake.getScaleType());
+	}
+
+	/**
+	 * Add earthquake to the catalog, unless the same earthquake is already
+	 * stored
+	 *
+	 * @param eventId
+	 *            EMSC event id, 0 if unknown
+	 *
+	 * @return true if earthquake was added, false if it is a duplicate
+	 */
+	boolean add(long eventId, long time, float magnitude,
+			float latitude, float longitude, float depth, Region region,
+			ScaleType scaleType) {
+		if (region == null || scaleType == null) {
+			throw new IllegalArgumentException(
+					"Region and scale type must be not null!");
+		}
+
+		if (eventId > 0 && ids.get(eventId) >= 0) {
+			return false;
+		}
+
+		long legacyKey = legacyKey(time, region.ordinal(), magnitude);
+		if (eventId <= 0 || legacyKeys != null) {
+			int row = getLegacyKeys().get(legacyKey);
+			if (row >= 0) {
+				if (eventId <= 0) {
+					return false;
+				}
+				if (eventIds[row] == 0) {
+					eventIds[row] = eventId;
+					ids.put(eventId, row);
+					return false;
+				}
+			}
+		}
+
+		if (size == times.length) {
+			grow();
+		}
+
+		if (size > 0 && time < times[size - 1]) {
+			sorted = false;
+		}
+
+		eventIds[size] = Math.max(eventId, 0);
+		times[size] = time;
+		magnitudes[size] = magnitude;
+		latitudes[size] = latitude;
+		longitudes[size] = longitude;
+		depths[size] = depth;
+		regions[size] = (byte) region.ordinal();
+		scaleTypes[size] = (byte) scaleType.ordinal();
+		if (eventId > 0) {
+			ids.put(eventId, size);
+		}
+		KeyTable keys = legacyKeys;
+		if (keys != null) {
+			keys.put(legacyKey, size);
+		}
+		track(size);
+		size++;
+
+		return true;
+	}
+
+	/**
+	 * Add all earthquakes of another catalog in its row order, skipping
+	 * duplicates
+	 *
+	 * @param other
+	 *            Source catalog
+	 *
+	 * @return Count of earthquakes added
+	 */
+	int addAll(EarthquakeCatalog other) {
+		int added = 0;
+		for (int row = 0; row < other.size; row++) {
+			if (add(other.eventIds[row], other.times[row],
+					other.magnitudes[row], other.latitudes[row],
+					other.longitudes[row], other.depths[row],
+					REGIONS[other.regions[row]],
+					SCALE_TYPES[other.scaleTypes[row]])) {
+				added++;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Restore date/time order after out of order insertions. Row numbers
+	 * obtained before this call become invalid if the order has changed.
+	 */
+	void sort() {
+		if (sorted) {
+			return;
+		}
+
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		mergeSort(order, new int[size], 0, size);
+
+		long[] newEventIds = new long[times.length];
+		long[] newTimes = new long[times.length];
+		float[] newMagnitudes = new float[times.length];
+		float[] newLatitudes = new float[times.length];
+		float[] newLongitudes = new float[times.length];
+		float[] newDepths = new float[times.length];
+		byte[] newRegions = new byte[times.length];
+		byte[] newScaleTypes = new byte[times.length];
+		for (int i = 0; i < size; i++) {
+			int row = order[i];
+			newEventIds[i] = eventIds[row];
+			newTimes[i] = times[row];
+			newMagnitudes[i] = magnitudes[row];
+			newLatitudes[i] = latitudes[row];
+			newLongitudes[i] = longitudes[row];
+			newDepths[i] = depths[row];
+			newRegions[i] = regions[row];
+			newScaleTypes[i] = scaleTypes[row];
+		}
+		eventIds = newEventIds;
+		times = newTimes;
+		magnitudes = newMagnitudes;
+		latitudes = newLatitudes;
+		longitudes = newLongitudes;
+		depths = newDepths;
+		regions = newRegions;
+		scaleTypes = newScaleTypes;
+
+		rehash();
+		sorted = true;
+		version++;
+	}
+
+	/**
+	 * Create a copy of the catalog, sharing no arrays with this one
+	 *
+	 * @return Catalog copy
+	 */
+	public EarthquakeCatalog copy() {
+		return new EarthquakeCatalog(this);
+	}
+
+	/**
+	 * Find row of the earthquake with given EMSC event id
+	 *
+	 * @return Row number or -1 if there is no such earthquake
+	 */
+	public int find(long eventId) {
+		return eventId > 0 ? ids.get(eventId) : -1;
+	}
+
+	/**
+	 * Find row of the earthquake with given date/time second, region and
+	 * magnitude tenth
+	 *
+	 * @return Row number or -1 if there is no such earthquake
+	 */
+	public int find(long time, Region region, float magnitude) {
+		return getLegacyKeys().get(legacyKey(time, region.ordinal(), magnitude));
+	}
+
+	/**
+	 * Get earthquakes count
+	 *
+	 * @return Earthquakes count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get EMSC event id
+	 *
+	 * @return Event id or 0 if unknown
+	 */
+	public long getEventId(int row) {
+		return eventIds[row];
+	}
+
+	public long getTime(int row) {
+		return times[row];
+	}
+
+	public float getMagnitude(int row) {
+		return magnitudes[row];
+	}
+
+	public float getLatitude(int row) {
+		return latitudes[row];
+	}
+
+	public float getLongitude(int row) {
+		return longitudes[row];
+	}
+
+	public float getDepth(int row) {
+		return depths[row];
+	}
+
+	public int getRegionOrdinal(int row) {
+		return regions[row];
+	}
+
+	public Region getRegion(int row) {
+		return REGIONS[regions[row]];
+	}
+
+	public ScaleType getScaleType(int row) {
+		return SCALE_TYPES[scaleTypes[row]];
+	}
+
+	/**
+	 * Check if rows are in date/time order, that is no earthquakes were added
+	 * out of order since the last sort
+	 *
+	 * @return true if rows are sorted by date/time
+	 */
+	public boolean isSorted() {
+		return sorted;
+	}
+
+	/**
+	 * Get first row with date/time not before the given one, by binary search
+	 *
+	 * @param time
+	 *            Date/time, epoch millis
+	 *
+	 * @return Row number, size() if all earthquakes are earlier
+	 *
+	 * @throws IllegalStateException
+	 *             if the catalog is not sorted
+	 */
+	public int lowerBound(long time) {
+		if (!sorted) {
+			throw new IllegalStateException("Catalog is not sorted!");
+		}
+
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (times[middle] < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Get row of the latest earthquake, the first one stored if there are
+	 * several
+	 *
+	 * @param region
+	 *            Region, null for all regions
+	 *
+	 * @return Row number or -1 if there are no such earthquakes
+	 */
+	public int getLatestRow(Region region) {
+		return latestRows[region == null ? ALL : region.ordinal()];
+	}
+
+	/**
+	 * Get row of the earliest earthquake, the first one stored if there are
+	 * several
+	 *
+	 * @param region
+	 *            Region, null for all regions
+	 *
+	 * @return Row number or -1 if there are no such earthquakes
+	 */
+	public int getOldestRow(Region region) {
+		return oldestRows[region == null ? ALL : region.ordinal()];
+	}
+
+	/**
+	 * Get row of the strongest earthquake, the first one stored if there are
+	 * several
+	 *
+	 * @param region
+	 *            Region, null for all regions
+	 *
+	 * @return Row number or -1 if there are no such earthquakes
+	 */
+	public int getStrongestRow(Region region) {
+		return strongestRows[region == null ? ALL : region.ordinal()];
+	}
+
+	/**
+	 * Get layout version, which changes every time rows are reordered
+	 *
+	 * @return Layout version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/*
+	 * Raw columns, arrays could be longer than the catalog size
+	 */
+
+	long[] getEventIds() {
+		return eventIds;
+	}
+
+	long[] getTimes() {
+		return times;
+	}
+
+	float[] getMagnitudes() {
+		return magnitudes;
+	}
+
+	float[] getLatitudes() {
+		return latitudes;
+	}
+
+	float[] getLongitudes() {
+		return longitudes;
+	}
+
+	float[] getDepths() {
+		return depths;
+	}
+
+	byte[] getRegionOrdinals() {
+		return regions;
+	}
+
+	byte[] getScaleTypeOrdinals() {
+		return scaleTypes;
+	}
+
+	/**
+	 * Get secondary indexes, brought up to date with the catalog
+	 */
+	EarthquakeIndex getIndex() {
+		if (index == null) {
+			index = new EarthquakeIndex(this);
+		}
+		return index;
+	}
+
+	SpatialIndex getSpatialIndex() {
+		if (spatialIndex == null) {
+			spatialIndex = new SpatialIndex(this);
+		}
+		return spatialIndex;
+	}
+
+	/**
+	 * Create earthquake entity for specified row
+	 *
+	 * @param row
+	 *            Row number
+	 *
+	 * @return New earthquake entity
+	 */
+	public Earthquake get(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row: " + row + ", size: "
+					+ size);
+		}
+
+		Earthquake quake = new Earthquake();
+		if (eventIds[row] != 0) {
+			quake.setEventId(eventIds[row]);
+		}
+		quake.setDateTime(new Date(times[row]));
+		quake.setMagnitude(toDouble(magnitudes[row]));
+		quake.setLatitude(toDouble(latitudes[row]));
+		quake.setLongitude(toDouble(longitudes[row]));
+		quake.setDepth(toDouble(depths[row]));
+		quake.setRegion(getRegion(row));
+		quake.setScaleType(getScaleType(row));
+		return quake;
+	}
+
+	/* private members goes below */
+
+	private long[] eventIds;
+	private long[] times;
+	private float[] magnitudes;
+	private float[] latitudes;
+	private float[] longitudes;
+	private float[] depths;
+	private byte[] regions;
+	private byte[] scaleTypes;
+	private int size;
+	private boolean sorted = true;
+	private int version;
+	private volatile EarthquakeIndex index;
+	private volatile SpatialIndex spatialIndex;
+
+	/*
+	 * Rows by event id and, once earthquakes without id show up, rows by
+	 * legacy key. Legacy keys may also be built lazily by readers of a
+	 * published catalog, the table is filled first and only then published
+	 * through the volatile field, so a reader never sees it half-filled.
+	 */
+	private KeyTable ids;
+	private volatile KeyTable legacyKeys;
+
+	/*
+	 * Latest, oldest and strongest rows per region and overall, kept up to date
+	 * on every insertion
+	 */
+	private int[] latestRows;
+	private int[] oldestRows;
+	private int[] strongestRows;
+
+	private void allocate(int capacity) {
+		eventIds = new long[capacity];
+		times = new long[capacity];
+		magnitudes = new float[capacity];
+		latitudes = new float[capacity];
+		longitudes = new float[capacity];
+		depths = new float[capacity];
+		regions = new byte[capacity];
+		scaleTypes = new byte[capacity];
+		ids = new KeyTable(capacity);
+		resetTrackers();
+	}
+
+	private void grow() {
+		int capacity = Math.max(INITIAL_CAPACITY, times.length * 2);
+		eventIds = Arrays.copyOf(eventIds, capacity);
+		times = Arrays.copyOf(times, capacity);
+		magnitudes = Arrays.copyOf(magnitudes, capacity);
+		latitudes = Arrays.copyOf(latitudes, capacity);
+		longitudes = Arrays.copyOf(longitudes, capacity);
+		depths = Arrays.copyOf(depths, capacity);
+		regions = Arrays.copyOf(regions, capacity);
+		scaleTypes = Arrays.copyOf(scaleTypes, capacity);
+	}
+
+	private void rehash() {
+		boolean legacy = legacyKeys != null;
+		ids = new KeyTable(size);
+		for (int row = 0; row < size; row++) {
+			if (eventIds[row] != 0) {
+				ids.put(eventIds[row], row);
+			} else {
+				legacy = true;
+			}
+		}
+
+		legacyKeys = null;
+		if (legacy) {
+			getLegacyKeys();
+		}
+
+		resetTrackers();
+		for (int row = 0; row < size; row++) {
+			track(row);
+		}
+	}
+
+	private void resetTrackers() {
+		latestRows = new int[ALL + 1];
+		oldestRows = new int[ALL + 1];
+		strongestRows = new int[ALL + 1];
+		Arrays.fill(latestRows, -1);
+		Arrays.fill(oldestRows, -1);
+		Arrays.fill(strongestRows, -1);
+	}
+
+	private void track(int row) {
+		track(row, regions[row]);
+		track(row, ALL);
+	}
+
+	private void track(int row, int slot) {
+		int latest = latestRows[slot];
+		if (latest < 0 || times[row] > times[latest]) {
+			latestRows[slot] = row;
+		}
+		int oldest = oldestRows[slot];
+		if (oldest < 0 || times[row] < times[oldest]) {
+			oldestRows[slot] = row;
+		}
+		int strongest = strongestRows[slot];
+		if (strongest < 0 || magnitudes[row] > magnitudes[strongest]) {
+			strongestRows[slot] = row;
+		}
+	}
+
+	private KeyTable getLegacyKeys() {
+		KeyTable keys = legacyKeys;
+		if (keys == null) {
+			keys = new KeyTable(size);
+			for (int row = 0; row < size; row++) {
+				keys.put(legacyKey(times[row], regions[row], magnitudes[row]),
+						row);
+			}
+			legacyKeys = keys;
+		}
+		return keys;
+	}
+
+	/*
+	 * Negative key of date/time second, region and magnitude tenth
+	 */
+	private static long legacyKey(long time, int region, float magnitude) {
+		long tenths = Math.round(magnitude * 10f) & 0x3ff;
+		return -((((time / 1000) << 4 | region) << 10 | tenths) + 1);
+	}
+
+	/*
+	 * Stable merge sort of row numbers by date/time
+	 */
+	private void mergeSort(int[] order, int[] buffer, int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		mergeSort(order, buffer, from, middle);
+		mergeSort(order, buffer, middle, to);
+		if (times[order[middle - 1]] <= times[order[middle]]) {
+			return;
+		}
+
+		System.arraycopy(order, from, buffer, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to
+					|| (left < middle && times[buffer[left]] <= times[buffer[right]])) {
+				order[i] = buffer[left++];
+			} else {
+				order[i] = buffer[right++];
+			}
+		}
+	}
+
+	/*
+	 * Restore the decimal value the float was parsed from
+	 */
+	private static Double toDouble(float value) {
+		return Double.valueOf(Float.toString(value));
+	}
+
+}
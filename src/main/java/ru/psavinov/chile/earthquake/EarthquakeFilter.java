@@ -0,0 +1,358 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Earthquake predicate by region, date/time, magnitude, depth, scale type and
+ * location. Conditions are set in chain, all of them must hold, unset
+ * conditions match everything:
+ *
+ * <pre>
+ * new EarthquakeFilter().regions(Region.Biobio).magnitudeGT(5)
+ * </pre>
+ *
+ * Limits are compared with single precision, as magnitudes, depths and
+ * coordinates are stored in the catalog.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeFilter {
+
+	/**
+	 * Accept earthquakes of specified regions only
+	 *
+	 * @param regiones
+	 *            Regions array
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter regions(Region... regiones) {
+		boolean[] selected = new boolean[Region.values().length];
+		for (Region r : regiones) {
+			if (r == null) {
+				throw new IllegalArgumentException("Region must be not null!");
+			}
+			selected[r.ordinal()] = true;
+		}
+		regions = selected;
+		return this;
+	}
+
+	/**
+	 * Accept earthquakes in date/time range
+	 *
+	 * @param from
+	 *            Range start, inclusive
+	 * @param to
+	 *            Range end, exclusive
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter between(Date from, Date to) {
+		return between(from.getTime(), to.getTime());
+	}
+
+	/**
+	 * Accept earthquakes in date/time range
+	 *
+	 * @param from
+	 *            Range start, epoch millis, inclusive
+	 * @param to
+	 *            Range end, epoch millis, exclusive
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter between(long from, long to) {
+		timeFrom = from;
+		timeTo = to;
+		return this;
+	}
+
+	/**
+	 * Accept earthquakes with magnitude greater than the limit
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter magnitudeGT(double gt) {
+		magnitudeFrom = (float) gt;
+		magnitudeFromInclusive = false;
+		return this;
+	}
+
+	/**
+	 * Accept earthquakes with magnitude greater than or equal to the limit
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter magnitudeGE(double ge) {
+		magnitudeFrom = (float) ge;
+		magnitudeFromInclusive = true;
+		return this;
+	}
+
+	/**
+	 * Accept earthquakes with magnitude less than the limit
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter magnitudeLT(double lt) {
+		magnitudeTo = (float) lt;
+		magnitudeToInclusive = false;
+		return this;
+	}
+
+	/**
+	 * Accept earthquakes with magnitude less than or equal to the limit
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter magnitudeLE(double le) {
+		magnitudeTo = (float) le;
+		magnitudeToInclusive = true;
+		return this;
+	}
+
+	/**
+	 * Accept earthquakes with depth in range, both limits inclusive
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter depth(double from, double to) {
+		if (to < from) {
+			throw new IllegalArgumentException("Wrong depth range: " + from
+					+ " - " + to);
+		}
+		depthFrom = (float) from;
+		depthTo = (float) to;
+		return this;
+	}
+
+	/**
+	 * Accept earthquakes measured in specified scales only
+	 *
+	 * @param types
+	 *            Scale types array
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter scaleTypes(ScaleType... types) {
+		boolean[] selected = new boolean[ScaleType.values().length];
+		for (ScaleType t : types) {
+			if (t == null) {
+				throw new IllegalArgumentException(
+						"Scale type must be not null!");
+			}
+			selected[t.ordinal()] = true;
+		}
+		scaleTypes = selected;
+		return this;
+	}
+
+	/**
+	 * Accept earthquakes inside geographic box, bounds inclusive. Box does not
+	 * wrap around the antimeridian.
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter box(double minLatitude, double maxLatitude,
+			double minLongitude, double maxLongitude) {
+		box = new double[] { minLatitude, maxLatitude, minLongitude,
+				maxLongitude };
+		return this;
+	}
+
+	/**
+	 * Accept earthquakes within great-circle distance from the point
+	 *
+	 * @param radius
+	 *            Distance, km, inclusive
+	 *
+	 * @return This filter
+	 */
+	public EarthquakeFilter distance(double latitude, double longitude,
+			double radius) {
+		circle = new double[] { latitude, longitude, radius };
+		return this;
+	}
+
+	/**
+	 * Check catalog row
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog
+	 * @param row
+	 *            Row number
+	 *
+	 * @return true if the earthquake matches all conditions
+	 */
+	public boolean accept(EarthquakeCatalog catalog, int row) {
+		if (regions != null && !regions[catalog.getRegionOrdinal(row)]) {
+			return false;
+		}
+		long time = catalog.getTime(row);
+		if (time < timeFrom || time >= timeTo) {
+			return false;
+		}
+		float magnitude = catalog.getMagnitude(row);
+		if (!(magnitudeFromInclusive ? magnitude >= magnitudeFrom
+				: magnitude > magnitudeFrom)
+				|| !(magnitudeToInclusive ? magnitude <= magnitudeTo
+						: magnitude < magnitudeTo)) {
+			return false;
+		}
+		float depth = catalog.getDepth(row);
+		if (!(depth >= depthFrom && depth <= depthTo)) {
+			return false;
+		}
+		if (scaleTypes != null
+				&& !scaleTypes[catalog.getScaleType(row).ordinal()]) {
+			return false;
+		}
+		if (box != null || circle != null) {
+			float latitude = catalog.getLatitude(row);
+			float longitude = catalog.getLongitude(row);
+			if (box != null
+					&& !(latitude >= box[0] && latitude <= box[1]
+							&& longitude >= box[2] && longitude <= box[3])) {
+				return false;
+			}
+			if (circle != null
+					&& !(SpatialIndex.distance(circle[0], circle[1], latitude,
+							longitude) <= circle[2])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* private members goes below */
+
+	private boolean[] regions;
+	private long timeFrom = Long.MIN_VALUE;
+	private long timeTo = Long.MAX_VALUE;
+	private float magnitudeFrom = Float.NEGATIVE_INFINITY;
+	private boolean magnitudeFromInclusive = true;
+	private float magnitudeTo = Float.POSITIVE_INFINITY;
+	private boolean magnitudeToInclusive = true;
+	private float depthFrom = Float.NEGATIVE_INFINITY;
+	private float depthTo = Float.POSITIVE_INFINITY;
+	private boolean[] scaleTypes;
+	private double[] box;
+	private double[] circle;
+
+	/*
+	 * Condition accessors for query planning
+	 */
+
+	EarthquakeFilter copy() {
+		EarthquakeFilter copy = new EarthquakeFilter();
+		copy.regions = regions == null ? null : regions.clone();
+		copy.timeFrom = timeFrom;
+		copy.timeTo = timeTo;
+		copy.magnitudeFrom = magnitudeFrom;
+		copy.magnitudeFromInclusive = magnitudeFromInclusive;
+		copy.magnitudeTo = magnitudeTo;
+		copy.magnitudeToInclusive = magnitudeToInclusive;
+		copy.depthFrom = depthFrom;
+		copy.depthTo = depthTo;
+		copy.scaleTypes = scaleTypes == null ? null : scaleTypes.clone();
+		copy.box = box == null ? null : box.clone();
+		copy.circle = circle == null ? null : circle.clone();
+		return copy;
+	}
+
+	/**
+	 * Selected regions, null if any region matches
+	 */
+	boolean[] getRegions() {
+		return regions;
+	}
+
+	boolean hasTime() {
+		return timeFrom != Long.MIN_VALUE || timeTo != Long.MAX_VALUE;
+	}
+
+	long getTimeFrom() {
+		return timeFrom;
+	}
+
+	long getTimeTo() {
+		return timeTo;
+	}
+
+	boolean hasMagnitude() {
+		return magnitudeFrom != Float.NEGATIVE_INFINITY
+				|| magnitudeTo != Float.POSITIVE_INFINITY;
+	}
+
+	float getMagnitudeFrom() {
+		return magnitudeFrom;
+	}
+
+	boolean isMagnitudeFromInclusive() {
+		return magnitudeFromInclusive;
+	}
+
+	float getMagnitudeTo() {
+		return magnitudeTo;
+	}
+
+	boolean isMagnitudeToInclusive() {
+		return magnitudeToInclusive;
+	}
+
+	boolean hasDepth() {
+		return depthFrom != Float.NEGATIVE_INFINITY
+				|| depthTo != Float.POSITIVE_INFINITY;
+	}
+
+	boolean hasScaleTypes() {
+		return scaleTypes != null;
+	}
+
+	/**
+	 * Box as min/max latitude, min/max longitude, null if not set
+	 */
+	double[] getBox() {
+		return box;
+	}
+
+	/**
+	 * Circle as latitude, longitude, radius, null if not set
+	 */
+	double[] getCircle() {
+		return circle;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder("filter[");
+		if (regions != null) {
+			b.append(" regions=").append(Arrays.toString(regions));
+		}
+		if (hasTime()) {
+			b.append(" time=").append(timeFrom).append("..").append(timeTo);
+		}
+		if (hasMagnitude()) {
+			b.append(" magnitude=").append(magnitudeFromInclusive ? '[' : '(')
+					.append(magnitudeFrom).append("..").append(magnitudeTo)
+					.append(magnitudeToInclusive ? ']' : ')');
+		}
+		if (hasDepth()) {
+			b.append(" depth=").append(depthFrom).append("..").append(depthTo);
+		}
+		if (scaleTypes != null) {
+			b.append(" scaleTypes=").append(Arrays.toString(scaleTypes));
+		}
+		if (box != null) {
+			b.append(" box=").append(Arrays.toString(box));
+		}
+		if (circle != null) {
+			b.append(" circle=").append(Arrays.toString(circle));
+		}
+		return b.append(" ]").toString();
+	}
+
+}
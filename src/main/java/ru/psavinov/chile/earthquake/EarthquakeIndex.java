@@ -0,0 +1,238 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.Arrays;
+
+/**
+ * Secondary indexes over the earthquakes catalog: rows by region, rows by month
+ * and rows ordered by magnitude(overall and per region).
+ *
+ * Index follows the catalog incrementally: rows appended since the last query
+ * are added to the postings and merged into magnitude orders, the index is
+ * rebuilt only when catalog rows were reordered. Catalog changes must not race
+ * with queries, concurrent queries over an unchanged catalog are safe.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+class EarthquakeIndex {
+
+	private final EarthquakeCatalog catalog;
+
+	EarthquakeIndex(EarthquakeCatalog catalog) {
+		this.catalog = catalog;
+		reset();
+	}
+
+	/**
+	 * Get rows of specified region, in ascending order
+	 */
+	RowList getRegionRows(Region region) {
+		sync();
+		return regionRows[region.ordinal()];
+	}
+
+	/**
+	 * Get rows of specified month, in ascending order
+	 */
+	RowList getMonthRows(int month) {
+		sync();
+		return monthRows[month];
+	}
+
+	/**
+	 * Get rows ordered by magnitude, for all regions if region is null
+	 */
+	MagnitudeOrder getMagnitudeOrder(Region region) {
+		sync();
+		return region == null ? magnitudeOrder
+				: regionMagnitudeOrders[region.ordinal()];
+	}
+
+	/**
+	 * Rows ordered by magnitude, ties ordered by row number
+	 */
+	class MagnitudeOrder {
+
+		private int[] rows = new int[0];
+		private int size;
+
+		/**
+		 * Get position of the first row with magnitude greater than or equal to
+		 * the limit
+		 */
+		int lowerBound(float magnitude) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (catalog.getMagnitude(rows[middle]) < magnitude) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Get position of the first row with magnitude greater than the limit
+		 */
+		int upperBound(float magnitude) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (catalog.getMagnitude(rows[middle]) <= magnitude) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Get row at the position
+		 */
+		int get(int position) {
+			return rows[position];
+		}
+
+		/**
+		 * Get rows between positions, in ascending row order
+		 */
+		RowList slice(int from, int to) {
+			RowList list = new RowList(to - from);
+			if (from < to) {
+				int[] slice = Arrays.copyOfRange(rows, from, to);
+				Arrays.sort(slice);
+				for (int row : slice) {
+					list.add(row);
+				}
+			}
+			return list;
+		}
+
+		private void merge(RowList added) {
+			int count = added.size();
+			int[] sortedAdded = Arrays.copyOf(added.array(), count);
+			sortByMagnitude(sortedAdded, new int[count], 0, count);
+
+			int[] merged = new int[size + count];
+			int left = 0;
+			int right = 0;
+			for (int i = 0; i < merged.length; i++) {
+				if (right >= count
+						|| (left < size && catalog.getMagnitude(rows[left]) <= catalog
+								.getMagnitude(sortedAdded[right]))) {
+					merged[i] = rows[left++];
+				} else {
+					merged[i] = sortedAdded[right++];
+				}
+			}
+			rows = merged;
+			size = merged.length;
+		}
+
+		private void sortByMagnitude(int[] order, int[] buffer, int from,
+				int to) {
+			if (to - from < 2) {
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			sortByMagnitude(order, buffer, from, middle);
+			sortByMagnitude(order, buffer, middle, to);
+
+			System.arraycopy(order, from, buffer, from, to - from);
+			int left = from;
+			int right = middle;
+			for (int i = from; i < to; i++) {
+				if (right >= to
+						|| (left < middle && catalog.getMagnitude(buffer[left]) <= catalog
+								.getMagnitude(buffer[right]))) {
+					order[i] = buffer[left++];
+				} else {
+					order[i] = buffer[right++];
+				}
+			}
+		}
+	}
+
+	/* private members goes below */
+
+	private int version;
+	private volatile int indexed;
+	private RowList[] regionRows;
+	private RowList[] monthRows;
+	private MagnitudeOrder magnitudeOrder;
+	private MagnitudeOrder[] regionMagnitudeOrders;
+	private MonthCursor months;
+
+	private void reset() {
+		int regions = Region.values().length;
+		regionRows = new RowList[regions];
+		regionMagnitudeOrders = new MagnitudeOrder[regions];
+		for (int i = 0; i < regions; i++) {
+			regionRows[i] = new RowList();
+			regionMagnitudeOrders[i] = new MagnitudeOrder();
+		}
+		monthRows = new RowList[12];
+		for (int i = 0; i < 12; i++) {
+			monthRows[i] = new RowList();
+		}
+		magnitudeOrder = new MagnitudeOrder();
+		months = new MonthCursor();
+		indexed = 0;
+		version = catalog.getVersion();
+	}
+
+	/**
+	 * Index rows appended since the last sync. Lock-free when the catalog has
+	 * not changed since then, so catalogs are synced once before they are
+	 * shared between threads.
+	 */
+	void sync() {
+		if (indexed == catalog.size() && version == catalog.getVersion()) {
+			return;
+		}
+
+		synchronized (this) {
+			if (version != catalog.getVersion()) {
+				reset();
+			}
+
+			int size = catalog.size();
+			if (indexed == size) {
+				return;
+			}
+
+			RowList added = new RowList(size - indexed);
+			RowList[] regionAdded = new RowList[regionRows.length];
+			for (int row = indexed; row < size; row++) {
+				int region = catalog.getRegionOrdinal(row);
+				regionRows[region].add(row);
+				monthRows[months.monthOf(catalog.getTime(row))].add(row);
+
+				added.add(row);
+				if (regionAdded[region] == null) {
+					regionAdded[region] = new RowList();
+				}
+				regionAdded[region].add(row);
+			}
+
+			magnitudeOrder.merge(added);
+			for (int i = 0; i < regionAdded.length; i++) {
+				if (regionAdded[i] != null) {
+					regionMagnitudeOrders[i].merge(regionAdded[i]);
+				}
+			}
+
+			indexed = size;
+		}
+	}
+
+}
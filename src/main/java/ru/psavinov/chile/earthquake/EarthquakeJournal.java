@@ -0,0 +1,287 @@
+package ru.psavinov.chile.earthquake;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local earthquakes base persistence. The binary snapshot holds a full copy of
+ * the catalog, newly ingested earthquakes are appended to the journal file
+ * only. Once the journal grows big enough it is compacted into a new snapshot
+ * by a background thread. Text base file of the previous versions is still
+ * read when there is no snapshot yet.
+ *
+ * Compaction rotates the journal first, so earthquakes appended while the
+ * snapshot is being written go to a fresh journal and nothing is lost. Both the
+ * rotated and the current journal are replayed on load, duplicates are
+ * rejected by the catalog.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeJournal {
+
+	public static final String SNAPSHOT_FILE = "earthquakes.snapshot";
+
+	public static final String BASE_FILE = "earthquakes.base";
+
+	public static final String JOURNAL_FILE = "earthquakes.journal";
+
+	public static final String SYNC_FILE = "earthquakes.sync";
+
+	/**
+	 * Journal is compacted when it holds more than this share of the catalog
+	 */
+	private static final int COMPACTION_RATIO = 8;
+
+	/**
+	 * ... but never before it holds this many earthquakes
+	 */
+	private static final int COMPACTION_MIN = 1024;
+
+	/**
+	 * Compaction is not retried for this long after a failure, the delay is
+	 * doubled by every next failure...
+	 */
+	private static final long RETRY_DELAY = 60 * 1000L;
+
+	/**
+	 * ... up to this delay
+	 */
+	private static final long RETRY_DELAY_MAX = 60 * 60 * 1000L;
+
+	private final File snapshotFile;
+	private final File baseFile;
+	private final File journalFile;
+	private final File rotatedJournalFile;
+	private final File compactionFile;
+	private final File syncFile;
+
+	/**
+	 * Create journal for specified directory
+	 *
+	 * @param directory
+	 *            Directory to keep base and journal files
+	 */
+	public EarthquakeJournal(File directory) {
+		snapshotFile = new File(directory, SNAPSHOT_FILE);
+		baseFile = new File(directory, BASE_FILE);
+		journalFile = new File(directory, JOURNAL_FILE);
+		rotatedJournalFile = new File(directory, JOURNAL_FILE.concat(".old"));
+		compactionFile = new File(directory, SNAPSHOT_FILE.concat(".tmp"));
+		syncFile = new File(directory, SYNC_FILE);
+	}
+
+	public File getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	/**
+	 * Get text base file, written by the previous versions
+	 *
+	 * @return Text base file
+	 */
+	public File getBaseFile() {
+		return baseFile;
+	}
+
+	/**
+	 * Get remote sync state file
+	 *
+	 * @return Sync state file, see {@link EmscSync}
+	 */
+	public File getSyncFile() {
+		return syncFile;
+	}
+
+	/**
+	 * Get journal files to be replayed after the base file, in replay order
+	 *
+	 * @return Existing journal files
+	 */
+	public List<File> getJournalFiles() {
+		List<File> files = new ArrayList<File>();
+		if (rotatedJournalFile.exists()) {
+			files.add(rotatedJournalFile);
+		}
+		if (journalFile.exists()) {
+			files.add(journalFile);
+		}
+		return files;
+	}
+
+	/**
+	 * Register earthquakes replayed from journal files on load
+	 *
+	 * @param count
+	 *            Earthquakes count
+	 */
+	public synchronized void replayed(int count) {
+		pending += count;
+	}
+
+	/**
+	 * Append catalog rows to the journal
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog
+	 * @param from
+	 *            First row, inclusive
+	 * @param to
+	 *            Last row, exclusive
+	 *
+	 * @throws IOException
+	 *             in case of journal write error
+	 */
+	public synchronized void append(EarthquakeCatalog catalog, int from, int to)
+			throws IOException {
+		if (from >= to) {
+			return;
+		}
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(journalFile, true), "UTF-8"));
+		try {
+			write(writer, catalog, from, to);
+		} finally {
+			writer.close();
+		}
+
+		pending += to - from;
+	}
+
+	/**
+	 * Check if the journal should be compacted
+	 *
+	 * @param catalogSize
+	 *            Current catalog size
+	 *
+	 * @return true if the snapshot is missing or journal is too big, false
+	 *         while backing off after a failed compaction
+	 */
+	public synchronized boolean needsCompaction(int catalogSize) {
+		if (System.currentTimeMillis() < retryTime) {
+			return false;
+		}
+		return !snapshotFile.exists()
+				|| pending > Math.max(COMPACTION_MIN, catalogSize
+						/ COMPACTION_RATIO);
+	}
+
+	/**
+	 * Write catalog snapshot and drop the journal, in background
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog, copied before return
+	 *
+	 * @return Compaction thread or null if compaction is already running
+	 */
+	public synchronized Thread compact(EarthquakeCatalog catalog) {
+		if (compaction != null && compaction.isAlive()) {
+			return null;
+		}
+
+		/*
+		 * Rotated journal of a failed compaction is still waiting to be
+		 * dropped, the current journal stays where it is then
+		 */
+		if (!rotatedJournalFile.exists()) {
+			if (journalFile.exists() && !journalFile.renameTo(rotatedJournalFile)) {
+				failed(new IOException("Could not rotate " + journalFile));
+				return null;
+			}
+			pending = 0;
+		}
+
+		final EarthquakeCatalog snapshot = catalog.copy();
+		compaction = new Thread(new Runnable() {
+			public void run() {
+				try {
+					writeSnapshot(snapshot);
+				} catch (IOException e) {
+					failed(e);
+				}
+			}
+		}, "earthquakes-compaction");
+		compaction.start();
+
+		return compaction;
+	}
+
+	/**
+	 * Write catalog rows in the local base text format
+	 *
+	 * @param writer
+	 *            Target writer
+	 * @param catalog
+	 *            Earthquakes catalog
+	 * @param from
+	 *            First row, inclusive
+	 * @param to
+	 *            Last row, exclusive
+	 *
+	 * @throws IOException
+	 *             in case of write error
+	 */
+	public static void write(Writer writer, EarthquakeCatalog catalog,
+			int from, int to) throws IOException {
+		StringBuilder b = new StringBuilder(128);
+		for (int row = from; row < to; row++) {
+			b.setLength(0);
+			DateCodec.append(b, catalog.getTime(row), ';');
+			b.append(';')
+					.append(catalog.getLatitude(row)).append(';')
+					.append(catalog.getLongitude(row)).append(';')
+					.append(catalog.getDepth(row)).append("; ;")
+					.append(catalog.getScaleType(row).name()).append(';')
+					.append(catalog.getMagnitude(row)).append(';')
+					.append(catalog.getRegion(row).name()).append(';');
+			if (catalog.getEventId(row) != 0) {
+				b.append(';').append(catalog.getEventId(row)).append(';');
+			}
+			b.append('\n');
+			writer.append(b);
+		}
+	}
+
+	/* private members goes below */
+
+	private int pending;
+	private Thread compaction;
+	private long retryDelay;
+	private long retryTime;
+
+	/*
+	 * Failed compaction is logged and not retried for a while, a missing
+	 * snapshot would trigger it on every poll otherwise
+	 */
+	private synchronized void failed(IOException e) {
+		e.printStackTrace();
+		retryDelay = retryDelay == 0 ? RETRY_DELAY : Math.min(
+				retryDelay * 2, RETRY_DELAY_MAX);
+		retryTime = System.currentTimeMillis() + retryDelay;
+		System.out.println("Compaction failed, next attempt in "
+				+ retryDelay / 1000 + " s");
+	}
+
+	private void writeSnapshot(EarthquakeCatalog snapshot) throws IOException {
+		EarthquakeSnapshot.write(compactionFile, snapshot);
+
+		synchronized (this) {
+			if (!compactionFile.renameTo(snapshotFile)
+					&& !(snapshotFile.delete() && compactionFile
+							.renameTo(snapshotFile))) {
+				throw new IOException("Could not replace " + snapshotFile);
+			}
+			rotatedJournalFile.delete();
+			retryDelay = 0;
+			retryTime = 0;
+		}
+	}
+
+}
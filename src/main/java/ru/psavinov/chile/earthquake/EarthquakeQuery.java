@@ -0,0 +1,641 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Earthquakes query: filter conditions plus result order and limit, see
+ * {@link EarthquakeBase#query(EarthquakeFilter)}:
+ *
+ * <pre>
+ * base.query(new EarthquakeFilter().regions(Region.Biobio).magnitudeGT(5))
+ * 		.orderBy(Order.MAGNITUDE_DESC).limit(10)
+ * </pre>
+ *
+ * Query is planned against the catalog indexes: candidate rows are taken from
+ * the cheapest of the date/time range, region postings, magnitude order and
+ * spatial grid, remaining conditions are checked on each candidate. When
+ * candidates already come in the requested order they are checked lazily and
+ * evaluation stops as soon as the limit is reached, otherwise matching rows are
+ * collected and sorted first. Earthquake entities are created for returned
+ * rows only.
+ *
+ * Date/time order is the catalog row order, which holds for loaded and polled
+ * catalogs. Query is bound to the catalog state it was created for and is not
+ * thread-safe.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeQuery implements Iterable<Earthquake> {
+
+	/**
+	 * Result order
+	 */
+	public enum Order {
+		/**
+		 * Oldest first
+		 */
+		TIME_ASC,
+		/**
+		 * Latest first
+		 */
+		TIME_DESC,
+		/**
+		 * Weakest first, equal magnitudes in date/time order
+		 */
+		MAGNITUDE_ASC,
+		/**
+		 * Strongest first, exact reverse of MAGNITUDE_ASC
+		 */
+		MAGNITUDE_DESC
+	}
+
+	/**
+	 * Create query over the catalog
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog, must not change while the query is used
+	 * @param filter
+	 *            Earthquakes filter, copied, so later filter changes do not
+	 *            affect the query
+	 */
+	EarthquakeQuery(EarthquakeCatalog catalog, EarthquakeFilter filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException("Filter must be not null!");
+		}
+		this.catalog = catalog;
+		this.filter = filter.copy();
+	}
+
+	/**
+	 * Set result order, date/time ascending by default
+	 *
+	 * @return This query
+	 */
+	public EarthquakeQuery orderBy(Order order) {
+		if (order == null) {
+			throw new IllegalArgumentException("Order must be not null!");
+		}
+		this.order = order;
+		plan = null;
+		return this;
+	}
+
+	/**
+	 * Return at most specified count of earthquakes, first ones in the result
+	 * order
+	 *
+	 * @return This query
+	 */
+	public EarthquakeQuery limit(int limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("Wrong limit: " + limit);
+		}
+		this.limit = limit;
+		plan = null;
+		return this;
+	}
+
+	/**
+	 * Iterate over matching earthquakes in the result order
+	 *
+	 * @return Lazy iterator
+	 */
+	public Iterator<Earthquake> iterator() {
+		final Cursor cursor = cursor(true);
+		return new Iterator<Earthquake>() {
+
+			private int next = cursor.next();
+
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			public Earthquake next() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				int row = next;
+				next = cursor.next();
+				return catalog.get(row);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException(
+						"Query result is read-only");
+			}
+		};
+	}
+
+	/**
+	 * Get matching earthquakes as a set. Order only matters for the limit, set
+	 * is always in date/time order.
+	 *
+	 * @return Set of matching earthquakes
+	 */
+	public EarthquakeView toSet() {
+		Plan p = plan();
+		if (limit < 0 && p.exact) {
+			EarthquakeView view = p.source.toView();
+			if (view != null) {
+				return view;
+			}
+		}
+
+		RowList matched = new RowList();
+		Cursor cursor = cursor(limit >= 0);
+		for (int row = cursor.next(); row >= 0; row = cursor.next()) {
+			matched.add(row);
+		}
+		int[] rows = Arrays.copyOf(matched.array(), matched.size());
+		Arrays.sort(rows);
+		return new EarthquakeView(catalog, rows, rows.length);
+	}
+
+	/**
+	 * Count matching earthquakes, no earthquake entities are created
+	 *
+	 * @return Earthquakes count
+	 */
+	public int count() {
+		Plan p = plan();
+		if (p.exact) {
+			return limit < 0 ? p.source.size() : Math.min(limit, p.source
+					.size());
+		}
+
+		int count = 0;
+		Cursor cursor = cursor(false);
+		while (cursor.next() >= 0) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Describe the query plan, for diagnostics
+	 *
+	 * @return Plan description
+	 */
+	public String explain() {
+		Plan p = plan();
+		StringBuilder b = new StringBuilder(p.source.name);
+		b.append(": ").append(p.source.size()).append(" candidates");
+		if (!p.exact) {
+			b.append(", filtered");
+		}
+		b.append(p.streaming ? ", streamed " : ", sorted ").append(order);
+		if (limit >= 0) {
+			b.append(", limit ").append(limit);
+		}
+		return b.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "query[" + filter + " order=" + order + " limit=" + limit + "]";
+	}
+
+	/* private members goes below */
+
+	private final EarthquakeCatalog catalog;
+	private final EarthquakeFilter filter;
+	private Order order = Order.TIME_ASC;
+	private int limit = -1;
+	private Plan plan;
+
+	private static class Plan {
+
+		private final Source source;
+		/*
+		 * Candidates match the filter, no need to check them
+		 */
+		private final boolean exact;
+		/*
+		 * Candidates come in the result order
+		 */
+		private final boolean streaming;
+
+		Plan(Source source, boolean exact, boolean streaming) {
+			this.source = source;
+			this.exact = exact;
+			this.streaming = streaming;
+		}
+	}
+
+	/*
+	 * Candidate rows, estimate is known at planning time, rows are available
+	 * once prepared
+	 */
+	private abstract static class Source {
+
+		private final String name;
+		private final boolean byMagnitude;
+		private final boolean exact;
+
+		Source(String name, boolean byMagnitude, boolean exact) {
+			this.name = name;
+			this.byMagnitude = byMagnitude;
+			this.exact = exact;
+		}
+
+		/*
+		 * Candidates count, never less than the exact count
+		 */
+		int estimate() {
+			return size();
+		}
+
+		void prepare() {
+		}
+
+		abstract int size();
+
+		abstract int row(int position);
+
+		/*
+		 * Candidates as a set without copying, null if not possible
+		 */
+		EarthquakeView toView() {
+			return null;
+		}
+	}
+
+	private abstract static class Cursor {
+
+		/*
+		 * Next row, -1 at the end
+		 */
+		abstract int next();
+	}
+
+	/*
+	 * Choose the cheapest source. Candidates in the result order cost only as
+	 * many rows as are expected to be checked until the limit is reached.
+	 */
+	private Plan plan() {
+		if (plan != null) {
+			return plan;
+		}
+
+		List<Source> sources = sources();
+		long best = Long.MAX_VALUE;
+		for (Source source : sources) {
+			best = Math.min(best, source.estimate());
+		}
+
+		Source chosen = null;
+		long chosenCost = Long.MAX_VALUE;
+		boolean chosenStreaming = false;
+		for (Source source : sources) {
+			boolean streaming = source.byMagnitude == byMagnitude();
+			long cost = source.estimate();
+			if (streaming && limit >= 0 && best > 0) {
+				cost = Math.min(cost, (long) limit * cost / best);
+			}
+			if (cost < chosenCost
+					|| (cost == chosenCost && streaming && !chosenStreaming)) {
+				chosen = source;
+				chosenCost = cost;
+				chosenStreaming = streaming;
+			}
+		}
+
+		chosen.prepare();
+		plan = new Plan(chosen, chosen.exact, chosenStreaming);
+		return plan;
+	}
+
+	private boolean byMagnitude() {
+		return order == Order.MAGNITUDE_ASC || order == Order.MAGNITUDE_DESC;
+	}
+
+	private boolean descending() {
+		return order == Order.TIME_DESC || order == Order.MAGNITUDE_DESC;
+	}
+
+	/*
+	 * Check if conditions enforced by a source are all the filter conditions
+	 */
+	private boolean covers(boolean time, boolean regions, boolean magnitude,
+			boolean box, boolean circle) {
+		return (time || !filter.hasTime())
+				&& (regions || filter.getRegions() == null)
+				&& (magnitude || !filter.hasMagnitude()) && !filter.hasDepth()
+				&& !filter.hasScaleTypes()
+				&& (box || filter.getBox() == null)
+				&& (circle || filter.getCircle() == null);
+	}
+
+	private List<Source> sources() {
+		List<Source> sources = new ArrayList<Source>();
+		boolean sorted = catalog.isSorted();
+		boolean timed = sorted && filter.hasTime();
+
+		/*
+		 * Date/time range, the whole catalog if there is no time condition
+		 */
+		int from = timed ? catalog.lowerBound(filter.getTimeFrom()) : 0;
+		int to = timed ? Math.max(from, catalog.lowerBound(filter.getTimeTo()))
+				: catalog.size();
+		sources.add(new RangeSource(timed ? "time range" : "full scan", from,
+				to, covers(timed, false, false, false, false)));
+
+		EarthquakeIndex index = catalog.getIndex();
+		boolean[] regions = filter.getRegions();
+		Region single = null;
+		if (regions != null) {
+			List<RowList> postings = new ArrayList<RowList>();
+			for (Region r : Region.values()) {
+				if (regions[r.ordinal()]) {
+					postings.add(index.getRegionRows(r));
+					single = r;
+				}
+			}
+			if (postings.size() != 1) {
+				single = null;
+			}
+			sources.add(new RegionSource(postings, timed, covers(timed, true,
+					false, false, false)));
+		}
+
+		if (filter.hasMagnitude() || byMagnitude()) {
+			EarthquakeIndex.MagnitudeOrder magnitudes = index
+					.getMagnitudeOrder(single);
+			int first = filter.isMagnitudeFromInclusive() ? magnitudes
+					.lowerBound(filter.getMagnitudeFrom()) : magnitudes
+					.upperBound(filter.getMagnitudeFrom());
+			int last = filter.isMagnitudeToInclusive() ? magnitudes
+					.upperBound(filter.getMagnitudeTo()) : magnitudes
+					.lowerBound(filter.getMagnitudeTo());
+			sources.add(new MagnitudeSource(single, magnitudes, first, Math
+					.max(first, last), covers(false, single != null, true,
+					false, false)));
+		}
+
+		if (filter.getBox() != null) {
+			sources.add(new SpatialSource(filter.getBox(), covers(false, false,
+					false, true, false)));
+		}
+		if (filter.getCircle() != null) {
+			sources.add(new SpatialSource(filter.getCircle(), covers(false,
+					false, false, false, true)));
+		}
+		return sources;
+	}
+
+	private Cursor cursor(boolean ordered) {
+		Plan p = plan();
+		final Source source = p.source;
+		final boolean exact = p.exact;
+
+		if (!ordered || p.streaming) {
+			final boolean descending = ordered && descending();
+			return new Cursor() {
+
+				private int position = descending ? source.size() - 1 : 0;
+				private int returned;
+
+				int next() {
+					if (limit >= 0 && returned >= limit) {
+						return -1;
+					}
+					while (descending ? position >= 0 : position < source
+							.size()) {
+						int row = source.row(descending ? position--
+								: position++);
+						if (exact || filter.accept(catalog, row)) {
+							returned++;
+							return row;
+						}
+					}
+					return -1;
+				}
+			};
+		}
+
+		RowList matched = new RowList();
+		for (int position = 0; position < source.size(); position++) {
+			int row = source.row(position);
+			if (exact || filter.accept(catalog, row)) {
+				matched.add(row);
+			}
+		}
+		final int[] rows = sort(matched);
+		final boolean descending = descending();
+		final int count = limit < 0 ? rows.length : Math.min(limit,
+				rows.length);
+		return new Cursor() {
+
+			private int returned;
+
+			int next() {
+				if (returned >= count) {
+					return -1;
+				}
+				int position = returned++;
+				return rows[descending ? rows.length - 1 - position : position];
+			}
+		};
+	}
+
+	/*
+	 * Sort rows ascending by the order key
+	 */
+	private int[] sort(RowList matched) {
+		int[] rows = Arrays.copyOf(matched.array(), matched.size());
+		if (!byMagnitude()) {
+			Arrays.sort(rows);
+			return rows;
+		}
+
+		/*
+		 * Magnitude bits made sortable as signed int in the high half, row in
+		 * the low half, so ties are ordered by row
+		 */
+		long[] keys = new long[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			int bits = Float.floatToIntBits(catalog.getMagnitude(rows[i]));
+			bits ^= (bits >> 31) & 0x7fffffff;
+			keys[i] = ((long) bits << 32) | rows[i];
+		}
+		Arrays.sort(keys);
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = (int) keys[i];
+		}
+		return rows;
+	}
+
+	/*
+	 * Position of the first posting row not earlier than the time
+	 */
+	private int lowerBound(RowList rows, long time) {
+		int low = 0;
+		int high = rows.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (catalog.getTime(rows.get(middle)) < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private class RangeSource extends Source {
+
+		private final int from;
+		private final int to;
+
+		RangeSource(String name, int from, int to, boolean exact) {
+			super(name, false, exact);
+			this.from = from;
+			this.to = to;
+		}
+
+		int size() {
+			return to - from;
+		}
+
+		int row(int position) {
+			return from + position;
+		}
+
+		EarthquakeView toView() {
+			return new EarthquakeView(catalog, from, to);
+		}
+	}
+
+	/*
+	 * Region postings, narrowed to the date/time range, several regions are
+	 * merged when prepared
+	 */
+	private class RegionSource extends Source {
+
+		private final List<RowList> postings;
+		private final int[] froms;
+		private final int[] tos;
+		private int[] rows;
+		private int offset;
+		private int size;
+
+		RegionSource(List<RowList> postings, boolean timed, boolean exact) {
+			super("region postings", false, exact);
+			this.postings = postings;
+			froms = new int[postings.size()];
+			tos = new int[postings.size()];
+			for (int i = 0; i < postings.size(); i++) {
+				RowList list = postings.get(i);
+				froms[i] = timed ? lowerBound(list, filter.getTimeFrom()) : 0;
+				tos[i] = timed ? Math.max(froms[i], lowerBound(list, filter
+						.getTimeTo())) : list.size();
+				size += tos[i] - froms[i];
+			}
+		}
+
+		int estimate() {
+			return size;
+		}
+
+		void prepare() {
+			if (postings.size() == 1) {
+				rows = postings.get(0).array();
+				offset = froms[0];
+				return;
+			}
+
+			rows = new int[size];
+			int position = 0;
+			for (int i = 0; i < postings.size(); i++) {
+				System.arraycopy(postings.get(i).array(), froms[i], rows,
+						position, tos[i] - froms[i]);
+				position += tos[i] - froms[i];
+			}
+			Arrays.sort(rows);
+		}
+
+		int size() {
+			return size;
+		}
+
+		int row(int position) {
+			return rows[offset + position];
+		}
+
+		EarthquakeView toView() {
+			return offset == 0 ? new EarthquakeView(catalog, rows, size) : null;
+		}
+	}
+
+	private class MagnitudeSource extends Source {
+
+		private final EarthquakeIndex.MagnitudeOrder magnitudes;
+		private final int from;
+		private final int to;
+
+		MagnitudeSource(Region region, EarthquakeIndex.MagnitudeOrder magnitudes,
+				int from, int to, boolean exact) {
+			super(region == null ? "magnitude order"
+					: "magnitude order of region " + region, true, exact);
+			this.magnitudes = magnitudes;
+			this.from = from;
+			this.to = to;
+		}
+
+		int size() {
+			return to - from;
+		}
+
+		int row(int position) {
+			return magnitudes.get(from + position);
+		}
+	}
+
+	/*
+	 * Box as four bounds or circle as center and radius
+	 */
+	private class SpatialSource extends Source {
+
+		private final double[] area;
+		private final int estimate;
+		private RowList rows;
+
+		SpatialSource(double[] area, boolean exact) {
+			super(area.length == 4 ? "spatial box" : "spatial distance",
+					false, exact);
+			this.area = area;
+			SpatialIndex spatial = catalog.getSpatialIndex();
+			estimate = area.length == 4 ? spatial.estimate(area[0], area[1],
+					area[2], area[3]) : spatial.estimate(area[0], area[1],
+					area[2]);
+		}
+
+		int estimate() {
+			return estimate;
+		}
+
+		void prepare() {
+			SpatialIndex spatial = catalog.getSpatialIndex();
+			rows = area.length == 4 ? spatial.inBox(area[0], area[1], area[2],
+					area[3]) : spatial.inRadius(area[0], area[1], area[2]);
+		}
+
+		int size() {
+			return rows.size();
+		}
+
+		int row(int position) {
+			return rows.get(position);
+		}
+
+		EarthquakeView toView() {
+			return rows.toView(catalog);
+		}
+	}
+
+}
@@ -0,0 +1,285 @@
+package ru.psavinov.chile.earthquake;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary catalog snapshot. The file starts with a fixed header(magic, format
+ * version, earthquakes count) followed by catalog columns, each column is a
+ * fixed-width big-endian array:
+ *
+ * <pre>
+ * int    magic "EQCL"
+ * int    version
+ * int    count
+ * long   EMSC event id            [count], since version 2
+ * long   date/time, epoch millis  [count]
+ * float  magnitude                [count]
+ * float  latitude                 [count]
+ * float  longitude                [count]
+ * float  depth                    [count]
+ * byte   region ordinal           [count]
+ * byte   scale type ordinal       [count]
+ * </pre>
+ *
+ * Columns are written and read in bulk through a small heap buffer, every
+ * buffer load is copied into the column array at once through a typed view,
+ * loading is a copy of every column with no parsing at all. Files are never
+ * memory mapped, not even for reading: a mapping is only released by GC, and
+ * compaction replaces the snapshot file later, which fails on some platforms
+ * while the old file is still mapped. Region and scale type ordinals are
+ * stored, so new enum constants must be added at the end only, unknown
+ * ordinals make the snapshot corrupted.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeSnapshot {
+
+	public static final int MAGIC = 0x4551434C;
+
+	public static final int VERSION = 2;
+
+	private static final int HEADER_LENGTH = 12;
+
+	private static final int ROW_LENGTH = 8 + 8 + 4 * 4 + 2;
+
+	/**
+	 * Row length of version 1 snapshots, without event ids
+	 */
+	private static final int ROW_LENGTH_1 = ROW_LENGTH - 8;
+
+	/**
+	 * I/O buffer size
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Write catalog snapshot
+	 *
+	 * @param file
+	 *            Target file, replaced if exists
+	 * @param catalog
+	 *            Earthquakes catalog, must be sorted
+	 *
+	 * @throws IOException
+	 *             in case of write error
+	 */
+	public static void write(File file, EarthquakeCatalog catalog)
+			throws IOException {
+		int count = catalog.size();
+
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			FileChannel channel = stream.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(count);
+			putLongs(channel, buffer, catalog.getEventIds(), count);
+			putLongs(channel, buffer, catalog.getTimes(), count);
+			putFloats(channel, buffer, catalog.getMagnitudes(), count);
+			putFloats(channel, buffer, catalog.getLatitudes(), count);
+			putFloats(channel, buffer, catalog.getLongitudes(), count);
+			putFloats(channel, buffer, catalog.getDepths(), count);
+			putBytes(channel, buffer, catalog.getRegionOrdinals(), count);
+			putBytes(channel, buffer, catalog.getScaleTypeOrdinals(), count);
+			flush(channel, buffer);
+			channel.force(false);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Read catalog snapshot
+	 *
+	 * @param file
+	 *            Snapshot file
+	 *
+	 * @return Earthquakes catalog
+	 *
+	 * @throws IOException
+	 *             in case of read error, corrupted or unsupported snapshot
+	 */
+	public static EarthquakeCatalog read(File file) throws IOException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			FileChannel channel = stream.getChannel();
+			long length = channel.size();
+			if (length < HEADER_LENGTH) {
+				throw new IOException("Corrupted snapshot " + file);
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			buffer.flip();
+			fill(channel, buffer, HEADER_LENGTH);
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Not a snapshot " + file);
+			}
+			int version = buffer.getInt();
+			if (version < 1 || version > VERSION) {
+				throw new IOException("Unsupported snapshot version "
+						+ version + " of " + file);
+			}
+			int count = buffer.getInt();
+			int rowLength = version == 1 ? ROW_LENGTH_1 : ROW_LENGTH;
+			if (count < 0 || length != HEADER_LENGTH + (long) count * rowLength) {
+				throw new IOException("Corrupted snapshot " + file);
+			}
+
+			long[] eventIds = version == 1 ? new long[count] : getLongs(
+					channel, buffer, count);
+			long[] times = getLongs(channel, buffer, count);
+			float[] magnitudes = getFloats(channel, buffer, count);
+			float[] latitudes = getFloats(channel, buffer, count);
+			float[] longitudes = getFloats(channel, buffer, count);
+			float[] depths = getFloats(channel, buffer, count);
+			byte[] regions = getBytes(channel, buffer, count);
+			byte[] scaleTypes = getBytes(channel, buffer, count);
+			if (!valid(regions, Region.values().length)
+					|| !valid(scaleTypes, ScaleType.values().length)) {
+				throw new IOException("Corrupted snapshot " + file);
+			}
+
+			return new EarthquakeCatalog(eventIds, times, magnitudes,
+					latitudes, longitudes, depths, regions, scaleTypes, count);
+		} catch (EOFException e) {
+			throw new IOException("Corrupted snapshot " + file + ": "
+					+ e.getMessage());
+		} finally {
+			stream.close();
+		}
+	}
+
+	/* private members goes below */
+
+	/*
+	 * Writers append to the buffer and write it out once it is full, the
+	 * buffer is left in fill mode
+	 */
+
+	private static void putLongs(FileChannel channel, ByteBuffer buffer,
+			long[] values, int count) throws IOException {
+		for (int i = 0; i < count;) {
+			if (buffer.remaining() < 8) {
+				flush(channel, buffer);
+			}
+			int n = Math.min(buffer.remaining() / 8, count - i);
+			buffer.asLongBuffer().put(values, i, n);
+			buffer.position(buffer.position() + n * 8);
+			i += n;
+		}
+	}
+
+	private static void putFloats(FileChannel channel, ByteBuffer buffer,
+			float[] values, int count) throws IOException {
+		for (int i = 0; i < count;) {
+			if (buffer.remaining() < 4) {
+				flush(channel, buffer);
+			}
+			int n = Math.min(buffer.remaining() / 4, count - i);
+			buffer.asFloatBuffer().put(values, i, n);
+			buffer.position(buffer.position() + n * 4);
+			i += n;
+		}
+	}
+
+	private static void putBytes(FileChannel channel, ByteBuffer buffer,
+			byte[] values, int count) throws IOException {
+		for (int i = 0; i < count;) {
+			if (!buffer.hasRemaining()) {
+				flush(channel, buffer);
+			}
+			int n = Math.min(buffer.remaining(), count - i);
+			buffer.put(values, i, n);
+			i += n;
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/*
+	 * Readers consume the buffer and refill it when it runs short, the buffer
+	 * is left in drain mode
+	 */
+
+	private static long[] getLongs(FileChannel channel, ByteBuffer buffer,
+			int count) throws IOException {
+		long[] values = new long[count];
+		for (int i = 0; i < count;) {
+			if (buffer.remaining() < 8) {
+				fill(channel, buffer, 8);
+			}
+			int n = Math.min(buffer.remaining() / 8, count - i);
+			buffer.asLongBuffer().get(values, i, n);
+			buffer.position(buffer.position() + n * 8);
+			i += n;
+		}
+		return values;
+	}
+
+	private static float[] getFloats(FileChannel channel, ByteBuffer buffer,
+			int count) throws IOException {
+		float[] values = new float[count];
+		for (int i = 0; i < count;) {
+			if (buffer.remaining() < 4) {
+				fill(channel, buffer, 4);
+			}
+			int n = Math.min(buffer.remaining() / 4, count - i);
+			buffer.asFloatBuffer().get(values, i, n);
+			buffer.position(buffer.position() + n * 4);
+			i += n;
+		}
+		return values;
+	}
+
+	private static byte[] getBytes(FileChannel channel, ByteBuffer buffer,
+			int count) throws IOException {
+		byte[] values = new byte[count];
+		for (int i = 0; i < count;) {
+			if (!buffer.hasRemaining()) {
+				fill(channel, buffer, 1);
+			}
+			int n = Math.min(buffer.remaining(), count - i);
+			buffer.get(values, i, n);
+			i += n;
+		}
+		return values;
+	}
+
+	private static boolean valid(byte[] ordinals, int count) {
+		for (byte ordinal : ordinals) {
+			if (ordinal < 0 || ordinal >= count) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Read more bytes, until at least the given count is available
+	 */
+	private static void fill(FileChannel channel, ByteBuffer buffer, int needed)
+			throws IOException {
+		buffer.compact();
+		while (buffer.position() < needed) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException("Unexpected end of file");
+			}
+		}
+		buffer.flip();
+	}
+
+}
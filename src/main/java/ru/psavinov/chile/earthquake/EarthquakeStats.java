@@ -3,8 +3,10 @@ package ru.psavinov.chile.earthquake;
 import java.awt.Font;
 import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.Locale;
+import java.util.Map;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
@@ -31,25 +33,41 @@ import ru.psavinov.chile.earthquake.prediction.EarthquakePredictor;
  */
 public class EarthquakeStats {
 
-	public static void main(String[] args) throws BaseLoadException, IOException {
+	/*
+	 * Magnitude bands of the magnitude chart: < 3.5, 3.5 - 5 and > 5, the upper
+	 * edge is moved just above 5 to keep magnitude 5 in the middle band
+	 */
+	private static final EarthquakeAggregator.Dimension MAGNITUDE_BANDS = EarthquakeAggregator
+			.byMagnitude(3.5, Math.nextUp(5f));
+
+	public static void main(String[] args) throws BaseLoadException, IOException, InterruptedException {
 		EarthquakeBase base = new EarthquakeBase(true);
 		
+		/*
+		 * Count all distributions in a single pass over the base
+		 */
+		EarthquakeAggregator aggregator = new EarthquakeAggregator();
+		CountMatrix byRegion = aggregator.count(EarthquakeAggregator.byRegion());
+		CountMatrix byMagnitude = aggregator.count(MAGNITUDE_BANDS, EarthquakeAggregator.byRegion());
+		CountMatrix byMonth = aggregator.count(EarthquakeAggregator.byMonth());
+		aggregator.aggregate(base.getCatalog());
+		
 		/*
 		 * Create regional distribution chart
 		 */
-		createRegionDistribution(base, "charts/EarthquakesByRegion.png");
+		createRegionDistribution(base, byRegion, "charts/EarthquakesByRegion.png");
 		System.out.println("Regional distribution - OK");
 		
 		/*
 		 * Create magnitude distribution chart
 		 */
-		createMagnitudeDistribution(base, "charts/EarthquakesByMagnitude.png");
+		createMagnitudeDistribution(base, byMagnitude, "charts/EarthquakesByMagnitude.png");
 		System.out.println("Magnitude distribution - OK");
 		
 		/*
 		 * Create month distribution chart
 		 */
-		createMonthDistribution(base, "charts/EarthquakesByMonth.png");
+		createMonthDistribution(base, byMonth, "charts/EarthquakesByMonth.png");
 		System.out.println("Month distribution - OK");
 		
 		System.out.println();
@@ -57,9 +75,9 @@ public class EarthquakeStats {
 		/*
 		 * Possible earthquakes prediction, just a joke ;)
 		 */
+		Map<Region, EarthquakePrediction> predictions = EarthquakePredictor.getPredictions(base);
 		for (Region r : Region.values()) {
-			EarthquakePrediction p;
-			p = EarthquakePredictor.getPredictionByRegion(base, r);
+			EarthquakePrediction p = predictions.get(r);
 			if ( p != null) {
 				System.out.println("Nearest possible earthquake in " + r.getDisplayName() + ": " + p.getDateTime() + " " + p.getMagnitude());
 			}
@@ -71,13 +89,14 @@ public class EarthquakeStats {
 	 * Create month distribution chart with given earthquakes base
 	 * 
 	 * @param base Earthquakes base
+	 * @param byMonth Earthquakes counts by month
 	 * @param outputFileName Output filename (PNG) to store a chart
 	 * 
 	 * @throws IOException
 	 * @throws IllegalArgumentException in case of null or empty earthquakes base
 	 */
 	private static void createMonthDistribution(EarthquakeBase base,
-			String outputFileName) throws IOException {
+			CountMatrix byMonth, String outputFileName) throws IOException {
 		
 		if (base == null || base.getEarthquakes().size() == 0) {
 			throw new IllegalArgumentException("Empty earthquakes base passed");
@@ -85,11 +104,9 @@ public class EarthquakeStats {
 		
 		DefaultPieDataset dataset = new DefaultPieDataset();
 
-		SimpleDateFormat format = new SimpleDateFormat("MMMM");
-		Calendar c = Calendar.getInstance();
 		for (int k = 0; k<=11; k++) {
-			c.set(Calendar.MONTH, k);
-			dataset.setValue(format.format(c.getTime()), base.getByMonth(k).size());
+			dataset.setValue(Month.of(k + 1).getDisplayName(TextStyle.FULL,
+					Locale.getDefault()), byMonth.get(k));
 		}
 
 		JFreeChart chart = ChartFactory.createPieChart3D(
@@ -116,13 +133,14 @@ public class EarthquakeStats {
 	 * Create magnitude distribution chart with given earthquakes base
 	 * 
 	 * @param base Earthquakes base
+	 * @param byMagnitude Earthquakes counts by magnitude band and region
 	 * @param outputFileName Output filename (PNG) to store a chart
 	 * 
 	 * @throws IOException
 	 * @throws IllegalArgumentException in case of null or empty earthquakes bas
 	 */
 	private static void createMagnitudeDistribution(EarthquakeBase base,
-			String outputFileName) throws IOException {
+			CountMatrix byMagnitude, String outputFileName) throws IOException {
 		
 		if (base == null || base.getEarthquakes().size() == 0) {
 			throw new IllegalArgumentException("Empty earthquakes base passed");
@@ -134,13 +152,10 @@ public class EarthquakeStats {
 		
 		String[] categories = new String[Region.values().length];
 		String[] values = new String[]{"< 3.5", "3.5 - 5", "> 5"};
-		double[][] data = new double[3][Region.values().length];
+		double[][] data = byMagnitude.toTable();
 		int c = 0;
 		for (Region r : Region.values()) {
 			categories[c] = r.getDisplayName();
-			data[0][c] = base.getByMagnitudeLTRegion(r, 3.5).size();
-			data[1][c] = base.getByMagnitudeLEGERegion(r, 3.5, 5).size();
-			data[2][c] = base.getByMagnitudeGTRegion(r, 5).size();
 			c++;
 		}
 		
@@ -187,10 +202,35 @@ public class EarthquakeStats {
 			throw new IllegalArgumentException("Empty earthquakes base passed");
 		}
 		
+		EarthquakeAggregator aggregator = new EarthquakeAggregator();
+		CountMatrix byRegion = aggregator.count(EarthquakeAggregator.byRegion());
+		aggregator.aggregate(base.getCatalog());
+		
+		createRegionDistribution(base, byRegion, outputFileName);
+	}
+
+
+	/**
+	 * Create region distribution chart with given earthquakes base and counts
+	 * 
+	 * @param base Earthquakes base
+	 * @param byRegion Earthquakes counts by region
+	 * @param outputFileName Output filename (PNG) to store a chart
+	 * 
+	 * @throws IOException
+	 * @throws IllegalArgumentException in case of null or empty earthquakes base
+	 */
+	private static void createRegionDistribution(EarthquakeBase base, CountMatrix byRegion, 
+			String outputFileName) throws IOException {
+		
+		if (base == null || base.getEarthquakes().size() == 0) {
+			throw new IllegalArgumentException("Empty earthquakes base passed");
+		}
+		
 		DefaultPieDataset dataset = new DefaultPieDataset();
 
 		for (Region r : Region.values()) {
-			dataset.setValue(r.getDisplayName(), base.getByRegion(r).size());
+			dataset.setValue(r.getDisplayName(), byRegion.get(r.ordinal()));
 		}
 
 		JFreeChart chart = ChartFactory.createPieChart3D(
@@ -0,0 +1,164 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscription to newly ingested earthquakes, see
+ * {@link EarthquakeBase#subscribe(EarthquakeFilter, int, Overflow)}. Matching
+ * earthquakes are pushed to a bounded queue, the ingester never waits for a
+ * slow consumer: once the queue is full earthquakes are dropped according to
+ * the overflow policy and counted. Time from the start of the feed response
+ * parsing to delivery is recorded into the latency histogram.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeSubscription {
+
+	/**
+	 * What to drop when the queue is full
+	 */
+	public enum Overflow {
+		/**
+		 * Drop the oldest queued earthquake, keep the new one
+		 */
+		DROP_OLDEST,
+		/**
+		 * Drop the new earthquake
+		 */
+		DROP_NEWEST
+	}
+
+	EarthquakeSubscription(EarthquakeFilter filter, int capacity,
+			Overflow overflow) {
+		if (filter == null || overflow == null) {
+			throw new IllegalArgumentException(
+					"Filter and overflow policy must be not null!");
+		}
+		this.filter = filter;
+		this.overflow = overflow;
+		this.queue = new ArrayBlockingQueue<Delivery>(capacity);
+	}
+
+	/**
+	 * Take next earthquake if any, never waits
+	 *
+	 * @return Earthquake or null if the queue is empty
+	 */
+	public Earthquake poll() {
+		return delivered(queue.poll());
+	}
+
+	/**
+	 * Take next earthquake, waiting if the queue is empty
+	 *
+	 * @param timeout
+	 *            Time to wait
+	 * @param unit
+	 *            Timeout unit
+	 *
+	 * @return Earthquake or null if nothing came in time
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public Earthquake poll(long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return delivered(queue.poll(timeout, unit));
+	}
+
+	/**
+	 * Get count of queued earthquakes
+	 *
+	 * @return Earthquakes count
+	 */
+	public int getQueued() {
+		return queue.size();
+	}
+
+	/**
+	 * Get count of earthquakes dropped because of the full queue
+	 *
+	 * @return Earthquakes count
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Get parse to delivery latencies
+	 *
+	 * @return Latency histogram
+	 */
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	public EarthquakeFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Stop receiving earthquakes, already queued ones can still be taken
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Push an earthquake, never blocks
+	 *
+	 * @param quake
+	 *            Earthquake
+	 * @param parsed
+	 *            Parse start time, System.nanoTime()
+	 */
+	void offer(Earthquake quake, long parsed) {
+		Delivery delivery = new Delivery(quake, parsed);
+		while (!queue.offer(delivery)) {
+			if (overflow == Overflow.DROP_NEWEST) {
+				dropped.incrementAndGet();
+				return;
+			}
+			if (queue.poll() != null) {
+				dropped.incrementAndGet();
+			}
+		}
+	}
+
+	/* private members goes below */
+
+	private final EarthquakeFilter filter;
+	private final Overflow overflow;
+	private final BlockingQueue<Delivery> queue;
+	private final AtomicLong dropped = new AtomicLong();
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private volatile boolean cancelled;
+
+	private Earthquake delivered(Delivery delivery) {
+		if (delivery == null) {
+			return null;
+		}
+		latencies.record(System.nanoTime() - delivery.parsed);
+		return delivery.quake;
+	}
+
+	private static class Delivery {
+
+		private final Earthquake quake;
+		private final long parsed;
+
+		Delivery(Earthquake quake, long parsed) {
+			this.quake = quake;
+			this.parsed = parsed;
+		}
+	}
+
+}
@@ -0,0 +1,201 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only set of earthquakes backed by catalog rows. Earthquake entities are
+ * created lazily while iterating, so size() is free and queries do not copy
+ * any earthquake data.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeView extends AbstractSet<Earthquake> {
+
+	private final EarthquakeCatalog catalog;
+	private final int[] rows;
+	private final int from;
+	private final int size;
+
+	/**
+	 * Create view of the whole catalog
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog
+	 */
+	public EarthquakeView(EarthquakeCatalog catalog) {
+		this(catalog, null, 0, -1);
+	}
+
+	/**
+	 * Create view of the catalog rows range
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog
+	 * @param from
+	 *            First row, inclusive
+	 * @param to
+	 *            Last row, exclusive
+	 */
+	public EarthquakeView(EarthquakeCatalog catalog, int from, int to) {
+		this(catalog, null, from, Math.max(to - from, 0));
+	}
+
+	/**
+	 * Create view of specified catalog rows
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog
+	 * @param rows
+	 *            Ascending row numbers, only first size elements are used
+	 * @param size
+	 *            Rows count
+	 */
+	public EarthquakeView(EarthquakeCatalog catalog, int[] rows, int size) {
+		this(catalog, rows, 0, size);
+	}
+
+	private EarthquakeView(EarthquakeCatalog catalog, int[] rows, int from,
+			int size) {
+		this.catalog = catalog;
+		this.rows = rows;
+		this.from = from;
+		this.size = size;
+	}
+
+	@Override
+	public int size() {
+		return size < 0 ? catalog.size() : size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Earthquake)) {
+			return false;
+		}
+
+		Earthquake quake = (Earthquake) o;
+		int row;
+		if (quake.getEventId() != null) {
+			row = catalog.find(quake.getEventId());
+		} else if (quake.getDateTime() != null && quake.getRegion() != null
+				&& quake.getMagnitude() != null) {
+			row = catalog.find(quake.getDateTime().getTime(), quake
+					.getRegion(), quake.getMagnitude().floatValue());
+			if (row >= 0 && catalog.getEventId(row) != 0) {
+				return false;
+			}
+		} else {
+			return false;
+		}
+		if (row < 0) {
+			return false;
+		}
+
+		if (size < 0) {
+			return true;
+		}
+		return rows == null ? row >= from && row < from + size
+				: binarySearch(row) >= 0;
+	}
+
+	@Override
+	public Iterator<Earthquake> iterator() {
+		return new Iterator<Earthquake>() {
+
+			private int position;
+
+			public boolean hasNext() {
+				return position < size();
+			}
+
+			public Earthquake next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return catalog.get(getRow(position++));
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException(
+						"Earthquakes view is read-only");
+			}
+		};
+	}
+
+	/**
+	 * Iterate over earthquakes accepted by the filter, rows are checked lazily
+	 * and only accepted ones are materialized
+	 *
+	 * @param filter
+	 *            Earthquakes filter
+	 *
+	 * @return Iterator of accepted earthquakes
+	 */
+	public Iterator<Earthquake> iterator(final EarthquakeFilter filter) {
+		return new Iterator<Earthquake>() {
+
+			private int position;
+			private int next = -1;
+
+			public boolean hasNext() {
+				while (next < 0 && position < size()) {
+					int row = getRow(position++);
+					if (filter.accept(catalog, row)) {
+						next = row;
+					}
+				}
+				return next >= 0;
+			}
+
+			public Earthquake next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int row = next;
+				next = -1;
+				return catalog.get(row);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException(
+						"Earthquakes view is read-only");
+			}
+		};
+	}
+
+	/**
+	 * Get catalog row of the element at specified position
+	 *
+	 * @param position
+	 *            Position inside the view
+	 *
+	 * @return Catalog row number
+	 */
+	public int getRow(int position) {
+		return rows == null ? from + position : rows[position];
+	}
+
+	public EarthquakeCatalog getCatalog() {
+		return catalog;
+	}
+
+	private int binarySearch(int row) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (rows[middle] < row) {
+				low = middle + 1;
+			} else if (rows[middle] > row) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+}
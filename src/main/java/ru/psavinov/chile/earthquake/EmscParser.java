@@ -0,0 +1,437 @@
+package ru.psavinov.chile.earthquake;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import ru.psavinov.chile.earthquake.exception.MalformedRecordException;
+import ru.psavinov.chile.earthquake.exception.UnknownRegionException;
+
+/**
+ * Streaming parser of EMSC ';'-separated exports and local text bases. Input
+ * is scanned byte by byte, dates, numbers and regions are decoded in place and
+ * every record goes straight into the catalog, no strings are created except
+ * for region labels seen for the first time.
+ *
+ * Expected record layout is
+ * <code>date;time;latitude;longitude;depth;;scale;magnitude;region;updated;id</code>
+ * , last two fields are optional. Header lines and West Chile Rise earthquakes
+ * are skipped.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EmscParser {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final int FIELDS = 11;
+
+	private static final int REQUIRED_FIELDS = 9;
+
+	private static final int DATE = 0;
+	private static final int TIME = 1;
+	private static final int LATITUDE = 2;
+	private static final int LONGITUDE = 3;
+	private static final int DEPTH = 4;
+	private static final int SCALE = 6;
+	private static final int MAGNITUDE = 7;
+	private static final int REGION = 8;
+	private static final int EVENT_ID = 10;
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15 };
+
+	private final EarthquakeCatalog catalog;
+
+	/**
+	 * Create parser feeding specified catalog
+	 *
+	 * @param catalog
+	 *            Target catalog
+	 */
+	public EmscParser(EarthquakeCatalog catalog) {
+		this.catalog = catalog;
+	}
+
+	/**
+	 * Parse all records of the stream into the catalog, stream is not closed
+	 *
+	 * @param stream
+	 *            Input stream
+	 *
+	 * @return Count of earthquakes added to the catalog
+	 *
+	 * @throws IOException
+	 *             in case of read error or malformed record
+	 * @throws UnknownRegionException
+	 *             in case of record with unknown region
+	 */
+	public int parse(InputStream stream) throws IOException,
+			UnknownRegionException {
+		int added = 0;
+		int length = 0;
+		line = 0;
+
+		while (true) {
+			int read = stream.read(buffer, length, buffer.length - length);
+			if (read < 0) {
+				if (length > 0 && parseLine(0, length)) {
+					added++;
+				}
+				return added;
+			}
+			length += read;
+
+			int start = 0;
+			for (int i = length - read; i < length; i++) {
+				if (buffer[i] == '\n') {
+					if (parseLine(start, i)) {
+						added++;
+					}
+					start = i + 1;
+				}
+			}
+
+			length -= start;
+			System.arraycopy(buffer, start, buffer, 0, length);
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+		}
+	}
+
+	/**
+	 * Parse all records of the byte range into the catalog, last record may
+	 * end without line feed
+	 *
+	 * @param data
+	 *            Input bytes
+	 * @param from
+	 *            First byte, inclusive
+	 * @param to
+	 *            Last byte, exclusive
+	 *
+	 * @return Count of earthquakes added to the catalog
+	 *
+	 * @throws IOException
+	 *             in case of malformed record
+	 * @throws UnknownRegionException
+	 *             in case of record with unknown region
+	 */
+	public int parse(byte[] data, int from, int to) throws IOException,
+			UnknownRegionException {
+		byte[] streamBuffer = buffer;
+		buffer = data;
+		line = 0;
+		try {
+			int added = 0;
+			int start = from;
+			for (int i = from; i < to; i++) {
+				if (data[i] == '\n') {
+					if (parseLine(start, i)) {
+						added++;
+					}
+					start = i + 1;
+				}
+			}
+			if (start < to && parseLine(start, to)) {
+				added++;
+			}
+			return added;
+		} finally {
+			buffer = streamBuffer;
+		}
+	}
+
+	/* private members goes below */
+
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private final int[] fieldStarts = new int[FIELDS];
+	private final int[] fieldEnds = new int[FIELDS];
+	private final int[] numbers = new int[3];
+	private int line;
+
+	/*
+	 * Region labels memo, open addressing table of labels and regions, West
+	 * Chile Rise is stored with null region
+	 */
+	private byte[][] labels = new byte[64][];
+	private Region[] labelRegions = new Region[64];
+	private int labelsCount;
+
+	private boolean parseLine(int from, int to) throws IOException,
+			UnknownRegionException {
+		line++;
+		if (to > from && buffer[to - 1] == '\r') {
+			to--;
+		}
+		if (to == from || buffer[from] < '0' || buffer[from] > '9') {
+			return false;
+		}
+
+		int field = 0;
+		fieldStarts[0] = from;
+		for (int i = from; i < to && field < FIELDS; i++) {
+			if (buffer[i] == ';') {
+				fieldEnds[field] = i;
+				field++;
+				if (field < FIELDS) {
+					fieldStarts[field] = i + 1;
+				}
+			}
+		}
+		if (field < FIELDS) {
+			if (field < REQUIRED_FIELDS - 1) {
+				throw malformed("too few fields");
+			}
+			fieldEnds[field] = to;
+			field++;
+		}
+
+		Region region = parseRegion(fieldStarts[REGION], fieldEnds[REGION]);
+		if (region == null) {
+			return false;
+		}
+
+		long eventId = field > EVENT_ID ? parseEventId(
+				fieldStarts[EVENT_ID], fieldEnds[EVENT_ID]) : 0;
+
+		return catalog.add(eventId, parseDateTime(),
+				parseFloat(fieldStarts[MAGNITUDE], fieldEnds[MAGNITUDE]),
+				parseFloat(fieldStarts[LATITUDE], fieldEnds[LATITUDE]),
+				parseFloat(fieldStarts[LONGITUDE], fieldEnds[LONGITUDE]),
+				parseFloat(fieldStarts[DEPTH], fieldEnds[DEPTH]), region,
+				parseScaleType(fieldStarts[SCALE], fieldEnds[SCALE]));
+	}
+
+	private long parseDateTime() throws IOException {
+		int[] date = parseFields(fieldStarts[DATE], fieldEnds[DATE], '-');
+		int year = date[0];
+		int month = date[1];
+		int day = date[2];
+		int[] time = parseFields(fieldStarts[TIME], fieldEnds[TIME], ':');
+
+		return DateCodec.toEpochMillis(year, month, day, time[0], time[1],
+				time[2]);
+	}
+
+	/*
+	 * Parse three separated non-negative integers, anything after the third
+	 * one(like fractions of seconds) is ignored
+	 */
+	private int[] parseFields(int from, int to, char separator)
+			throws IOException {
+		int index = 0;
+		int value = 0;
+		int digits = 0;
+		int i = skipSpaces(from, to);
+		for (; i < to && index < 3; i++) {
+			byte b = buffer[i];
+			if (b >= '0' && b <= '9') {
+				value = value * 10 + (b - '0');
+				digits++;
+			} else if (b == separator && index < 2 && digits > 0) {
+				numbers[index++] = value;
+				value = 0;
+				digits = 0;
+			} else {
+				break;
+			}
+		}
+		if (index != 2 || digits == 0) {
+			throw malformed("wrong date/time");
+		}
+		numbers[2] = value;
+		return numbers;
+	}
+
+	private float parseFloat(int from, int to) throws IOException {
+		from = skipSpaces(from, to);
+		to = trimSpaces(from, to);
+
+		boolean negative = false;
+		if (from < to && (buffer[from] == '-' || buffer[from] == '+')) {
+			negative = buffer[from] == '-';
+			from++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int scale = -1;
+		for (int i = from; i < to; i++) {
+			byte b = buffer[i];
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (scale >= 0) {
+					scale++;
+				}
+			} else if (b == '.' && scale < 0) {
+				scale = 0;
+			} else {
+				return parseFloatSlow(from, to, negative);
+			}
+		}
+		if (digits == 0) {
+			throw malformed("wrong number");
+		}
+		if (digits >= POWERS_OF_TEN.length) {
+			return parseFloatSlow(from, to, negative);
+		}
+
+		double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+		return (float) (negative ? -value : value);
+	}
+
+	private float parseFloatSlow(int from, int to, boolean negative)
+			throws IOException {
+		try {
+			float value = Float.parseFloat(new String(buffer, from, to - from,
+					"ISO-8859-1"));
+			return negative ? -value : value;
+		} catch (NumberFormatException e) {
+			throw malformed("wrong number");
+		}
+	}
+
+	/*
+	 * Event id is informative only, anything but a positive number gives 0
+	 */
+	private long parseEventId(int from, int to) {
+		from = skipSpaces(from, to);
+		to = trimSpaces(from, to);
+		if (to == from || to - from > 18) {
+			return 0;
+		}
+
+		long id = 0;
+		for (int i = from; i < to; i++) {
+			byte b = buffer[i];
+			if (b < '0' || b > '9') {
+				return 0;
+			}
+			id = id * 10 + (b - '0');
+		}
+		return id;
+	}
+
+	private ScaleType parseScaleType(int from, int to) throws IOException {
+		from = skipSpaces(from, to);
+		to = trimSpaces(from, to);
+
+		if (to - from == 0 || (to - from == 1 && upper(buffer[from]) == 'M')) {
+			return ScaleType.ML;
+		}
+		if (to - from == 2 && upper(buffer[from]) == 'M') {
+			switch (upper(buffer[from + 1])) {
+			case 'L':
+				return ScaleType.ML;
+			case 'B':
+				return ScaleType.MB;
+			case 'S':
+				return ScaleType.MS;
+			case 'W':
+				return ScaleType.MW;
+			}
+		}
+
+		try {
+			return ScaleType.getScaleType(new String(buffer, from, to - from,
+					"ISO-8859-1"));
+		} catch (IllegalArgumentException e) {
+			throw malformed("unknown scale type");
+		}
+	}
+
+	private Region parseRegion(int from, int to) throws IOException,
+			UnknownRegionException {
+		from = skipSpaces(from, to);
+		to = trimSpaces(from, to);
+
+		int hash = 0;
+		for (int i = from; i < to; i++) {
+			hash = hash * 31 + buffer[i];
+		}
+
+		int mask = labels.length - 1;
+		int slot = hash & mask;
+		byte[] label;
+		while ((label = labels[slot]) != null) {
+			if (equals(label, from, to)) {
+				return labelRegions[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		String string = new String(buffer, from, to - from, "UTF-8");
+		Region region = string.toUpperCase().contains("WEST CHILE") ? null
+				: Region.getRegion(string);
+
+		labels[slot] = Arrays.copyOfRange(buffer, from, to);
+		labelRegions[slot] = region;
+		if (++labelsCount * 2 > labels.length) {
+			rehashLabels();
+		}
+
+		return region;
+	}
+
+	private void rehashLabels() {
+		byte[][] oldLabels = labels;
+		Region[] oldRegions = labelRegions;
+		labels = new byte[oldLabels.length * 2][];
+		labelRegions = new Region[oldLabels.length * 2];
+		int mask = labels.length - 1;
+		for (int i = 0; i < oldLabels.length; i++) {
+			byte[] label = oldLabels[i];
+			if (label != null) {
+				int hash = 0;
+				for (byte b : label) {
+					hash = hash * 31 + b;
+				}
+				int slot = hash & mask;
+				while (labels[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				labels[slot] = label;
+				labelRegions[slot] = oldRegions[i];
+			}
+		}
+	}
+
+	private boolean equals(byte[] label, int from, int to) {
+		if (label.length != to - from) {
+			return false;
+		}
+		for (int i = 0; i < label.length; i++) {
+			if (label[i] != buffer[from + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int skipSpaces(int from, int to) {
+		while (from < to && buffer[from] == ' ') {
+			from++;
+		}
+		return from;
+	}
+
+	private int trimSpaces(int from, int to) {
+		while (to > from && buffer[to - 1] == ' ') {
+			to--;
+		}
+		return to;
+	}
+
+	private static int upper(byte b) {
+		return b >= 'a' && b <= 'z' ? b - 32 : b;
+	}
+
+	private IOException malformed(String reason) {
+		return new MalformedRecordException(line, reason);
+	}
+
+}
@@ -0,0 +1,313 @@
+package ru.psavinov.chile.earthquake;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.io.IOUtils;
+
+import ru.psavinov.chile.earthquake.exception.UnknownRegionException;
+
+/**
+ * Incremental sync with the EMSC feed. Date/time of the latest ingested
+ * earthquake is remembered in the state file, the next sync asks the feed for
+ * events since that date only(with a small overlap, duplicates are rejected by
+ * the catalog by event id). Response validators are remembered as well, so
+ * repeated requests are conditional and an unchanged feed costs no body at
+ * all. Response body is streamed straight into the parser.
+ *
+ * State advances in two steps: {@link #fetch(EarthquakeCatalog,
+ * EarthquakeCatalog)} keeps the new validators and latest date/time pending,
+ * {@link #commit()} saves them once the fetched earthquakes are stored. Until
+ * then the next fetch repeats the same request, so earthquakes lost between
+ * fetch and store are fetched again.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EmscSync {
+
+	/**
+	 * Feed query parameter limiting events by date
+	 */
+	public static final String START_DATE_PARAMETER = "start_date";
+
+	/**
+	 * Requested period starts this long before the latest earthquake, covers
+	 * time zone differences and late feed updates
+	 */
+	private static final long OVERLAP = 2 * 86400000L;
+
+	/**
+	 * Connection timeout, ms
+	 */
+	private static final int CONNECTION_TIMEOUT = 30000;
+
+	/**
+	 * Timeout of waiting for response data, ms, a stalled feed fails the sync
+	 * instead of hanging the poller
+	 */
+	private static final int READ_TIMEOUT = 60000;
+
+	private static final String REQUEST_URL = "requestUrl";
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "lastModified";
+	private static final String LAST_TIME = "lastTime";
+
+	private final String url;
+	private final File stateFile;
+	private final HttpClient client = new HttpClient();
+
+	/**
+	 * Create sync with the feed
+	 *
+	 * @param url
+	 *            Feed URL, returning EMSC CSV export
+	 * @param stateFile
+	 *            File to keep sync state in, may not exist yet
+	 */
+	public EmscSync(String url, File stateFile) {
+		this.url = url;
+		this.stateFile = stateFile;
+		client.getHttpConnectionManager().getParams().setConnectionTimeout(
+				CONNECTION_TIMEOUT);
+		client.getHttpConnectionManager().getParams()
+				.setSoTimeout(READ_TIMEOUT);
+		loadState();
+	}
+
+	/**
+	 * Fetch earthquakes newer than the latest known one into the catalog and
+	 * commit the state at once
+	 *
+	 * @param catalog
+	 *            Target catalog
+	 *
+	 * @return Count of earthquakes added to the catalog
+	 *
+	 * @throws IOException
+	 *             in case of network or state file error, malformed response
+	 * @throws UnknownRegionException
+	 *             in case of record with unknown region
+	 */
+	public int sync(EarthquakeCatalog catalog) throws IOException,
+			UnknownRegionException {
+		return sync(catalog, catalog);
+	}
+
+	/**
+	 * Fetch earthquakes into a separate catalog and commit the state at once,
+	 * see {@link #fetch(EarthquakeCatalog, EarthquakeCatalog)}
+	 *
+	 * @param known
+	 *            Catalog of already ingested earthquakes
+	 * @param target
+	 *            Target catalog
+	 *
+	 * @return Count of earthquakes added to the target catalog
+	 *
+	 * @throws IOException
+	 *             in case of network or state file error, malformed response
+	 * @throws UnknownRegionException
+	 *             in case of record with unknown region
+	 */
+	public synchronized int sync(EarthquakeCatalog known,
+			EarthquakeCatalog target) throws IOException,
+			UnknownRegionException {
+		int added = fetch(known, target);
+		commit();
+		return added;
+	}
+
+	/**
+	 * Fetch earthquakes newer than the latest known one into a separate
+	 * catalog, leaving the known catalog untouched. Earthquakes of the overlap
+	 * may already be known, merge the target with
+	 * {@link EarthquakeCatalog#addAll(EarthquakeCatalog)} to skip them. State
+	 * of the response is pending until {@link #commit()}, a fetch before that
+	 * repeats the same request.
+	 *
+	 * @param known
+	 *            Catalog of already ingested earthquakes
+	 * @param target
+	 *            Target catalog
+	 *
+	 * @return Count of earthquakes added to the target catalog
+	 *
+	 * @throws IOException
+	 *             in case of network error, malformed response
+	 * @throws UnknownRegionException
+	 *             in case of record with unknown region
+	 */
+	public synchronized int fetch(EarthquakeCatalog known,
+			EarthquakeCatalog target) throws IOException,
+			UnknownRegionException {
+		pending = false;
+		lastTime = latest(known, 0, lastTime);
+
+		String requestUrl = lastTime == 0 ? url : url
+				+ (url.indexOf('?') < 0 ? '?' : '&') + START_DATE_PARAMETER
+				+ "=" + DateCodec.format(lastTime - OVERLAP).substring(0, 10);
+
+		GetMethod get = new GetMethod(requestUrl);
+		try {
+			if (requestUrl.equals(lastRequestUrl)) {
+				if (etag != null) {
+					get.setRequestHeader("If-None-Match", etag);
+				}
+				if (lastModified != null) {
+					get.setRequestHeader("If-Modified-Since", lastModified);
+				}
+			}
+
+			int status = client.executeMethod(get);
+			if (status != HttpStatus.SC_OK) {
+				return 0;
+			}
+
+			int from = target.size();
+			parsed = System.nanoTime();
+			InputStream stream = get.getResponseBodyAsStream();
+			int added = stream == null ? 0 : new EmscParser(target)
+					.parse(stream);
+
+			pendingRequestUrl = requestUrl;
+			pendingEtag = value(get.getResponseHeader("ETag"));
+			pendingLastModified = value(get.getResponseHeader("Last-Modified"));
+			pendingLastTime = latest(target, from, lastTime);
+			pending = true;
+
+			return added;
+		} finally {
+			get.releaseConnection();
+		}
+	}
+
+	/**
+	 * Save state of the last fetch, call once its earthquakes are stored.
+	 * Does nothing if the last fetch got no response body.
+	 *
+	 * @throws IOException
+	 *             in case of state file error
+	 */
+	public synchronized void commit() throws IOException {
+		if (!pending) {
+			return;
+		}
+		lastRequestUrl = pendingRequestUrl;
+		etag = pendingEtag;
+		lastModified = pendingLastModified;
+		lastTime = pendingLastTime;
+		pending = false;
+		saveState();
+	}
+
+	/**
+	 * Get date/time of the latest synced earthquake, pending fetch excluded
+	 *
+	 * @return Epoch millis, 0 if never synced
+	 */
+	public synchronized long getLastTime() {
+		return lastTime;
+	}
+
+	/**
+	 * Get time the latest response started to be parsed, start of the
+	 * subscribers latency
+	 *
+	 * @return System.nanoTime() value, 0 if nothing was fetched yet
+	 */
+	synchronized long getParsed() {
+		return parsed;
+	}
+
+	/* private members goes below */
+
+	private long parsed;
+	private String lastRequestUrl;
+	private String etag;
+	private String lastModified;
+	private long lastTime;
+
+	/*
+	 * State of the last fetch, saved by commit()
+	 */
+	private boolean pending;
+	private String pendingRequestUrl;
+	private String pendingEtag;
+	private String pendingLastModified;
+	private long pendingLastTime;
+
+	private static long latest(EarthquakeCatalog catalog, int from, long time) {
+		for (int row = from; row < catalog.size(); row++) {
+			time = Math.max(time, catalog.getTime(row));
+		}
+		return time;
+	}
+
+	private void loadState() {
+		if (!stateFile.exists()) {
+			return;
+		}
+
+		Properties state = new Properties();
+		InputStream stream = null;
+		try {
+			stream = new FileInputStream(stateFile);
+			state.load(stream);
+			lastRequestUrl = state.getProperty(REQUEST_URL);
+			etag = state.getProperty(ETAG);
+			lastModified = state.getProperty(LAST_MODIFIED);
+			lastTime = Long.parseLong(state.getProperty(LAST_TIME, "0"));
+		} catch (Exception e) {
+			/*
+			 * Broken state only costs a full request
+			 */
+			e.printStackTrace();
+			lastRequestUrl = null;
+			etag = null;
+			lastModified = null;
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+	}
+
+	private void saveState() throws IOException {
+		Properties state = new Properties();
+		state.setProperty(LAST_TIME, String.valueOf(lastTime));
+		if (lastRequestUrl != null) {
+			state.setProperty(REQUEST_URL, lastRequestUrl);
+		}
+		if (etag != null) {
+			state.setProperty(ETAG, etag);
+		}
+		if (lastModified != null) {
+			state.setProperty(LAST_MODIFIED, lastModified);
+		}
+
+		File tmp = new File(stateFile.getPath().concat(".tmp"));
+		OutputStream stream = new FileOutputStream(tmp);
+		try {
+			state.store(stream, "EMSC sync state");
+		} finally {
+			stream.close();
+		}
+		if (!tmp.renameTo(stateFile)
+				&& !(stateFile.delete() && tmp.renameTo(stateFile))) {
+			throw new IOException("Could not replace " + stateFile);
+		}
+	}
+
+	private static String value(Header header) {
+		return header == null ? null : header.getValue();
+	}
+
+}
@@ -0,0 +1,197 @@
+package ru.psavinov.chile.earthquake;
+
+/**
+ * Gutenberg-Richter analytics per region: frequency-magnitude distributions
+ * over the whole history and over a sliding window of the latest days, see
+ * {@link EarthquakeBase#analyze(int, EarthquakeFilter)}.
+ *
+ * Earthquakes are counted into primitive magnitude histograms in a single
+ * pass, every new earthquake costs a couple of increments, so statistics stay
+ * up to date without rescanning the catalog. Sliding window is kept as a ring
+ * of daily histograms plus their running sum: window moves with the latest
+ * earthquake date(UTC days), days falling out of the window are subtracted
+ * from the sum. Late earthquakes are counted into their own day if it is
+ * still inside the window.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class GutenbergRichter {
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	private static final int REGIONS = Region.values().length;
+
+	/*
+	 * Histograms hold BINS counts for every region, then for all regions
+	 */
+	private static final int ALL = REGIONS;
+	private static final int SIZE = (REGIONS + 1) * MagnitudeDistribution.BINS;
+
+	private final int windowDays;
+	private final EarthquakeFilter filter;
+
+	/**
+	 * Create empty analytics
+	 *
+	 * @param windowDays
+	 *            Sliding window length, days
+	 * @param filter
+	 *            Earthquakes to count, for example of one scale type only, null
+	 *            to count all
+	 */
+	public GutenbergRichter(int windowDays, EarthquakeFilter filter) {
+		if (windowDays < 1) {
+			throw new IllegalArgumentException("Wrong window: " + windowDays);
+		}
+		this.windowDays = windowDays;
+		this.filter = filter == null ? null : filter.copy();
+		this.days = new int[windowDays][];
+	}
+
+	/**
+	 * Count all earthquakes of the catalog
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog
+	 */
+	public void add(EarthquakeCatalog catalog) {
+		add(catalog, 0, catalog.size());
+	}
+
+	/**
+	 * Count earthquakes of the catalog rows range
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog
+	 * @param from
+	 *            First row, inclusive
+	 * @param to
+	 *            Last row, exclusive
+	 */
+	public synchronized void add(EarthquakeCatalog catalog, int from, int to) {
+		for (int row = from; row < to; row++) {
+			if (filter == null || filter.accept(catalog, row)) {
+				add(catalog.getTime(row), catalog.getMagnitude(row), catalog
+						.getRegionOrdinal(row));
+			}
+		}
+	}
+
+	/**
+	 * Get distribution over the whole history
+	 *
+	 * @param region
+	 *            Region, null for all regions
+	 *
+	 * @return Distribution snapshot
+	 */
+	public synchronized MagnitudeDistribution getDistribution(Region region) {
+		return new MagnitudeDistribution(total, offset(region));
+	}
+
+	/**
+	 * Get distribution over the sliding window
+	 *
+	 * @param region
+	 *            Region, null for all regions
+	 *
+	 * @return Distribution snapshot
+	 */
+	public synchronized MagnitudeDistribution getWindowDistribution(
+			Region region) {
+		return new MagnitudeDistribution(window, offset(region));
+	}
+
+	/**
+	 * Get sliding window end
+	 *
+	 * @return Epoch millis of the end of the latest earthquake day, exclusive,
+	 *         0 if nothing counted yet
+	 */
+	public synchronized long getWindowEnd() {
+		return latestDay == Long.MIN_VALUE ? 0 : (latestDay + 1)
+				* MILLIS_PER_DAY;
+	}
+
+	public int getWindowDays() {
+		return windowDays;
+	}
+
+	/**
+	 * Stop counting earthquakes ingested by the base poller
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/* private members goes below */
+
+	private final int[] total = new int[SIZE];
+	private final int[] window = new int[SIZE];
+
+	/*
+	 * Daily histograms ring, slot of the day is day % windowDays, slots are
+	 * allocated when first used
+	 */
+	private final int[][] days;
+	private long latestDay = Long.MIN_VALUE;
+
+	private volatile boolean cancelled;
+
+	private void add(long time, float magnitude, int region) {
+		int bin = MagnitudeDistribution.binOf(magnitude);
+		int regionBin = region * MagnitudeDistribution.BINS + bin;
+		int allBin = ALL * MagnitudeDistribution.BINS + bin;
+		total[regionBin]++;
+		total[allBin]++;
+
+		long day = Math.floorDiv(time, MILLIS_PER_DAY);
+		if (day > latestDay) {
+			advance(day);
+		} else if (day <= latestDay - windowDays) {
+			return;
+		}
+
+		int[] counts = days[slot(day)];
+		counts[regionBin]++;
+		counts[allBin]++;
+		window[regionBin]++;
+		window[allBin]++;
+	}
+
+	/*
+	 * Move window end to the day, emptying slots of the days left behind
+	 */
+	private void advance(long day) {
+		long first = latestDay == Long.MIN_VALUE ? day - windowDays + 1 : Math
+				.max(latestDay + 1, day - windowDays + 1);
+		for (long d = first; d <= day; d++) {
+			int slot = slot(d);
+			int[] counts = days[slot];
+			if (counts == null) {
+				days[slot] = new int[SIZE];
+			} else {
+				for (int i = 0; i < SIZE; i++) {
+					window[i] -= counts[i];
+					counts[i] = 0;
+				}
+			}
+		}
+		latestDay = day;
+	}
+
+	private int slot(long day) {
+		return (int) Math.floorMod(day, (long) windowDays);
+	}
+
+	private static int offset(Region region) {
+		return (region == null ? ALL : region.ordinal())
+				* MagnitudeDistribution.BINS;
+	}
+
+}
@@ -0,0 +1,100 @@
+package ru.psavinov.chile.earthquake;
+
+/**
+ * Open addressing table of primitive long keys mapped to catalog rows, no
+ * objects are created on lookups or insertions. Key 0 is reserved as a free
+ * slot marker.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+class KeyTable {
+
+	private long[] keys;
+	private int[] rows;
+	private int size;
+
+	KeyTable(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(expected, 8) - 1) << 2;
+		keys = new long[capacity];
+		rows = new int[capacity];
+	}
+
+	/**
+	 * Get row of the key
+	 *
+	 * @return Row number or -1 if there is no such key
+	 */
+	int get(long key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		long k;
+		while ((k = keys[slot]) != 0) {
+			if (k == key) {
+				return rows[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Map key to the row, replacing previous mapping if any
+	 */
+	void put(long key, int row) {
+		if (key == 0) {
+			throw new IllegalArgumentException("Key must be not zero!");
+		}
+
+		if ((size + 1) * 2 > keys.length) {
+			resize(keys.length * 2);
+		}
+
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		long k;
+		while ((k = keys[slot]) != 0) {
+			if (k == key) {
+				rows[slot] = row;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		rows[slot] = row;
+		size++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	KeyTable copy() {
+		KeyTable copy = new KeyTable(0);
+		copy.keys = keys.clone();
+		copy.rows = rows.clone();
+		copy.size = size;
+		return copy;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldRows = rows;
+		keys = new long[capacity];
+		rows = new int[capacity];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				put(oldKeys[i], oldRows[i]);
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		key ^= (key >>> 33);
+		key *= 0xff51afd7ed558ccdL;
+		key ^= (key >>> 33);
+		return (int) key;
+	}
+
+}
@@ -0,0 +1,96 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power of two microsecond buckets: bucket 0
+ * counts latencies below 1 us, bucket i counts latencies from 2^(i-1) us
+ * (inclusive) to 2^i us(exclusive), the last bucket counts everything above.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class LatencyHistogram {
+
+	public static final int BUCKETS = 40;
+
+	/**
+	 * Record a latency
+	 *
+	 * @param nanos
+	 *            Latency, nanoseconds
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(nanos, 0) / 1000;
+		int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros),
+				BUCKETS - 1);
+		counts.incrementAndGet(bucket);
+	}
+
+	/**
+	 * Get count of latencies in the bucket
+	 *
+	 * @param bucket
+	 *            Bucket number, 0 - BUCKETS-1
+	 *
+	 * @return Latencies count
+	 */
+	public long getCount(int bucket) {
+		return counts.get(bucket);
+	}
+
+	/**
+	 * Get total count of recorded latencies
+	 *
+	 * @return Latencies count
+	 */
+	public long getTotal() {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * Get upper bound of the bucket holding the percentile
+	 *
+	 * @param percentile
+	 *            Percentile, 0 - 100
+	 * @param unit
+	 *            Result unit
+	 *
+	 * @return Latency upper bound, 0 if nothing recorded
+	 */
+	public long getPercentile(double percentile, TimeUnit unit) {
+		long total = getTotal();
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		int bucket = 0;
+		for (; bucket < BUCKETS - 1; bucket++) {
+			seen += counts.get(bucket);
+			if (seen >= rank) {
+				break;
+			}
+		}
+		return unit.convert(1L << bucket, TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count: %d, p50: %d us, p99: %d us, max: %d us",
+				getTotal(), getPercentile(50, TimeUnit.MICROSECONDS),
+				getPercentile(99, TimeUnit.MICROSECONDS),
+				getPercentile(100, TimeUnit.MICROSECONDS));
+	}
+
+	/* private members goes below */
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+}
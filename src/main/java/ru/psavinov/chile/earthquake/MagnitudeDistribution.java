@@ -0,0 +1,238 @@
+package ru.psavinov.chile.earthquake;
+
+/**
+ * Frequency-magnitude distribution: earthquake counts in 0.1 magnitude bins,
+ * with Gutenberg-Richter statistics computed from the bins. Magnitude of
+ * completeness is estimated by maximum curvature(the most populated bin), b
+ * value by the Aki-Utsu maximum likelihood estimator with the Shi-Bolt
+ * standard error.
+ *
+ * Distribution is an immutable snapshot, see {@link GutenbergRichter}.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class MagnitudeDistribution {
+
+	/**
+	 * Magnitude bin width
+	 */
+	public static final double BIN = 0.1;
+
+	/**
+	 * Bins count, bin i holds magnitudes rounded to i * BIN, magnitudes above
+	 * the range are counted in the last bin
+	 */
+	public static final int BINS = 101;
+
+	MagnitudeDistribution(int[] counts, int offset) {
+		this.counts = new int[BINS];
+		System.arraycopy(counts, offset, this.counts, 0, BINS);
+		for (int count : this.counts) {
+			total += count;
+		}
+	}
+
+	/**
+	 * Get earthquakes count in the bin
+	 *
+	 * @param bin
+	 *            Bin number, 0 - BINS-1
+	 *
+	 * @return Earthquakes count
+	 */
+	public int getCount(int bin) {
+		return counts[bin];
+	}
+
+	/**
+	 * Get total earthquakes count
+	 *
+	 * @return Earthquakes count
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Get count of earthquakes with magnitude greater than or equal to the
+	 * limit
+	 *
+	 * @param magnitude
+	 *            Magnitude limit, rounded to the bin
+	 *
+	 * @return Earthquakes count
+	 */
+	public int getCumulative(double magnitude) {
+		int count = 0;
+		for (int bin = binOf(magnitude); bin < BINS; bin++) {
+			count += counts[bin];
+		}
+		return count;
+	}
+
+	/**
+	 * Get log-frequency-magnitude distribution, log10 of the cumulative count
+	 * for every bin
+	 *
+	 * @return log10 N(M >= bin magnitude), negative infinity for empty tail
+	 */
+	public double[] getLogFrequencies() {
+		double[] frequencies = new double[BINS];
+		int cumulative = 0;
+		for (int bin = BINS - 1; bin >= 0; bin--) {
+			cumulative += counts[bin];
+			frequencies[bin] = Math.log10(cumulative);
+		}
+		return frequencies;
+	}
+
+	/**
+	 * Get magnitude of completeness, by maximum curvature
+	 *
+	 * @return Magnitude of completeness, NaN if there are no earthquakes
+	 */
+	public double getCompleteness() {
+		if (total == 0) {
+			return Double.NaN;
+		}
+
+		int mode = 0;
+		for (int bin = 1; bin < BINS; bin++) {
+			if (counts[bin] > counts[mode]) {
+				mode = bin;
+			}
+		}
+		return magnitudeOf(mode);
+	}
+
+	/**
+	 * Get b value above the magnitude of completeness
+	 *
+	 * @return b value, NaN if not enough earthquakes
+	 */
+	public double getBValue() {
+		return getBValue(getCompleteness());
+	}
+
+	/**
+	 * Get b value, Aki-Utsu maximum likelihood estimate
+	 *
+	 * @param completeness
+	 *            Magnitude of completeness, earthquakes below are left out
+	 *
+	 * @return b value, NaN if not enough earthquakes
+	 */
+	public double getBValue(double completeness) {
+		if (Double.isNaN(completeness)) {
+			return Double.NaN;
+		}
+
+		int from = binOf(completeness);
+		double mean = mean(from);
+		if (Double.isNaN(mean) || mean <= magnitudeOf(from) - BIN / 2) {
+			return Double.NaN;
+		}
+		return Math.log10(Math.E) / (mean - (magnitudeOf(from) - BIN / 2));
+	}
+
+	/**
+	 * Get b value standard error, by Shi and Bolt
+	 *
+	 * @param completeness
+	 *            Magnitude of completeness, earthquakes below are left out
+	 *
+	 * @return Standard error, NaN if not enough earthquakes
+	 */
+	public double getBValueError(double completeness) {
+		double b = getBValue(completeness);
+		if (Double.isNaN(b)) {
+			return Double.NaN;
+		}
+
+		int from = binOf(completeness);
+		int n = 0;
+		double mean = mean(from);
+		double squares = 0;
+		for (int bin = from; bin < BINS; bin++) {
+			double deviation = magnitudeOf(bin) - mean;
+			squares += counts[bin] * deviation * deviation;
+			n += counts[bin];
+		}
+		if (n < 2) {
+			return Double.NaN;
+		}
+		return 2.3 * b * b * Math.sqrt(squares / ((double) n * (n - 1)));
+	}
+
+	/**
+	 * Get a value, log10 of the count of earthquakes of magnitude 0 or above
+	 * extrapolated from the completeness magnitude with the b value
+	 *
+	 * @param completeness
+	 *            Magnitude of completeness
+	 *
+	 * @return a value, NaN if not enough earthquakes
+	 */
+	public double getAValue(double completeness) {
+		double b = getBValue(completeness);
+		if (Double.isNaN(b)) {
+			return Double.NaN;
+		}
+		return Math.log10(getCumulative(completeness)) + b
+				* magnitudeOf(binOf(completeness));
+	}
+
+	/**
+	 * Get bin of the magnitude
+	 *
+	 * @param magnitude
+	 *            Magnitude
+	 *
+	 * @return Bin number, magnitudes out of range are counted in the first or
+	 *         the last bin
+	 */
+	public static int binOf(double magnitude) {
+		long bin = Math.round(magnitude / BIN);
+		return bin < 0 ? 0 : bin >= BINS ? BINS - 1 : (int) bin;
+	}
+
+	/**
+	 * Get magnitude of the bin
+	 *
+	 * @param bin
+	 *            Bin number
+	 *
+	 * @return Bin center magnitude
+	 */
+	public static double magnitudeOf(int bin) {
+		return bin * BIN;
+	}
+
+	@Override
+	public String toString() {
+		double completeness = getCompleteness();
+		return String.format("count: %d, Mc: %.1f, b: %.3f +/- %.3f, a: %.3f",
+				total, completeness, getBValue(completeness),
+				getBValueError(completeness), getAValue(completeness));
+	}
+
+	/* private members goes below */
+
+	private final int[] counts;
+	private int total;
+
+	/*
+	 * Mean magnitude of the bins from the specified one
+	 */
+	private double mean(int from) {
+		long n = 0;
+		double sum = 0;
+		for (int bin = from; bin < BINS; bin++) {
+			n += counts[bin];
+			sum += counts[bin] * magnitudeOf(bin);
+		}
+		return n == 0 ? Double.NaN : sum / n;
+	}
+
+}
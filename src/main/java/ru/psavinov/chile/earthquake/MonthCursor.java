@@ -0,0 +1,32 @@
+package ru.psavinov.chile.earthquake;
+
+/**
+ * Month of year lookup for date/time values. Bounds of the last resolved month
+ * are remembered, so walking the time ordered catalog needs date math only once
+ * per month.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+class MonthCursor {
+
+	private long monthStart;
+	private long monthEnd;
+	private int month;
+
+	/**
+	 * Get month of year, as in Calendar.MONTH
+	 */
+	int monthOf(long time) {
+		if (time < monthStart || time >= monthEnd) {
+			int year = DateCodec.yearOf(time);
+			month = DateCodec.monthOf(time);
+			monthStart = DateCodec.toEpochMillis(year, month + 1, 1, 0, 0, 0);
+			monthEnd = month == 11 ? DateCodec.toEpochMillis(year + 1, 1, 1,
+					0, 0, 0) : DateCodec.toEpochMillis(year, month + 2, 1, 0,
+					0, 0);
+		}
+		return month;
+	}
+
+}
@@ -0,0 +1,230 @@
+package ru.psavinov.chile.earthquake;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ru.psavinov.chile.earthquake.exception.MalformedRecordException;
+import ru.psavinov.chile.earthquake.exception.UnknownRegionException;
+
+/**
+ * Multi-core variant of {@link EmscParser} for large imports. Input is split
+ * into byte ranges ending at line feeds, every range is parsed into its own
+ * catalog on a fork-join pool, then range catalogs are merged into the target
+ * catalog in input order. Result is exactly the same as of a sequential parse,
+ * including which of the duplicated records is kept.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class ParallelEmscParser {
+
+	/**
+	 * Smallest range worth a separate task
+	 */
+	private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * Ranges per pool thread, lets idle threads steal the rest of the work
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final EarthquakeCatalog catalog;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Create parser feeding specified catalog
+	 *
+	 * @param catalog
+	 *            Target catalog
+	 * @param pool
+	 *            Pool to parse ranges on
+	 */
+	public ParallelEmscParser(EarthquakeCatalog catalog, ForkJoinPool pool) {
+		this.catalog = catalog;
+		this.pool = pool;
+	}
+
+	/**
+	 * Parse all records of the file into the catalog. File is read into the
+	 * heap at once rather than memory mapped: a mapping is only released by
+	 * GC, and journal files parsed at startup are renamed and deleted by
+	 * compaction later, which fails on Windows while they are mapped.
+	 *
+	 * @param file
+	 *            Input file, up to 2 GiB
+	 *
+	 * @return Count of earthquakes added to the catalog
+	 *
+	 * @throws IOException
+	 *             in case of read error or malformed record
+	 * @throws UnknownRegionException
+	 *             in case of record with unknown region
+	 */
+	public int parse(File file) throws IOException, UnknownRegionException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("File is too large to import: " + file);
+			}
+			ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+			while (data.hasRemaining()) {
+				if (channel.read(data) < 0) {
+					break;
+				}
+			}
+			data.flip();
+			return parse(data);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Parse all records of the buffer into the catalog, from buffer position to
+	 * its limit
+	 *
+	 * @param data
+	 *            Input bytes
+	 *
+	 * @return Count of earthquakes added to the catalog
+	 *
+	 * @throws IOException
+	 *             in case of malformed record
+	 * @throws UnknownRegionException
+	 *             in case of record with unknown region
+	 */
+	public int parse(ByteBuffer data) throws IOException,
+			UnknownRegionException {
+		int[] bounds = split(data);
+		EarthquakeCatalog[] parts = new EarthquakeCatalog[bounds.length - 1];
+		AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+		pool.invoke(new ChunkTask(data, bounds, parts, failure, 0,
+				parts.length));
+
+		Exception e = failure.get();
+		if (e instanceof UnknownRegionException) {
+			throw (UnknownRegionException) e;
+		} else if (e != null) {
+			throw (IOException) e;
+		}
+
+		int added = 0;
+		for (EarthquakeCatalog part : parts) {
+			added += catalog.addAll(part);
+		}
+		return added;
+	}
+
+	/* private members goes below */
+
+	/*
+	 * Range bounds, every range but the last one ends right after a line feed
+	 */
+	private int[] split(ByteBuffer data) {
+		int from = data.position();
+		int to = data.limit();
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, (to - from)
+				/ (pool.getParallelism() * CHUNKS_PER_THREAD));
+
+		RowList bounds = new RowList();
+		bounds.add(from);
+		int start = from;
+		while (to - start > chunkSize) {
+			int end = start + chunkSize;
+			while (end < to && data.get(end - 1) != '\n') {
+				end++;
+			}
+			bounds.add(end);
+			start = end;
+		}
+		if (start < to) {
+			bounds.add(to);
+		}
+		return Arrays.copyOf(bounds.array(), bounds.size());
+	}
+
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ByteBuffer data;
+		private final int[] bounds;
+		private final EarthquakeCatalog[] parts;
+		private final AtomicReference<Exception> failure;
+		private final int first;
+		private final int last;
+
+		ChunkTask(ByteBuffer data, int[] bounds, EarthquakeCatalog[] parts,
+				AtomicReference<Exception> failure, int first, int last) {
+			this.data = data;
+			this.bounds = bounds;
+			this.parts = parts;
+			this.failure = failure;
+			this.first = first;
+			this.last = last;
+		}
+
+		@Override
+		protected void compute() {
+			if (last - first > 1) {
+				int middle = (first + last) >>> 1;
+				invokeAll(new ChunkTask(data, bounds, parts, failure, first,
+						middle), new ChunkTask(data, bounds, parts, failure,
+						middle, last));
+			} else if (last > first && failure.get() == null) {
+				parse(bounds[first], bounds[first + 1]);
+			}
+		}
+
+		private void parse(int from, int to) {
+			EarthquakeCatalog part = new EarthquakeCatalog();
+			try {
+				if (data.hasArray()) {
+					new EmscParser(part).parse(data.array(), data.arrayOffset()
+							+ from, data.arrayOffset() + to);
+				} else {
+					byte[] bytes = new byte[to - from];
+					ByteBuffer range = data.duplicate();
+					range.position(from);
+					range.get(bytes);
+					new EmscParser(part).parse(bytes, 0, bytes.length);
+				}
+			} catch (MalformedRecordException e) {
+				/*
+				 * Range parser counts lines from the range start
+				 */
+				failure.compareAndSet(null, new MalformedRecordException(
+						linesBefore(from) + e.getLine(), e.getReason()));
+			} catch (IOException e) {
+				failure.compareAndSet(null, new IOException("Range at byte "
+						+ from + ": " + e.getMessage(), e));
+			} catch (UnknownRegionException e) {
+				failure.compareAndSet(null, e);
+			}
+			parts[first] = part;
+		}
+
+		/*
+		 * Count of lines before the byte, only counted on failure
+		 */
+		private int linesBefore(int to) {
+			int lines = 0;
+			for (int i = data.position(); i < to; i++) {
+				if (data.get(i) == '\n') {
+					lines++;
+				}
+			}
+			return lines;
+		}
+	}
+
+}
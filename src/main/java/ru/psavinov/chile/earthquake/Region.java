@@ -1,5 +1,13 @@
 package ru.psavinov.chile.earthquake;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import ru.psavinov.chile.earthquake.exception.UnknownRegionException;
 
 
@@ -16,14 +24,14 @@ public enum Region {
 	Atacama("Atacama", 3),
 	Coquimbo("Coquimbo", 4),
 	Valparaiso("Valparaiso", 5),
-	OHiggins("O'Higgins",6),
+	OHiggins("O'Higgins",6,"O`Higgins","Libertador O`Higgins"),
 	Maule("Maule", 7),
 	Biobio("Bio-Bio",8,"Bio-Bio"),
 	Araucania("Araucania" ,9,"La Araucania"),
 	LosLagos("Los Lagos", 10,"Los Lagos"),
 	Aysen("Aisen", 11,"Aisen"),
 	Magallanes("Magallanes", 12, "Antarctica Chilena"),
-	Metropolitana("Región Metropolitana", 13),
+	Metropolitana("Región Metropolitana", 13, "Region Metropolitana"),
 	LosRios("Los Rios", 14,"Los Rios"),
 	Arica_y_Parinacota("Arica y Parinacota", 15,"Arica","Parinacota");
 	
@@ -53,23 +61,45 @@ public enum Region {
 	private String[] names;
 	private String displayName;
 	
+	/**
+	 * Resolve region by EMSC region label(like "OFFSHORE BIO-BIO, CHILE"),
+	 * region name or any of region names.
+	 * 
+	 * Label is normalised first: country suffix, locality prefix(like
+	 * "ISLA CHILOE, ") and offshore prefixes are cut, the rest is looked up
+	 * exactly. Labels which could not be resolved this way are searched for
+	 * names, the longest name found wins. Resolved labels are memoised.
+	 * 
+	 * @param string Region label
+	 * @return Region
+	 * @throws UnknownRegionException in case of unknown label
+	 */
 	public static Region getRegion(String string) throws UnknownRegionException {
 		
-		string = string.toUpperCase().trim();
-		for (Region r : Region.values()) {
-			if (string.contains(r.name().toUpperCase())) {
-				return r;
-			}
-			if (r.getNames() != null && r.getNames().length > 0) {
-				for (String name : r.getNames()) {
-					if (string.contains(name.toUpperCase())) {
-						return r;
-					}					
+		Region region = RESOLVED.get(string);
+		if (region != null) {
+			return region;
+		}
+		
+		String label = string.toUpperCase().trim();
+		region = NAMES.get(normalize(label));
+		if (region == null) {
+			for (String name : PATTERNS) {
+				if (label.contains(name)) {
+					region = NAMES.get(name);
+					break;
 				}
 			}
 		}
 		
-		throw new UnknownRegionException(string);
+		if (region == null) {
+			throw new UnknownRegionException(label);
+		}
+		
+		if (RESOLVED.size() < RESOLVED_LIMIT) {
+			RESOLVED.put(string, region);
+		}
+		return region;
 	}
 
 	public String getDisplayName() {
@@ -80,4 +110,59 @@ public enum Region {
 		this.displayName = displayName;
 	}
 	
+	/* private members goes below */
+	
+	private static final String[] PREFIXES = {"OFFSHORE ", "OFF COAST OF ", "NEAR COAST OF "};
+	
+	private static final String COUNTRY = ", CHILE";
+	
+	private static final int RESOLVED_LIMIT = 4096;
+	
+	/*
+	 * Upper-cased region names and display names to regions
+	 */
+	private static final Map<String, Region> NAMES = new HashMap<String, Region>();
+	
+	/*
+	 * Names of the map above, longest first
+	 */
+	private static final List<String> PATTERNS = new ArrayList<String>();
+	
+	private static final Map<String, Region> RESOLVED = new ConcurrentHashMap<String, Region>();
+	
+	static {
+		for (Region r : Region.values()) {
+			NAMES.put(r.name().toUpperCase(), r);
+			NAMES.put(r.getDisplayName().toUpperCase(), r);
+			for (String name : r.getNames()) {
+				NAMES.put(name.toUpperCase(), r);
+			}
+		}
+		PATTERNS.addAll(NAMES.keySet());
+		Collections.sort(PATTERNS, new Comparator<String>() {
+			public int compare(String o1, String o2) {
+				return o1.length() != o2.length() ? o2.length() - o1.length() : o1.compareTo(o2);
+			}
+		});
+	}
+	
+	private static String normalize(String label) {
+		if (label.endsWith(COUNTRY)) {
+			label = label.substring(0, label.length() - COUNTRY.length());
+		}
+		
+		int comma = label.lastIndexOf(',');
+		if (comma >= 0) {
+			label = label.substring(comma + 1).trim();
+		}
+		
+		for (String prefix : PREFIXES) {
+			if (label.startsWith(prefix)) {
+				return label.substring(prefix.length());
+			}
+		}
+		
+		return label;
+	}
+	
 }
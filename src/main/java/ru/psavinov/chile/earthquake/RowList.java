@@ -0,0 +1,51 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of catalog row numbers
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+class RowList {
+
+	private int[] rows;
+	private int size;
+
+	RowList() {
+		this(16);
+	}
+
+	RowList(int capacity) {
+		rows = new int[Math.max(capacity, 1)];
+	}
+
+	void add(int row) {
+		if (size == rows.length) {
+			rows = Arrays.copyOf(rows, size * 2);
+		}
+		rows[size++] = row;
+	}
+
+	int get(int index) {
+		return rows[index];
+	}
+
+	int size() {
+		return size;
+	}
+
+	int[] array() {
+		return rows;
+	}
+
+	/**
+	 * Create view of the rows, rows must be in ascending order. The view shares
+	 * the array, which is safe as long as the list is only appended to.
+	 */
+	EarthquakeView toView(EarthquakeCatalog catalog) {
+		return new EarthquakeView(catalog, rows, size);
+	}
+
+}
@@ -0,0 +1,373 @@
+package ru.psavinov.chile.earthquake;
+
+import java.util.Arrays;
+
+/**
+ * Uniform latitude/longitude grid over the catalog. Grid covers the bounding
+ * box of all earthquakes, cell size is chosen for a few earthquakes per cell
+ * on average, rows are bucketed by cell with a counting sort, so a query only
+ * checks earthquakes of the cells overlapping the searched area. Coordinates
+ * are copied in cell order, so the check reads memory sequentially even for
+ * areas covering a large part of the catalog.
+ *
+ * Grid is built once per catalog state and rebuilt when rows are added or
+ * reordered, which never happens to catalogs published by the poller.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+class SpatialIndex {
+
+	/**
+	 * Mean Earth radius, km
+	 */
+	static final double EARTH_RADIUS = 6371.0088;
+
+	private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS / 180;
+
+	private static final int ROWS_PER_CELL = 8;
+
+	private static final double MIN_CELL = 0.01;
+
+	/**
+	 * Results larger than 1/BITMAP_RATIO of the catalog are ordered with a
+	 * bitmap of all rows instead of a sort
+	 */
+	private static final int BITMAP_RATIO = 64;
+
+	private static final int MAX_CELLS = 1 << 22;
+
+	/**
+	 * Search box margin, degrees, keeps points right on the circle inside the
+	 * box despite rounding
+	 */
+	private static final double MARGIN = 1e-6;
+
+	private final EarthquakeCatalog catalog;
+
+	SpatialIndex(EarthquakeCatalog catalog) {
+		this.catalog = catalog;
+		build();
+	}
+
+	/**
+	 * Get rows inside the box, bounds inclusive
+	 *
+	 * @return Ascending row numbers
+	 */
+	RowList inBox(double minLatitude, double maxLatitude,
+			double minLongitude, double maxLongitude) {
+		sync();
+		RowList result = new RowList();
+		collect(result, minLatitude, maxLatitude, minLongitude, maxLongitude,
+				Double.NaN, 0, 0);
+		return sorted(result);
+	}
+
+	/**
+	 * Get rows within the great-circle distance from the point
+	 *
+	 * @param radius
+	 *            Distance, km
+	 *
+	 * @return Ascending row numbers
+	 */
+	RowList inRadius(double latitude, double longitude, double radius) {
+		sync();
+		RowList result = new RowList();
+		if (radius < 0) {
+			return result;
+		}
+
+		double dLatitude = radius / KM_PER_DEGREE + MARGIN;
+		double minLatitude = latitude - dLatitude;
+		double maxLatitude = latitude + dLatitude;
+		double dLongitude = longitudeSpan(latitude, radius);
+
+		double minLongitude = longitude - dLongitude;
+		double maxLongitude = longitude + dLongitude;
+		if (dLongitude >= 180) {
+			collect(result, minLatitude, maxLatitude, -180, 180, latitude,
+					longitude, radius);
+		} else if (minLongitude < -180) {
+			collect(result, minLatitude, maxLatitude, minLongitude + 360, 180,
+					latitude, longitude, radius);
+			collect(result, minLatitude, maxLatitude, -180, maxLongitude,
+					latitude, longitude, radius);
+		} else if (maxLongitude > 180) {
+			collect(result, minLatitude, maxLatitude, minLongitude, 180,
+					latitude, longitude, radius);
+			collect(result, minLatitude, maxLatitude, -180,
+					maxLongitude - 360, latitude, longitude, radius);
+		} else {
+			collect(result, minLatitude, maxLatitude, minLongitude,
+					maxLongitude, latitude, longitude, radius);
+		}
+		return sorted(result);
+	}
+
+	/**
+	 * Estimate count of rows inside the box: count of rows in the overlapping
+	 * cells, never less than the exact count
+	 *
+	 * @return Rows count upper bound
+	 */
+	int estimate(double minLatitude, double maxLatitude, double minLongitude,
+			double maxLongitude) {
+		sync();
+		return count(minLatitude, maxLatitude, minLongitude, maxLongitude);
+	}
+
+	/**
+	 * Estimate count of rows within the distance from the point: count of rows
+	 * in the cells overlapping the circle bounding box, never less than the
+	 * exact count
+	 *
+	 * @return Rows count upper bound
+	 */
+	int estimate(double latitude, double longitude, double radius) {
+		sync();
+		if (radius < 0) {
+			return 0;
+		}
+		double dLatitude = radius / KM_PER_DEGREE + MARGIN;
+		double dLongitude = longitudeSpan(latitude, radius);
+		if (dLongitude >= 180) {
+			return count(latitude - dLatitude, latitude + dLatitude, -180, 180);
+		}
+		return count(latitude - dLatitude, latitude + dLatitude, longitude
+				- dLongitude, longitude + dLongitude)
+				+ count(latitude - dLatitude, latitude + dLatitude, longitude
+						- dLongitude + 360, 180)
+				+ count(latitude - dLatitude, latitude + dLatitude, -180,
+						longitude + dLongitude - 360);
+	}
+
+	/**
+	 * Great-circle(haversine) distance between two points, km
+	 */
+	static double distance(double latitude1, double longitude1,
+			double latitude2, double longitude2) {
+		double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+		double sinLongitude = Math
+				.sin(Math.toRadians(longitude2 - longitude1) / 2);
+		double h = sinLatitude
+				* sinLatitude
+				+ Math.cos(Math.toRadians(latitude1))
+				* Math.cos(Math.toRadians(latitude2)) * sinLongitude
+				* sinLongitude;
+		return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(h)));
+	}
+
+	/* private members goes below */
+
+	private volatile int indexed = -1;
+	private int version;
+
+	private float minLatitude;
+	private float minLongitude;
+	private double cell;
+	private int latitudeCells;
+	private int longitudeCells;
+
+	/*
+	 * Rows bucketed by cell, rows of the cell c are cellRows[cellStarts[c]]
+	 * up to cellRows[cellStarts[c + 1]], their coordinates are at the same
+	 * positions of cellLatitudes and cellLongitudes
+	 */
+	private int[] cellStarts;
+	private int[] cellRows;
+	private float[] cellLatitudes;
+	private float[] cellLongitudes;
+
+	private void sync() {
+		if (indexed == catalog.size() && version == catalog.getVersion()) {
+			return;
+		}
+		synchronized (this) {
+			if (indexed != catalog.size() || version != catalog.getVersion()) {
+				build();
+			}
+		}
+	}
+
+	private void build() {
+		int size = catalog.size();
+		float maxLatitude = -Float.MAX_VALUE;
+		float maxLongitude = -Float.MAX_VALUE;
+		minLatitude = Float.MAX_VALUE;
+		minLongitude = Float.MAX_VALUE;
+		for (int row = 0; row < size; row++) {
+			minLatitude = Math.min(minLatitude, catalog.getLatitude(row));
+			maxLatitude = Math.max(maxLatitude, catalog.getLatitude(row));
+			minLongitude = Math.min(minLongitude, catalog.getLongitude(row));
+			maxLongitude = Math.max(maxLongitude, catalog.getLongitude(row));
+		}
+		if (size == 0) {
+			minLatitude = maxLatitude = minLongitude = maxLongitude = 0;
+		}
+
+		double height = maxLatitude - minLatitude;
+		double width = maxLongitude - minLongitude;
+		int cells = Math.min(MAX_CELLS, Math.max(1, size / ROWS_PER_CELL));
+		cell = Math.max(MIN_CELL, Math.sqrt(height * width / cells));
+		latitudeCells = (int) (height / cell) + 1;
+		longitudeCells = (int) (width / cell) + 1;
+		while ((long) latitudeCells * longitudeCells > MAX_CELLS) {
+			cell *= 2;
+			latitudeCells = (int) (height / cell) + 1;
+			longitudeCells = (int) (width / cell) + 1;
+		}
+
+		int[] rowCells = new int[size];
+		int[] starts = new int[latitudeCells * longitudeCells + 1];
+		for (int row = 0; row < size; row++) {
+			rowCells[row] = cellOf(catalog.getLatitude(row),
+					catalog.getLongitude(row));
+			starts[rowCells[row] + 1]++;
+		}
+		for (int c = 1; c < starts.length; c++) {
+			starts[c] += starts[c - 1];
+		}
+		int[] rows = new int[size];
+		float[] latitudes = new float[size];
+		float[] longitudes = new float[size];
+		int[] next = Arrays.copyOf(starts, starts.length - 1);
+		for (int row = 0; row < size; row++) {
+			int i = next[rowCells[row]]++;
+			rows[i] = row;
+			latitudes[i] = catalog.getLatitude(row);
+			longitudes[i] = catalog.getLongitude(row);
+		}
+
+		cellStarts = starts;
+		cellRows = rows;
+		cellLatitudes = latitudes;
+		cellLongitudes = longitudes;
+		version = catalog.getVersion();
+		indexed = size;
+	}
+
+	private int cellOf(float latitude, float longitude) {
+		int y = clamp((int) ((latitude - minLatitude) / cell), latitudeCells);
+		int x = clamp((int) ((longitude - minLongitude) / cell), longitudeCells);
+		return y * longitudeCells + x;
+	}
+
+	/*
+	 * Add rows inside the box and, unless the center latitude is NaN, within
+	 * the radius from the center
+	 */
+	private void collect(RowList result, double fromLatitude,
+			double toLatitude, double fromLongitude, double toLongitude,
+			double latitude, double longitude, double radius) {
+		if (cellRows.length == 0 || fromLatitude > toLatitude
+				|| fromLongitude > toLongitude) {
+			return;
+		}
+
+		int y1 = clamp((int) Math.floor((fromLatitude - minLatitude) / cell),
+				latitudeCells);
+		int y2 = clamp((int) Math.floor((toLatitude - minLatitude) / cell),
+				latitudeCells);
+		int x1 = clamp(
+				(int) Math.floor((fromLongitude - minLongitude) / cell),
+				longitudeCells);
+		int x2 = clamp((int) Math.floor((toLongitude - minLongitude) / cell),
+				longitudeCells);
+		boolean circle = !Double.isNaN(latitude);
+
+		for (int y = y1; y <= y2; y++) {
+			for (int c = y * longitudeCells + x1; c <= y * longitudeCells + x2; c++) {
+				for (int i = cellStarts[c]; i < cellStarts[c + 1]; i++) {
+					float rowLatitude = cellLatitudes[i];
+					float rowLongitude = cellLongitudes[i];
+					if (rowLatitude >= fromLatitude
+							&& rowLatitude <= toLatitude
+							&& rowLongitude >= fromLongitude
+							&& rowLongitude <= toLongitude
+							&& (!circle || distance(latitude, longitude,
+									rowLatitude, rowLongitude) <= radius)) {
+						result.add(cellRows[i]);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Count rows of the cells overlapping the box
+	 */
+	private int count(double fromLatitude, double toLatitude,
+			double fromLongitude, double toLongitude) {
+		fromLongitude = Math.max(fromLongitude, -180);
+		toLongitude = Math.min(toLongitude, 180);
+		if (cellRows.length == 0 || fromLatitude > toLatitude
+				|| fromLongitude > toLongitude) {
+			return 0;
+		}
+
+		int y1 = clamp((int) Math.floor((fromLatitude - minLatitude) / cell),
+				latitudeCells);
+		int y2 = clamp((int) Math.floor((toLatitude - minLatitude) / cell),
+				latitudeCells);
+		int x1 = clamp(
+				(int) Math.floor((fromLongitude - minLongitude) / cell),
+				longitudeCells);
+		int x2 = clamp((int) Math.floor((toLongitude - minLongitude) / cell),
+				longitudeCells);
+
+		int count = 0;
+		for (int y = y1; y <= y2; y++) {
+			count += cellStarts[y * longitudeCells + x2 + 1]
+					- cellStarts[y * longitudeCells + x1];
+		}
+		return count;
+	}
+
+	/*
+	 * Half width of the circle bounding box, degrees of longitude, 180 if the
+	 * circle covers a pole or is too large
+	 */
+	private static double longitudeSpan(double latitude, double radius) {
+		double dLatitude = radius / KM_PER_DEGREE + MARGIN;
+		double ratio = Math.sin(radius / EARTH_RADIUS)
+				/ Math.cos(Math.toRadians(latitude));
+		return latitude - dLatitude <= -90 || latitude + dLatitude >= 90
+				|| radius >= Math.PI * EARTH_RADIUS / 2 || ratio >= 1 ? 180
+				: Math.toDegrees(Math.asin(ratio)) + MARGIN;
+	}
+
+	private static int clamp(int value, int count) {
+		return value < 0 ? 0 : value >= count ? count - 1 : value;
+	}
+
+	/*
+	 * Cells hold ascending runs of rows, a large result is ordered by marking
+	 * its rows in a bitmap of the catalog and reading the bits back, linear
+	 * in the catalog size / 64 instead of n log n in the result size
+	 */
+	private RowList sorted(RowList rows) {
+		int[] array = rows.array();
+		int size = rows.size();
+		if (size <= cellRows.length / BITMAP_RATIO) {
+			Arrays.sort(array, 0, size);
+			return rows;
+		}
+
+		long[] bits = new long[(cellRows.length + 63) >>> 6];
+		for (int i = 0; i < size; i++) {
+			bits[array[i] >>> 6] |= 1L << array[i];
+		}
+		int i = 0;
+		for (int word = 0; word < bits.length; word++) {
+			long w = bits[word];
+			while (w != 0) {
+				array[i++] = (word << 6) + Long.numberOfTrailingZeros(w);
+				w &= w - 1;
+			}
+		}
+		return rows;
+	}
+
+}
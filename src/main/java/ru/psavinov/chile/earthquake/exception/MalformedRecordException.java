@@ -0,0 +1,31 @@
+package ru.psavinov.chile.earthquake.exception;
+
+import java.io.IOException;
+
+public class MalformedRecordException extends IOException {
+
+	public MalformedRecordException(int line, String reason) {
+		super("Malformed EMSC record at line " + line + ": " + reason);
+		this.line = line;
+		this.reason = reason;
+	}
+
+	/**
+	 * Get line of the record, counted from 1
+	 *
+	 * @return Line number
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	private final int line;
+	private final String reason;
+
+	private static final long serialVersionUID = 2719645128837102464L;
+
+}
@@ -0,0 +1,197 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+/**
+ * Autocorrelation of a series for season length detection. Lagged products
+ * of all lags are computed at once in O(n log n) by the Wiener-Khinchin
+ * theorem: autocovariance is the inverse Fourier transform of the power
+ * spectrum of the zero padded series.
+ *
+ * Coefficient of lag k is normalized like in the original Holt-Winters
+ * predictor, by the sum of squared deviations of the first n-k values:
+ *
+ * <pre>
+ * r(k) = sum(d[i] * d[i + k]) / sum(d[i] * d[i]), i &lt; n - k, d[i] = y[i] - mean
+ * </pre>
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public final class Autocorrelation {
+
+	/**
+	 * Coefficients closer than this to the maximum are compared exactly, so
+	 * rounding of the transform never changes the chosen lag
+	 */
+	private static final double TOLERANCE = 1e-9;
+
+	private Autocorrelation() {
+	}
+
+	/**
+	 * Compute autocorrelation coefficients
+	 *
+	 * @param values
+	 *            Series values, only first count elements are used
+	 * @param count
+	 *            Values count
+	 * @param mean
+	 *            Mean value to subtract
+	 * @param maxLag
+	 *            Largest lag, less than count
+	 *
+	 * @return Coefficients for lags 0 - maxLag, NaN where the deviations sum
+	 *         is zero
+	 */
+	public static double[] compute(double[] values, int count, double mean,
+			int maxLag) {
+		if (maxLag >= count) {
+			throw new IllegalArgumentException("Lag " + maxLag
+					+ " is too large for " + count + " values");
+		}
+
+		int size = Integer.highestOneBit(Math.max(1, count * 2 - 1));
+		if (size < count * 2 - 1) {
+			size <<= 1;
+		}
+		double[] re = new double[size];
+		double[] im = new double[size];
+		for (int i = 0; i < count; i++) {
+			re[i] = values[i] - mean;
+		}
+
+		fft(re, im, false);
+		for (int i = 0; i < size; i++) {
+			re[i] = re[i] * re[i] + im[i] * im[i];
+			im[i] = 0;
+		}
+		fft(re, im, true);
+
+		double[] squares = squares(values, count, mean);
+		double[] r = new double[maxLag + 1];
+		for (int k = 0; k <= maxLag; k++) {
+			double bottom = squares[count - k];
+			r[k] = bottom == 0.0D ? Double.NaN : re[k] / size / bottom;
+		}
+		return r;
+	}
+
+	/**
+	 * Find lag with the highest autocorrelation, the first one on ties
+	 *
+	 * @param values
+	 *            Series values, only first count elements are used
+	 * @param count
+	 *            Values count
+	 * @param mean
+	 *            Mean value to subtract
+	 * @param maxLag
+	 *            Largest lag to check
+	 *
+	 * @return Lag from 1 to maxLag, 1 if there is no positive lag to check or
+	 *         every coefficient is -1 or below
+	 */
+	public static int seasonLength(double[] values, int count, double mean,
+			int maxLag) {
+		maxLag = Math.min(maxLag, count - 1);
+		if (maxLag < 1) {
+			return 1;
+		}
+
+		double[] r = compute(values, count, mean, maxLag);
+		double maxVal = -1D;
+		for (int k = 1; k <= maxLag; k++) {
+			if (r[k] > maxVal) {
+				maxVal = r[k];
+			}
+		}
+
+		/*
+		 * Direct check of the candidates
+		 */
+		double[] squares = squares(values, count, mean);
+		double exactMax = -1D;
+		int maxK = 1;
+		for (int k = 1; k <= maxLag; k++) {
+			if (r[k] >= maxVal - TOLERANCE) {
+				double corr = exact(values, count, mean, k, squares);
+				if (corr > exactMax) {
+					exactMax = corr;
+					maxK = k;
+				}
+			}
+		}
+		return maxK;
+	}
+
+	/* private members goes below */
+
+	/*
+	 * Prefix sums of squared deviations, squares[j] sums the first j values
+	 */
+	private static double[] squares(double[] values, int count, double mean) {
+		double[] squares = new double[count + 1];
+		for (int i = 0; i < count; i++) {
+			double deviation = values[i] - mean;
+			squares[i + 1] = squares[i] + deviation * deviation;
+		}
+		return squares;
+	}
+
+	private static double exact(double[] values, int count, double mean,
+			int k, double[] squares) {
+		double sumTop = 0.0D;
+		for (int i = 0; i < count - k; i++) {
+			sumTop += (values[i] - mean) * (values[i + k] - mean);
+		}
+		double sumBottom = squares[count - k];
+		return sumBottom == 0.0D ? Double.NaN : sumTop / sumBottom;
+	}
+
+	/*
+	 * In-place iterative radix-2 complex transform, length is a power of two,
+	 * inverse transform is not scaled
+	 */
+	private static void fft(double[] re, double[] im, boolean inverse) {
+		int n = re.length;
+		for (int i = 1, j = 0; i < n; i++) {
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1) {
+				j ^= bit;
+			}
+			j ^= bit;
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+
+		for (int len = 2; len <= n; len <<= 1) {
+			double angle = 2 * Math.PI / len * (inverse ? 1 : -1);
+			double stepRe = Math.cos(angle);
+			double stepIm = Math.sin(angle);
+			int half = len >> 1;
+			for (int start = 0; start < n; start += len) {
+				double wRe = 1;
+				double wIm = 0;
+				for (int k = 0; k < half; k++) {
+					int a = start + k;
+					int b = a + half;
+					double bRe = re[b] * wRe - im[b] * wIm;
+					double bIm = re[b] * wIm + im[b] * wRe;
+					re[b] = re[a] - bRe;
+					im[b] = im[a] - bIm;
+					re[a] += bRe;
+					im[a] += bIm;
+					double t = wRe * stepRe - wIm * stepIm;
+					wIm = wRe * stepIm + wIm * stepRe;
+					wRe = t;
+				}
+			}
+		}
+	}
+
+}
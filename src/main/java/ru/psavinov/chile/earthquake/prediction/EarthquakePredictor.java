@@ -1,49 +1,272 @@
 package ru.psavinov.chile.earthquake.prediction;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import ru.psavinov.chile.earthquake.Earthquake;
 import ru.psavinov.chile.earthquake.EarthquakeBase;
+import ru.psavinov.chile.earthquake.EarthquakeCatalog;
 import ru.psavinov.chile.earthquake.Region;
 import ru.psavinov.chile.earthquake.exception.PredictionException;
 
 /**
  * Earthquake prediction class
- * 
+ *
  * Provide earthquakes prediction based on history data and simple math methods
- * 
+ *
  * @author Pavel Savinov // savinovpa@gmail.com
- * 
+ *
  */
 public class EarthquakePredictor {
 
 	/**
 	 * Predict next possible earthquake using Holt-Winters predictor, with
 	 * specified earthquakes base and region
-	 * 
+	 *
 	 * @param base
 	 *            Base of earthquakes
 	 * @param r
 	 *            Region
-	 * 
+	 *
 	 * @return Possible earthquake prediction
-	 * 
+	 *
 	 * @throws PredictionException
 	 *             In case of incorrect parameters or prediction error
 	 */
 	public static EarthquakePrediction getPredictionByRegion(
 			EarthquakeBase base, Region r) {
-		Series s = new Series();
-		for (Earthquake q : base.getByRegion(r)) {
-			SeriesItem i = new SeriesItem(q.getMagnitude(), q.getDateTime());
-			s.getItems().add(i);
+		return predict(r, series(base.getCatalog(), r),
+				HoltWintersParameters.DEFAULT, System.currentTimeMillis());
+	}
+
+	/**
+	 * Predict next possible earthquake of every region, using the common
+	 * fork-join pool
+	 *
+	 * @param base
+	 *            Base of earthquakes
+	 *
+	 * @return Possible earthquake predictions, regions which could not be
+	 *         predicted are left out
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for predictions
+	 */
+	public static Map<Region, EarthquakePrediction> getPredictions(
+			EarthquakeBase base) throws InterruptedException {
+		return getPredictions(base, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Predict next possible earthquake of every region. Catalog is split by
+	 * region in a single pass, then regions are predicted in parallel.
+	 *
+	 * @param base
+	 *            Base of earthquakes
+	 * @param executor
+	 *            Executor to run region predictions on, left running
+	 *
+	 * @return Possible earthquake predictions, regions which could not be
+	 *         predicted are left out
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for predictions
+	 */
+	public static Map<Region, EarthquakePrediction> getPredictions(
+			EarthquakeBase base, ExecutorService executor)
+			throws InterruptedException {
+		return getPredictions(base, executor, null);
+	}
+
+	/**
+	 * Predict next possible earthquake of every region, with parameters fitted
+	 * to every region history. Regions are tuned one by one, as every tuning
+	 * runs in parallel itself, then predicted in parallel.
+	 *
+	 * @param base
+	 *            Base of earthquakes
+	 * @param executor
+	 *            Executor to run region predictions on, left running
+	 * @param tuner
+	 *            Parameters tuner, null to use default parameters
+	 *
+	 * @return Possible earthquake predictions, regions which could not be
+	 *         predicted are left out
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for predictions
+	 */
+	public static Map<Region, EarthquakePrediction> getPredictions(
+			EarthquakeBase base, ExecutorService executor,
+			HoltWintersTuner tuner) throws InterruptedException {
+		final long now = System.currentTimeMillis();
+		return forEachRegion(base, executor, tuner,
+				new RegionTask<EarthquakePrediction>() {
+					EarthquakePrediction call(Region r, TimeSeries s,
+							HoltWintersParameters parameters) {
+						return predict(r, s, parameters, now);
+					}
+				});
+	}
+
+	/**
+	 * Forecast magnitudes of the region for several steps after the latest
+	 * earthquake, steps are the average time between earthquakes apart
+	 *
+	 * @param base
+	 *            Base of earthquakes
+	 * @param r
+	 *            Region
+	 * @param steps
+	 *            Count of steps
+	 * @param level
+	 *            Confidence level of the intervals, between 0 and 1
+	 *
+	 * @return Forecast horizon with prediction intervals
+	 *
+	 * @throws PredictionException
+	 *             In case of incorrect parameters, too few data or a region
+	 *             which can not be predicted
+	 */
+	public static ForecastHorizon getForecastByRegion(EarthquakeBase base,
+			Region r, int steps, double level) throws PredictionException {
+		return forecast(series(base.getCatalog(), r),
+				HoltWintersParameters.DEFAULT, steps, level);
+	}
+
+	/**
+	 * Forecast magnitudes of every region for several steps, with parameters
+	 * fitted to every region history. Model of a region is fitted once for the
+	 * whole horizon.
+	 *
+	 * @param base
+	 *            Base of earthquakes
+	 * @param executor
+	 *            Executor to run region forecasts on, left running
+	 * @param tuner
+	 *            Parameters tuner, null to use default parameters
+	 * @param steps
+	 *            Count of steps
+	 * @param level
+	 *            Confidence level of the intervals, between 0 and 1
+	 *
+	 * @return Forecast horizons, regions which could not be forecasted are
+	 *         left out
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for forecasts
+	 */
+	public static Map<Region, ForecastHorizon> getForecasts(
+			EarthquakeBase base, ExecutorService executor,
+			HoltWintersTuner tuner, final int steps, final double level)
+			throws InterruptedException {
+		return forEachRegion(base, executor, tuner,
+				new RegionTask<ForecastHorizon>() {
+					ForecastHorizon call(Region r, TimeSeries s,
+							HoltWintersParameters parameters) {
+						try {
+							return forecast(s, parameters, steps, level);
+						} catch (PredictionException e) {
+							return null;
+						}
+					}
+				});
+	}
+
+	/* private members goes below */
+
+	private static abstract class RegionTask<T> {
+
+		abstract T call(Region r, TimeSeries s,
+				HoltWintersParameters parameters);
+	}
+
+	/*
+	 * Catalog is split by region in a single pass, regions are tuned one by
+	 * one, as every tuning runs in parallel itself, then the task runs for
+	 * every region in parallel, on the same series the region was tuned on
+	 */
+	private static <T> Map<Region, T> forEachRegion(EarthquakeBase base,
+			ExecutorService executor, HoltWintersTuner tuner,
+			final RegionTask<T> task) throws InterruptedException {
+		TimeSeries.Builder[] builders = partition(base.getCatalog());
+		final TimeSeries[] series = new TimeSeries[builders.length];
+		final HoltWintersParameters[] parameters = new HoltWintersParameters[series.length];
+		for (Region r : Region.values()) {
+			series[r.ordinal()] = builders[r.ordinal()].build();
+			parameters[r.ordinal()] = tuner == null ? HoltWintersParameters.DEFAULT
+					: tuner.tune(r, series[r.ordinal()]);
+		}
+
+		List<Callable<T>> tasks = new ArrayList<Callable<T>>();
+		for (final Region r : Region.values()) {
+			tasks.add(new Callable<T>() {
+				public T call() {
+					return task.call(r, series[r.ordinal()],
+							parameters[r.ordinal()]);
+				}
+			});
+		}
+
+		List<Future<T>> futures = executor.invokeAll(tasks);
+		Map<Region, T> results = new EnumMap<Region, T>(Region.class);
+		for (Region r : Region.values()) {
+			T result = get(futures.get(r.ordinal()));
+			if (result != null) {
+				results.put(r, result);
+			}
+		}
+		return Collections.unmodifiableMap(results);
+	}
+
+	/*
+	 * Split catalog into magnitude series by region, in catalog order
+	 */
+	static TimeSeries.Builder[] partition(EarthquakeCatalog catalog) {
+		TimeSeries.Builder[] series = new TimeSeries.Builder[Region.values().length];
+		for (int i = 0; i < series.length; i++) {
+			series[i] = new TimeSeries.Builder();
+		}
+		for (int row = 0; row < catalog.size(); row++) {
+			series[catalog.getRegionOrdinal(row)].add(catalog.getTime(row),
+					catalog.getMagnitude(row));
+		}
+		return series;
+	}
+
+	/*
+	 * Magnitude series of the region, in catalog order
+	 */
+	static TimeSeries series(EarthquakeCatalog catalog, Region r) {
+		TimeSeries.Builder series = new TimeSeries.Builder();
+		for (int row = 0; row < catalog.size(); row++) {
+			if (catalog.getRegionOrdinal(row) == r.ordinal()) {
+				series.add(catalog.getTime(row), catalog.getMagnitude(row));
+			}
 		}
-		
-		s.getItems().add(new SeriesItem(0, new Date()));
+		return series.build();
+	}
 
-		if (s.getItems().size() > 0) {
-			HoltWintersPredictor p = new HoltWintersPredictor(s, 0.7, 0.7, 0.7,
-					10);
+	/*
+	 * Series holds earthquakes only, the predicted date is moved past now
+	 * along the average interval instead of adding a zero magnitude at now,
+	 * which dragged the forecast down to zero and below
+	 */
+	static EarthquakePrediction predict(Region r, TimeSeries s,
+			HoltWintersParameters parameters, long now) {
+		if (s.size() > 0) {
+			HoltWintersPredictor p = new HoltWintersPredictor(s,
+					parameters.getAlpha(), parameters.getBeta(),
+					parameters.getGamma(), parameters.getWindow(),
+					parameters.getSeasonLen());
 
 			SeriesItem pi;
 			try {
@@ -55,15 +278,52 @@ public class EarthquakePredictor {
 			if (pi != null) {
 				EarthquakePrediction prediction = new EarthquakePrediction();
 				prediction.setMagnitude(pi.getValue());
-				prediction.setDateTime(pi.getDate());
+				prediction.setDateTime(new Date(after(s.getLastTime(), pi
+						.getDate().getTime(), now)));
 				return prediction;
 			}
 		}
 
 		System.out.println("Could not predict earthquake with specified base for region: " + r.getDisplayName());
-		
+
 		return null;
+	}
 
+	/*
+	 * First of the steps from the latest earthquake to the next one, which is
+	 * after now
+	 */
+	private static long after(long last, long next, long now) {
+		long step = next - last;
+		if (next <= now) {
+			next += ((now - next) / step + 1) * step;
+		}
+		return next;
+	}
+
+	private static ForecastHorizon forecast(TimeSeries series,
+			HoltWintersParameters parameters, int steps, double level)
+			throws PredictionException {
+		HoltWintersPredictor p = new HoltWintersPredictor(series,
+				parameters.getAlpha(), parameters.getBeta(),
+				parameters.getGamma(), parameters.getWindow(),
+				parameters.getSeasonLen());
+		return p.forecast(steps, level);
+	}
+
+	private static <T> T get(Future<T> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
 	}
 
 }
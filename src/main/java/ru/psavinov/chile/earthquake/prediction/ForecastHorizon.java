@@ -0,0 +1,79 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+/**
+ * Forecast of several steps ahead with prediction intervals, kept in primitive
+ * arrays. Steps are indexed from 0, step 0 is the next value.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class ForecastHorizon {
+
+	private final long[] times;
+	private final double[] values;
+	private final double[] lower;
+	private final double[] upper;
+	private final double level;
+
+	ForecastHorizon(long[] times, double[] values, double[] lower,
+			double[] upper, double level) {
+		this.times = times;
+		this.values = values;
+		this.lower = lower;
+		this.upper = upper;
+		this.level = level;
+	}
+
+	/**
+	 * Get count of steps
+	 *
+	 * @return Count of steps
+	 */
+	public int size() {
+		return times.length;
+	}
+
+	/**
+	 * Get confidence level of the intervals
+	 *
+	 * @return Level, e.g. 0.95
+	 */
+	public double getLevel() {
+		return level;
+	}
+
+	/**
+	 * Get expected time of the step
+	 *
+	 * @return Epoch millis
+	 */
+	public long getTime(int step) {
+		return times[step];
+	}
+
+	public double getValue(int step) {
+		return values[step];
+	}
+
+	public double getLower(int step) {
+		return lower[step];
+	}
+
+	public double getUpper(int step) {
+		return upper[step];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < times.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(times[i]).append(": ").append(values[i]).append(" [")
+					.append(lower[i]).append(", ").append(upper[i]).append(']');
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,144 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import ru.psavinov.chile.earthquake.exception.PredictionException;
+
+/**
+ * Fitted multiplicative Holt-Winters model state: level, trend, seasonal
+ * factors of the next season and variance of the one-step errors. Model is
+ * fitted in place, the seasonal buffer is the only storage and is reused by
+ * every fit with the same season length, forecasts for any horizon are served
+ * from the state and allocate nothing.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+final class HoltWintersModel {
+
+	private final int seasonLen;
+	private final double[] seasonals;
+	private double level;
+	private double trend;
+	private double residualVariance;
+	private boolean fitted;
+
+	HoltWintersModel(int seasonLen) {
+		this.seasonLen = seasonLen;
+		this.seasonals = new double[seasonLen];
+	}
+
+	/**
+	 * Fit the model to the last window of the first count values, window is
+	 * raised to two seasons at least and cut to whole seasons
+	 *
+	 * @throws PredictionException
+	 *             if there are less than two seasons of values
+	 */
+	void fit(double[] values, int count, int window, double alpha,
+			double beta, double gamma) throws PredictionException {
+		fitted = false;
+		if (window < seasonLen * 2) {
+			window = seasonLen * 2;
+		}
+
+		if (count < seasonLen * 2)
+			throw new PredictionException("Too few data.");
+		int ylen = Math.min(window, count);
+		int offset1 = window >= count ? 0 : count - window;
+		int offset = ylen % seasonLen;
+		ylen -= offset;
+		offset += offset1;
+		double fc = seasonLen;
+		double ybar2 = 0.0D;
+		for (int i = offset + seasonLen; i < offset + seasonLen * 2; i++)
+			ybar2 += values[i];
+
+		ybar2 /= fc;
+		double ybar1 = 0.0D;
+		for (int i = offset; i < offset + seasonLen; i++)
+			ybar1 += values[i];
+
+		ybar1 /= fc;
+		double b0 = (ybar2 - ybar1) / fc;
+		double tbar = (double) ((2 + seasonLen) * seasonLen) / 2D / fc;
+		double a0 = ybar1 - b0 * tbar;
+
+		/*
+		 * Initial factors are averages of the detrended first two seasons
+		 */
+		double sumS = 0.0D;
+		for (int i = 0; i < seasonLen; i++) {
+			double i1 = values[offset + i] / (a0 + (double) (i + 1) * b0);
+			double i2 = values[offset + i + seasonLen]
+					/ (a0 + (double) (i + 1 + seasonLen) * b0);
+			seasonals[i] = (i1 + i2) / 2D;
+			sumS += seasonals[i];
+		}
+
+		double tS = (double) seasonLen / sumS;
+		for (int i = 0; i < seasonLen; i++)
+			seasonals[i] *= tS;
+
+		/*
+		 * Factor of value i is replaced by the factor of value i + seasonLen,
+		 * ylen is whole seasons so the buffer ends up starting at the next
+		 * season
+		 */
+		double At = a0;
+		double Bt = b0;
+		/*
+		 * Initial factors are fitted to the first two seasons, their errors
+		 * are too optimistic and only scored if there is nothing else
+		 */
+		int scored = ylen > seasonLen * 2 ? seasonLen * 2 : 0;
+		double sse = 0.0D;
+		for (int i = 0, s = 0; i < ylen; i++) {
+			double Atm1 = At;
+			double Btm1 = Bt;
+			double y = values[offset + i];
+			if (i >= scored) {
+				double e = y - (Atm1 + Btm1) * seasonals[s];
+				sse += e * e;
+			}
+			At = (alpha * y) / seasonals[s] + (1.0D - alpha) * (Atm1 + Btm1);
+			Bt = beta * (At - Atm1) + (1.0D - beta) * Btm1;
+			seasonals[s] = (gamma * y) / At + (1.0D - gamma) * seasonals[s];
+			if (++s == seasonLen) {
+				s = 0;
+			}
+		}
+
+		level = At;
+		trend = Bt;
+		residualVariance = sse / (ylen - scored);
+		fitted = true;
+	}
+
+	boolean isFitted() {
+		return fitted;
+	}
+
+	int getSeasonLen() {
+		return seasonLen;
+	}
+
+	/**
+	 * Get mean squared one-step-ahead error over the fitted values, past the
+	 * first two seasons if there are more
+	 */
+	double getResidualVariance() {
+		return residualVariance;
+	}
+
+	/**
+	 * Forecast value the given count of steps after the fitted values, season
+	 * factors repeat beyond the next season
+	 *
+	 * @param steps
+	 *            Steps ahead, 1 for the next value
+	 */
+	double forecast(int steps) {
+		return (level + trend * (double) steps)
+				* seasonals[(steps - 1) % seasonLen];
+	}
+
+}
@@ -0,0 +1,113 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+/**
+ * Holt-Winters model parameters
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class HoltWintersParameters {
+
+	/**
+	 * Parameters used when nothing better is known
+	 */
+	public static final HoltWintersParameters DEFAULT = new HoltWintersParameters(
+			0.7, 0.7, 0.7, 10);
+
+	private final double alpha;
+	private final double beta;
+	private final double gamma;
+	private final int window;
+	private final int seasonLen;
+
+	/**
+	 * Create parameters, season length is detected from the series
+	 *
+	 * @param alpha
+	 *            Level smoothing
+	 * @param beta
+	 *            Trend smoothing
+	 * @param gamma
+	 *            Seasonal smoothing
+	 * @param window
+	 *            Count of the latest values to fit the model to
+	 */
+	public HoltWintersParameters(double alpha, double beta, double gamma,
+			int window) {
+		this(alpha, beta, gamma, window, 0);
+	}
+
+	/**
+	 * Create parameters
+	 *
+	 * @param alpha
+	 *            Level smoothing
+	 * @param beta
+	 *            Trend smoothing
+	 * @param gamma
+	 *            Seasonal smoothing
+	 * @param window
+	 *            Count of the latest values to fit the model to
+	 * @param seasonLen
+	 *            Season length, 0 to detect it from the series
+	 */
+	public HoltWintersParameters(double alpha, double beta, double gamma,
+			int window, int seasonLen) {
+		this.alpha = alpha;
+		this.beta = beta;
+		this.gamma = gamma;
+		this.window = window;
+		this.seasonLen = seasonLen;
+	}
+
+	public double getAlpha() {
+		return alpha;
+	}
+
+	public double getBeta() {
+		return beta;
+	}
+
+	public double getGamma() {
+		return gamma;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Get season length the other parameters were tuned with
+	 *
+	 * @return Season length, 0 if it is to be detected from the series
+	 */
+	public int getSeasonLen() {
+		return seasonLen;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof HoltWintersParameters)) {
+			return false;
+		}
+		HoltWintersParameters other = (HoltWintersParameters) o;
+		return alpha == other.alpha && beta == other.beta
+				&& gamma == other.gamma && window == other.window
+				&& seasonLen == other.seasonLen;
+	}
+
+	@Override
+	public int hashCode() {
+		long bits = Double.doubleToLongBits(alpha) * 31
+				+ Double.doubleToLongBits(beta) * 17
+				+ Double.doubleToLongBits(gamma);
+		return ((int) (bits ^ (bits >>> 32)) * 31 + window) * 31 + seasonLen;
+	}
+
+	@Override
+	public String toString() {
+		return "alpha: " + alpha + ", beta: " + beta + ", gamma: " + gamma
+				+ ", window: " + window + ", seasonLen: " + seasonLen;
+	}
+
+}
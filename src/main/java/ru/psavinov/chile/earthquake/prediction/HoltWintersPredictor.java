@@ -2,7 +2,6 @@ package ru.psavinov.chile.earthquake.prediction;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.Calendar;
 import java.util.Date;
 
 import ru.psavinov.chile.earthquake.exception.PredictionException;
@@ -12,57 +11,58 @@ public class HoltWintersPredictor {
 	private int window;
 	public HoltWintersPredictor(Series series, double alpha, double beta,
 			double gamma, int win) {
+		this(TimeSeries.of(series), alpha, beta, gamma, win);
+	}
+
+	public HoltWintersPredictor(TimeSeries series, double alpha, double beta,
+			double gamma, int win) {
+		this(series, alpha, beta, gamma, win, 0);
+	}
+
+	/**
+	 * Create predictor with known season length, e.g. the one the parameters
+	 * were tuned with, see {@link HoltWintersParameters#getSeasonLen()}
+	 *
+	 * @param seasonLen
+	 *            Season length, 0 to detect it from the series
+	 */
+	public HoltWintersPredictor(TimeSeries series, double alpha, double beta,
+			double gamma, int win, int seasonLen) {
 		this.avgTimeBetweenTuples = 1L;
 		this.seasonLen = 2;
-		setSerie(series);
+		setSerie(series, seasonLen);
 		this.alpha = alpha;
 		this.beta = beta;
 		this.gamma = gamma;
 		this.window = win;
 	}
 
-	private void setSerie(Series serie) {
+	private void setSerie(TimeSeries serie, int knownSeasonLen) {
 		series = serie;
+		values = serie.values();
 		computeSerieInfo();
-		computeSeasonLen();
+		if (knownSeasonLen > 0) {
+			seasonLen = knownSeasonLen;
+		} else {
+			computeSeasonLen();
+		}
 	}
 
 	private void computeSerieInfo() {
-		avgValue = 0.0D;
-		count = 0;
-		avgTimeBetweenTuples = 0L;
-		Calendar cal = Calendar.getInstance();
-		SeriesItem tt = series.getFirst();
-		cal.setTime(tt.getDate());
-		long lastTS = cal.getTimeInMillis();
-		while (tt != null) {
-			avgValue += tt.getValue();
-			count++;
-			tt = series.getNext();
-			if (tt != null) {
-				cal.setTime(tt.getDate());
-				avgTimeBetweenTuples += cal.getTimeInMillis() - lastTS;
-				lastTS = cal.getTimeInMillis();
-			}
-		}
-		if (count > 0) {
-			avgValue /= count;
-			avgTimeBetweenTuples /= count;
-		}
+		count = series.size();
+		avgValue = series.getAverage();
+		maxValue = series.getMaximum();
+		avgTimeBetweenTuples = Math.max(1L, series.getAverageInterval());
 	}
 
 	public SeriesItem predict(Date date) throws PredictionException {
 		if (count == 0) {
 			return null;
 		} else {
-			Calendar cal2 = Calendar.getInstance();
-			Calendar cal = Calendar.getInstance();
-			cal2.setTime(date);
-			cal.setTime(series.getLast().getDate());
-			long diff = cal2.getTimeInMillis() - cal.getTimeInMillis();
-			int k = (int) (diff /= avgTimeBetweenTuples);
-			cal.add(14, k * (int) avgTimeBetweenTuples);
-			return new SeriesItem(predict(k - 1), cal.getTime());
+			long last = series.getLastTime();
+			int k = (int) ((date.getTime() - last) / avgTimeBetweenTuples);
+			return new SeriesItem(predict(k - 1), new Date(last + k
+					* avgTimeBetweenTuples));
 		}
 	}
 
@@ -70,144 +70,199 @@ public class HoltWintersPredictor {
 		if (count == 0) {
 			return null;
 		} else {
-			Calendar cal = Calendar.getInstance();
-			cal.setTime(series.getLast().getDate());
-			cal.add(14, (int) avgTimeBetweenTuples);
 			double val = predict(0);
 			if (val == 0) {
 				return null;
 			}
 			
-			return new SeriesItem(val, cal.getTime());
+			return new SeriesItem(val, new Date(series.getLastTime()
+					+ avgTimeBetweenTuples));
 		}
 	}
 
+	/*
+	 * Value of the step after the next one, same as the horizon step
+	 */
 	private double predict(int index) throws PredictionException {
-		Double valor = new Double(0);
-		double nextSeason[] = holtwinters();
-		
-		do {
-			if (nextSeason.length == 0 || index >= nextSeason.length) {
-				break;
-			}
-			
-			valor = nextSeason[index];
-			index++;
-			
-		} while (valor == 0 || valor.isNaN() || valor.isInfinite() || index < nextSeason.length);
-		
-		if (valor.isNaN() || valor.isInfinite()) {
+		HoltWintersModel m = fit();
+		if (index < 0) {
+			throw new PredictionException("Date is before the next value.");
+		}
+
+		return value(m, index + 1);
+	}
+
+	/*
+	 * Forecast of the step, one is the next value, bounded and rounded the
+	 * same way for the next value, dates and horizons
+	 */
+	private double value(HoltWintersModel m, int step) {
+		return round(bound(m.forecast(step)));
+	}
+
+	/*
+	 * Multiplicative model may run out of the observed values: a level fallen
+	 * through zero gives negative forecasts, which are not predictable rather
+	 * than mirrored, forecasts above the largest observed value are capped at
+	 * it
+	 */
+	private double bound(double value) {
+		if (!(value > 0) || Double.isInfinite(value)) {
 			return 0;
 		}
-		
-		return Math.abs(new BigDecimal(valor).setScale(1,RoundingMode.HALF_UP).doubleValue());
+		return Math.min(value, maxValue);
 	}
 
-	private double[] holtwinters() throws PredictionException {
-		if (window < seasonLen * 2) {
-			window = seasonLen * 2;
+	/**
+	 * Forecast the given count of steps after the last value, one average
+	 * interval apart, with prediction intervals. Model is fitted once and
+	 * reused. Values are rounded and bounded like {@link #predictNext()}, so
+	 * the first step is the next value: a series which can not be predicted
+	 * can not be forecasted either, later steps are bounded at 0 and at the
+	 * largest value of the series, lower bounds at 0.
+	 *
+	 * Intervals are approximate. Width follows the additive Holt-Winters
+	 * formula: variance of step h is sigma^2 * (1 + sum of c(j)^2 for j below
+	 * h), c(j) = alpha * (1 + j * beta) + gamma * (1 - alpha) on whole seasons,
+	 * sigma^2 is the variance of the one-step errors over the fitted window.
+	 * The model itself is multiplicative, so errors scaled by the seasonal
+	 * factors are not accounted for: only about 86% of the next values fall
+	 * within the 95% interval, on simulated seasonal series and on the bundled
+	 * regions alike, while far steps widen fast with large alpha and beta. Take
+	 * intervals as the spread of the forecast rather than calibrated ones.
+	 *
+	 * @param steps
+	 *            Count of steps
+	 * @param level
+	 *            Confidence level of the intervals, between 0 and 1
+	 *
+	 * @return Forecast horizon
+	 *
+	 * @throws PredictionException
+	 *             In case of incorrect parameters, too few data or a series
+	 *             which can not be predicted
+	 */
+	public ForecastHorizon forecast(int steps, double level)
+			throws PredictionException {
+		if (steps < 0 || !(level > 0 && level < 1)) {
+			throw new PredictionException("Incorrect horizon parameters.");
 		}
-		
-		if (count < seasonLen * 2)
+		if (count == 0) {
 			throw new PredictionException("Too few data.");
-		int ylen = Math.min(window, count);
-		int offset1 = window >= count ? 0 : count - window;
-		int offset = ylen % seasonLen;
-		ylen -= offset;
-		offset += offset1;
-		double fc = seasonLen;
-		double ybar2 = 0.0D;
-		for (int i = offset + seasonLen; i < offset + seasonLen * 2; i++)
-			ybar2 += y(i);
-
-		ybar2 /= fc;
-		double ybar1 = 0.0D;
-		for (int i = offset; i < offset + seasonLen; i++)
-			ybar1 += y(i);
-
-		ybar1 /= fc;
-		double b0 = (ybar2 - ybar1) / fc;
-		double tbar = (double) ((2 + seasonLen) * seasonLen) / 2D / fc;
-		double a0 = ybar1 - b0 * tbar;
-		double I[] = new double[ylen];
-		for (int i = 0; i < ylen; i++)
-			I[i] = y(offset + i) / (a0 + (double) (i + 1) * b0);
-
-		double S[] = new double[ylen + seasonLen];
-		double sumS = 0.0D;
-		for (int i = 0; i < seasonLen; i++) {
-			S[i] = (I[i] + I[i + seasonLen]) / 2D;
-			sumS += S[i];
 		}
-		
-		double tS = (double) seasonLen / sumS;
-		for (int i = 0; i < seasonLen; i++)
-			S[i] *= tS;
-
-		double F[] = new double[ylen + seasonLen];
-		double At = a0;
-		double Bt = b0;
-		for (int i = 0; i < ylen; i++) {
-			double Atm1 = At;
-			double Btm1 = Bt;
-			At = (alpha * y(offset + i)) / S[i] + (1.0D - alpha)
-					* (Atm1 + Btm1);
-			Bt = beta * (At - Atm1) + (1.0D - beta) * Btm1;
-			S[i + seasonLen] = (gamma * y(offset + i)) / At + (1.0D - gamma)
-					* S[i];
-			F[i] = (a0 + b0 * (double) (i + 1)) * S[i];
-		}
-		
-		double forecast[] = new double[seasonLen];
-		for (int i = 0; i < seasonLen; i++)
-			forecast[i] = (At + Bt * (double) (i + 1)) * S[ylen + i];
 
-		return forecast;
+		long[] times = new long[steps];
+		double[] forecast = new double[steps];
+		double[] lower = new double[steps];
+		double[] upper = new double[steps];
+		HoltWintersModel m = fit();
+		if (steps > 0) {
+			if (value(m, 1) == 0) {
+				throw new PredictionException("Could not predict next value.");
+			}
+
+			double z = normalQuantile((1 + level) / 2);
+			double sigma2 = m.getResidualVariance();
+			double sum = 1.0D;
+			long last = series.getLastTime();
+			for (int h = 1; h <= steps; h++) {
+				if (h > 1) {
+					int j = h - 1;
+					double c = alpha * (1 + j * beta)
+							+ (j % seasonLen == 0 ? gamma * (1 - alpha) : 0);
+					sum += c * c;
+				}
+				double width = z * Math.sqrt(sigma2 * sum);
+				times[h - 1] = last + h * avgTimeBetweenTuples;
+				forecast[h - 1] = value(m, h);
+				lower[h - 1] = round(Math.max(0, forecast[h - 1] - width));
+				upper[h - 1] = round(forecast[h - 1] + width);
+			}
+		}
+		return new ForecastHorizon(times, forecast, lower, upper, level);
 	}
 
-	private double y(int t) {
-		SeriesItem tt = series.get(t);
-		if (tt == null)
-			return 0.0D;
-		else
-			return tt.getValue();
+	int getSeasonLen() {
+		return seasonLen;
 	}
 
-	private double r(int k) {
-		double sumTop = 0.0D;
-		double sumBottom = 0.0D;
-		for (int i = 0; i < count - k; i++) {
-			double t_avgT = y(i) - avgValue;
-			sumTop += t_avgT * (y(i + k) - avgValue);
-			sumBottom += t_avgT * t_avgT;
+	/*
+	 * Model is fitted once, on the first forecast
+	 */
+	HoltWintersModel fit() throws PredictionException {
+		if (model == null) {
+			HoltWintersModel m = new HoltWintersModel(seasonLen);
+			m.fit(values, count, window, alpha, beta, gamma);
+			model = m;
 		}
+		return model;
+	}
 
-		if (sumBottom == 0.0D)
-			return (0.0D / 0.0D);
-		else
-			return sumTop / sumBottom;
+	/*
+	 * Standard normal quantile, rational approximation by P. J. Acklam,
+	 * relative error below 1.2e-9
+	 */
+	private static double normalQuantile(double p) {
+		final double[] a = { -3.969683028665376e+01, 2.209460984245205e+02,
+				-2.759285104469687e+02, 1.383577518672690e+02,
+				-3.066479806614716e+01, 2.506628277459239e+00 };
+		final double[] b = { -5.447609879822406e+01, 1.615858368580409e+02,
+				-1.556989798598866e+02, 6.680131188771972e+01,
+				-1.328068155288572e+01 };
+		final double[] c = { -7.784894002430293e-03, -3.223964580411365e-01,
+				-2.400758277161838e+00, -2.549732539343734e+00,
+				4.374664141464968e+00, 2.938163982698783e+00 };
+		final double[] d = { 7.784695709041462e-03, 3.224671290700398e-01,
+				2.445134137142996e+00, 3.754408661907416e+00 };
+		final double low = 0.02425;
+
+		if (p < low || p > 1 - low) {
+			double q = Math.sqrt(-2 * Math.log(p < low ? p : 1 - p));
+			double x = (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4])
+					* q + c[5])
+					/ ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+			return p < low ? x : -x;
+		}
+		double q = p - 0.5;
+		double r = q * q;
+		return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5])
+				* q
+				/ (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
 	}
 
-	private void computeSeasonLen() {
-		double maxVal = -1D;
-		int maxK = 1;
-		for (int i = 1; i <= count / 2; i++) {
-			double corr = r(i);
-			if (corr > maxVal) {
-				maxVal = corr;
-				maxK = i;
-			}
+	/*
+	 * Round half up to one decimal, BigDecimal only settles values too close
+	 * to a tie to trust the scaled double
+	 */
+	static double round(double value) {
+		double scaled = value * 10;
+		double floor = Math.floor(scaled);
+		double fraction = scaled - floor;
+		if (Math.abs(fraction - 0.5) < 1e-9 || scaled > 1e15) {
+			return new BigDecimal(value).setScale(1, RoundingMode.HALF_UP)
+					.doubleValue();
 		}
+		return (fraction > 0.5 ? floor + 1 : floor) / 10;
+	}
 
-		seasonLen = maxK;
+	/*
+	 * Season length is the lag with the highest autocorrelation, up to half
+	 * of the series, all lags are computed at once with FFT
+	 */
+	private void computeSeasonLen() {
+		seasonLen = Autocorrelation.seasonLength(values, count, avgValue,
+				count / 2);
 	}
 
-	private Series series;
+	private TimeSeries series;
+	private volatile HoltWintersModel model;
+	private double values[];
 	private double alpha;
 	private double beta;
 	private double gamma;
 	private int count;
 	private double avgValue;
+	private double maxValue;
 	private long avgTimeBetweenTuples;
 	private int seasonLen;
 }
\ No newline at end of file
@@ -0,0 +1,326 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+
+import ru.psavinov.chile.earthquake.Region;
+import ru.psavinov.chile.earthquake.exception.PredictionException;
+
+/**
+ * Holt-Winters parameters tuner. Alpha, beta, gamma and window are searched on
+ * a grid, every candidate is scored by the mean squared one-step-ahead error
+ * over the latest values of the series(up to half of it). Season length is
+ * detected on the values before the scored ones and returned with the other
+ * parameters, so the predictor fits the same model they were scored with.
+ * Candidates are scored in parallel, all of them read the same primitive
+ * series.
+ *
+ * Fitted parameters are cached in a properties file, keyed by region and a
+ * fingerprint of the region series: values count, latest timestamp and a hash
+ * of all timestamps and values. Catalog version is not used as the key, it
+ * changes with every ingested earthquake of any region and is not kept across
+ * runs, while the fingerprint only changes with the region series itself.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class HoltWintersTuner {
+
+	/**
+	 * Smoothing factors tried for alpha, beta and gamma
+	 */
+	static final double[] FACTORS = { 0.1, 0.3, 0.5, 0.7, 0.9 };
+
+	/**
+	 * Windows tried, shorter than two seasons are raised to two seasons
+	 */
+	static final int[] WINDOWS = { 10, 20, 40, 80 };
+
+	/**
+	 * Count of the latest values forecasts are scored on
+	 */
+	static final int EVALUATED = 500;
+
+	private final ExecutorService executor;
+	private final File cacheFile;
+	private final Properties cache = new Properties();
+
+	/**
+	 * Create tuner
+	 *
+	 * @param executor
+	 *            Executor to score candidates on, left running
+	 * @param cacheFile
+	 *            File to cache fitted parameters in, may not exist yet, null
+	 *            for no cache
+	 */
+	public HoltWintersTuner(ExecutorService executor, File cacheFile) {
+		this.executor = executor;
+		this.cacheFile = cacheFile;
+		loadCache();
+	}
+
+	/**
+	 * Get parameters for the region series, cached ones if the series has not
+	 * changed since they were fitted
+	 *
+	 * @param r
+	 *            Region
+	 * @param series
+	 *            Region series
+	 *
+	 * @return Best parameters found, default ones if series is too short to
+	 *         score any candidate
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for candidates
+	 */
+	public HoltWintersParameters tune(Region r, TimeSeries series)
+			throws InterruptedException {
+		String key = r.name();
+		String fingerprint = fingerprint(series);
+		synchronized (cache) {
+			HoltWintersParameters cached = parse(cache.getProperty(key),
+					fingerprint);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		HoltWintersParameters parameters = tune(series);
+		synchronized (cache) {
+			cache.setProperty(key, format(parameters, fingerprint));
+			try {
+				saveCache();
+			} catch (IOException e) {
+				/*
+				 * Lost cache only costs fitting again
+				 */
+				e.printStackTrace();
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Fit parameters to the series, no cache involved
+	 *
+	 * @param series
+	 *            Series
+	 *
+	 * @return Best parameters found, default ones if series is too short to
+	 *         score any candidate
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for candidates
+	 */
+	public HoltWintersParameters tune(TimeSeries series)
+			throws InterruptedException {
+		final double[] values = series.values();
+		final int count = values.length;
+		final int from = count - Math.min(EVALUATED, count / 2);
+		final int seasonLen = seasonLength(values, from);
+		if (seasonLen < 1 || from < seasonLen * 2 || from >= count) {
+			return HoltWintersParameters.DEFAULT;
+		}
+
+		/*
+		 * One task per window and alpha, large enough to pay for scheduling
+		 */
+		List<Callable<Candidate>> tasks = new ArrayList<Callable<Candidate>>();
+		for (final int window : WINDOWS) {
+			for (final double alpha : FACTORS) {
+				tasks.add(new Callable<Candidate>() {
+					public Candidate call() {
+						HoltWintersModel model = new HoltWintersModel(seasonLen);
+						Candidate best = null;
+						for (double beta : FACTORS) {
+							for (double gamma : FACTORS) {
+								double error = error(model, values, from, count,
+										window, alpha, beta, gamma);
+								if (best == null || error < best.error) {
+									best = new Candidate(
+											new HoltWintersParameters(alpha,
+													beta, gamma, window,
+													seasonLen), error);
+								}
+							}
+						}
+						return best;
+					}
+				});
+			}
+		}
+
+		Candidate best = null;
+		for (Future<Candidate> future : executor.invokeAll(tasks)) {
+			Candidate candidate = get(future);
+			if (best == null || candidate.error < best.error) {
+				best = candidate;
+			}
+		}
+		return best.error < Double.POSITIVE_INFINITY ? best.parameters
+				: HoltWintersParameters.DEFAULT;
+	}
+
+	/* private members goes below */
+
+	private static class Candidate {
+
+		private final HoltWintersParameters parameters;
+		private final double error;
+
+		private Candidate(HoltWintersParameters parameters, double error) {
+			this.parameters = parameters;
+			this.error = error;
+		}
+	}
+
+	/*
+	 * Season length of the values before the scored ones, detected like the
+	 * predictor does, scored values must not take part in it
+	 */
+	static int seasonLength(double[] values, int count) {
+		if (count < 2) {
+			return 0;
+		}
+		double mean = 0.0D;
+		for (int i = 0; i < count; i++) {
+			mean += values[i];
+		}
+		return Autocorrelation.seasonLength(values, count, mean / count,
+				count / 2);
+	}
+
+	/*
+	 * Mean squared error of forecasts of values[from..count) made from the
+	 * values before each of them, broken forecasts are taken as zero like the
+	 * predictor does. Model is refitted in place for every value.
+	 */
+	static double error(HoltWintersModel model, double[] values, int from,
+			int count, int window, double alpha, double beta, double gamma) {
+		double sum = 0.0D;
+		for (int t = from; t < count; t++) {
+			double forecast;
+			try {
+				model.fit(values, t, window, alpha, beta, gamma);
+				forecast = model.forecast(1);
+			} catch (PredictionException e) {
+				return Double.POSITIVE_INFINITY;
+			}
+			if (Double.isNaN(forecast) || Double.isInfinite(forecast)) {
+				forecast = 0.0D;
+			}
+			double e = values[t] - forecast;
+			sum += e * e;
+		}
+		return sum / (count - from);
+	}
+
+	/*
+	 * Series fingerprint, changes as soon as a value is added or changed
+	 */
+	private static String fingerprint(TimeSeries series) {
+		long hash = 1;
+		for (int i = 0; i < series.size(); i++) {
+			hash = hash * 31 + series.getTime(i);
+			hash = hash * 31 + Double.doubleToLongBits(series.getValue(i));
+		}
+		return series.size() + ":" + series.getLastTime() + ":"
+				+ Long.toHexString(hash);
+	}
+
+	private static String format(HoltWintersParameters parameters,
+			String fingerprint) {
+		return fingerprint + ";" + parameters.getAlpha() + ";"
+				+ parameters.getBeta() + ";" + parameters.getGamma() + ";"
+				+ parameters.getWindow() + ";" + parameters.getSeasonLen();
+	}
+
+	private static HoltWintersParameters parse(String value,
+			String fingerprint) {
+		if (value == null) {
+			return null;
+		}
+		String[] fields = value.split(";");
+		if (fields.length != 6 || !fields[0].equals(fingerprint)) {
+			return null;
+		}
+		try {
+			return new HoltWintersParameters(Double.parseDouble(fields[1]),
+					Double.parseDouble(fields[2]),
+					Double.parseDouble(fields[3]), Integer.parseInt(fields[4]),
+					Integer.parseInt(fields[5]));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private void loadCache() {
+		if (cacheFile == null || !cacheFile.exists()) {
+			return;
+		}
+
+		InputStream stream = null;
+		try {
+			stream = new FileInputStream(cacheFile);
+			cache.load(stream);
+		} catch (Exception e) {
+			/*
+			 * Broken cache only costs fitting again
+			 */
+			e.printStackTrace();
+			cache.clear();
+		} finally {
+			IOUtils.closeQuietly(stream);
+		}
+	}
+
+	private void saveCache() throws IOException {
+		if (cacheFile == null) {
+			return;
+		}
+
+		File tmp = new File(cacheFile.getPath().concat(".tmp"));
+		OutputStream stream = new FileOutputStream(tmp);
+		try {
+			cache.store(stream, "Holt-Winters parameters");
+		} finally {
+			stream.close();
+		}
+		if (!tmp.renameTo(cacheFile)
+				&& !(cacheFile.delete() && tmp.renameTo(cacheFile))) {
+			throw new IOException("Could not replace " + cacheFile);
+		}
+	}
+
+	private static Candidate get(Future<Candidate> future)
+			throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+}
@@ -0,0 +1,199 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+/**
+ * Online multiplicative Holt-Winters model. Level, trend and seasonal indexes
+ * are kept between updates, every new value costs O(1) and the forecast is
+ * available right after it.
+ *
+ * Model is initialized like {@link HoltWintersPredictor}: the first two seasons
+ * of values are buffered, give initial level, trend and seasonal indexes, and
+ * are then run through the update equations as well. Until then the model is
+ * not ready and forecasts are NaN.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class OnlineHoltWinters {
+
+	private final int seasonLen;
+	private final double alpha;
+	private final double beta;
+	private final double gamma;
+
+	/**
+	 * Create model
+	 *
+	 * @param seasonLen
+	 *            Season length, values
+	 * @param alpha
+	 *            Level smoothing
+	 * @param beta
+	 *            Trend smoothing
+	 * @param gamma
+	 *            Seasonal smoothing
+	 */
+	public OnlineHoltWinters(int seasonLen, double alpha, double beta,
+			double gamma) {
+		if (seasonLen < 1) {
+			throw new IllegalArgumentException("Wrong season length: "
+					+ seasonLen);
+		}
+		this.seasonLen = seasonLen;
+		this.alpha = alpha;
+		this.beta = beta;
+		this.gamma = gamma;
+		this.seasonal = new double[seasonLen];
+		this.buffer = new double[seasonLen * 2];
+	}
+
+	/**
+	 * Add the next value of the series
+	 *
+	 * @param time
+	 *            Value date/time, epoch millis
+	 * @param value
+	 *            Value
+	 */
+	public void update(long time, double value) {
+		if (count == 0) {
+			firstTime = time;
+		}
+		lastTime = time;
+		count++;
+
+		if (buffer == null) {
+			step(value);
+			return;
+		}
+		buffer[(int) count - 1] = value;
+		if (count == buffer.length) {
+			initialize();
+		}
+	}
+
+	/**
+	 * Check if enough values were added to forecast
+	 *
+	 * @return true if the model is initialized
+	 */
+	public boolean isReady() {
+		return buffer == null;
+	}
+
+	/**
+	 * Forecast a value ahead
+	 *
+	 * @param steps
+	 *            Steps ahead, 1 for the next value
+	 *
+	 * @return Forecast, NaN if the model is not ready
+	 */
+	public double forecast(int steps) {
+		if (steps < 1) {
+			throw new IllegalArgumentException("Wrong steps count: " + steps);
+		}
+		if (!isReady()) {
+			return Double.NaN;
+		}
+		return (level + trend * steps)
+				* seasonal[(int) ((position + steps - 1) % seasonLen)];
+	}
+
+	/**
+	 * Get count of added values
+	 *
+	 * @return Values count
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Get date/time of the last value
+	 *
+	 * @return Epoch millis, 0 if there are no values
+	 */
+	public long getLastTime() {
+		return lastTime;
+	}
+
+	/**
+	 * Get average time between values
+	 *
+	 * @return Millis, 0 if there are less than two values
+	 */
+	public long getAverageInterval() {
+		return count < 2 ? 0 : (lastTime - firstTime) / (count - 1);
+	}
+
+	public int getSeasonLen() {
+		return seasonLen;
+	}
+
+	/* private members goes below */
+
+	private final double[] seasonal;
+	/*
+	 * First two seasons of values, null once the model is initialized
+	 */
+	private double[] buffer;
+	private double level;
+	private double trend;
+
+	/*
+	 * Values processed by the update equations, seasonal index of the value
+	 * is position % seasonLen
+	 */
+	private long position;
+
+	private long count;
+	private long firstTime;
+	private long lastTime;
+
+	private void initialize() {
+		double fc = seasonLen;
+		double ybar1 = 0.0D;
+		double ybar2 = 0.0D;
+		for (int i = 0; i < seasonLen; i++) {
+			ybar1 += buffer[i];
+			ybar2 += buffer[seasonLen + i];
+		}
+		ybar1 /= fc;
+		ybar2 /= fc;
+
+		double b0 = (ybar2 - ybar1) / fc;
+		double tbar = (double) ((2 + seasonLen) * seasonLen) / 2D / fc;
+		double a0 = ybar1 - b0 * tbar;
+
+		double sumS = 0.0D;
+		for (int i = 0; i < seasonLen; i++) {
+			seasonal[i] = (buffer[i] / (a0 + (i + 1) * b0) + buffer[seasonLen
+					+ i]
+					/ (a0 + (seasonLen + i + 1) * b0)) / 2D;
+			sumS += seasonal[i];
+		}
+		double tS = (double) seasonLen / sumS;
+		for (int i = 0; i < seasonLen; i++) {
+			seasonal[i] *= tS;
+		}
+
+		level = a0;
+		trend = b0;
+		for (double value : buffer) {
+			step(value);
+		}
+		buffer = null;
+	}
+
+	private void step(double value) {
+		int season = (int) (position % seasonLen);
+		double previousLevel = level;
+		level = (alpha * value) / seasonal[season] + (1.0D - alpha)
+				* (previousLevel + trend);
+		trend = beta * (level - previousLevel) + (1.0D - beta) * trend;
+		seasonal[season] = (gamma * value) / level + (1.0D - gamma)
+				* seasonal[season];
+		position++;
+	}
+
+}
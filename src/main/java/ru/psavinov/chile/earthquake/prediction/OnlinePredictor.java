@@ -0,0 +1,226 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import java.util.Date;
+
+import ru.psavinov.chile.earthquake.Earthquake;
+import ru.psavinov.chile.earthquake.EarthquakeBase;
+import ru.psavinov.chile.earthquake.EarthquakeCatalog;
+import ru.psavinov.chile.earthquake.EarthquakeFilter;
+import ru.psavinov.chile.earthquake.EarthquakeSubscription;
+import ru.psavinov.chile.earthquake.EarthquakeView;
+import ru.psavinov.chile.earthquake.Region;
+
+/**
+ * Continuous earthquake prediction: one online Holt-Winters model of
+ * magnitudes per region, updated with every ingested earthquake, so the
+ * prediction is ready at any moment without refitting. Season length of a
+ * region is found from the first catalog added, the same way
+ * {@link HoltWintersPredictor} finds it from the whole series, and
+ * predictions are bounded and rounded like the batch ones.
+ *
+ * <pre>
+ * OnlinePredictor predictor = new OnlinePredictor(4, 0.7, 0.7, 0.7);
+ * predictor.follow(base, 1024);
+ * ...
+ * predictor.drain();
+ * EarthquakePrediction p = predictor.getPrediction(Region.Biobio);
+ * </pre>
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class OnlinePredictor {
+
+	private final OnlineHoltWinters[] models;
+
+	/**
+	 * Create predictor with the same smoothing for all regions
+	 *
+	 * @param seasonLen
+	 *            Season length of regions without earthquakes in the first
+	 *            added catalog, earthquakes
+	 * @param alpha
+	 *            Level smoothing
+	 * @param beta
+	 *            Trend smoothing
+	 * @param gamma
+	 *            Seasonal smoothing
+	 */
+	public OnlinePredictor(int seasonLen, double alpha, double beta,
+			double gamma) {
+		if (seasonLen < 1) {
+			throw new IllegalArgumentException("Wrong season length: "
+					+ seasonLen);
+		}
+		this.seasonLen = seasonLen;
+		this.alpha = alpha;
+		this.beta = beta;
+		this.gamma = gamma;
+		models = new OnlineHoltWinters[Region.values().length];
+		maxima = new double[models.length];
+	}
+
+	/**
+	 * Add all earthquakes of the catalog, in catalog order. Regions seen for
+	 * the first time get the season length of their earthquakes in the
+	 * catalog.
+	 *
+	 * @param catalog
+	 *            Earthquakes catalog
+	 */
+	public synchronized void add(EarthquakeCatalog catalog) {
+		for (Region r : Region.values()) {
+			if (models[r.ordinal()] == null) {
+				TimeSeries series = EarthquakePredictor.series(catalog, r);
+				if (series.size() > 0) {
+					models[r.ordinal()] = new OnlineHoltWinters(
+							Autocorrelation.seasonLength(series.values(),
+									series.size(), series.getAverage(),
+									series.size() / 2), alpha, beta, gamma);
+				}
+			}
+		}
+		for (int row = 0; row < catalog.size(); row++) {
+			update(catalog.getRegionOrdinal(row), catalog.getTime(row),
+					catalog.getMagnitude(row));
+		}
+	}
+
+	/**
+	 * Add an earthquake
+	 *
+	 * @param quake
+	 *            Earthquake
+	 */
+	public synchronized void add(Earthquake quake) {
+		update(quake.getRegion().ordinal(), quake.getDateTime().getTime(),
+				quake.getMagnitude());
+	}
+
+	/**
+	 * Add all earthquakes of the base and keep adding earthquakes ingested by
+	 * its poller, see {@link #drain()}
+	 *
+	 * @param base
+	 *            Earthquakes base
+	 * @param capacity
+	 *            Capacity of the queue of earthquakes waiting to be drained
+	 */
+	public synchronized void follow(EarthquakeBase base, int capacity) {
+		if (subscription != null) {
+			throw new IllegalStateException("Predictor follows a base already");
+		}
+
+		/*
+		 * Subscribe first: earthquakes published in between are both in the
+		 * catalog and in the queue, drain() skips them
+		 */
+		subscription = base.subscribe(new EarthquakeFilter(), capacity);
+		EarthquakeCatalog catalog = base.getCatalog();
+		followed = new EarthquakeView(catalog);
+		add(catalog);
+	}
+
+	/**
+	 * Add earthquakes ingested since the last drain, never waits
+	 *
+	 * @return Count of added earthquakes
+	 */
+	public synchronized int drain() {
+		if (subscription == null) {
+			return 0;
+		}
+
+		int added = 0;
+		for (Earthquake quake = subscription.poll(); quake != null; quake = subscription
+				.poll()) {
+			if (!followed.contains(quake)) {
+				add(quake);
+				added++;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Stop following the base
+	 */
+	public synchronized void stop() {
+		if (subscription != null) {
+			subscription.cancel();
+			subscription = null;
+			followed = null;
+		}
+	}
+
+	/**
+	 * Predict the next earthquake of the region: magnitude forecast one step
+	 * ahead bounded by the strongest earthquake seen, date/time after the
+	 * average time between earthquakes
+	 *
+	 * @param r
+	 *            Region
+	 *
+	 * @return Possible earthquake prediction, null if there are too few
+	 *         earthquakes or the forecast is not positive
+	 */
+	public synchronized EarthquakePrediction getPrediction(Region r) {
+		OnlineHoltWinters model = models[r.ordinal()];
+		if (model == null) {
+			return null;
+		}
+		double magnitude = model.forecast(1);
+		if (!(magnitude > 0) || Double.isInfinite(magnitude)) {
+			return null;
+		}
+		magnitude = HoltWintersPredictor.round(Math.min(magnitude,
+				maxima[r.ordinal()]));
+		if (magnitude == 0) {
+			return null;
+		}
+
+		EarthquakePrediction prediction = new EarthquakePrediction();
+		prediction.setMagnitude(magnitude);
+		prediction.setDateTime(new Date(model.getLastTime()
+				+ model.getAverageInterval()));
+		return prediction;
+	}
+
+	/**
+	 * Get model of the region
+	 *
+	 * @param r
+	 *            Region
+	 *
+	 * @return Holt-Winters model, guarded by this predictor, null if no
+	 *         earthquakes of the region were added yet
+	 */
+	public synchronized OnlineHoltWinters getModel(Region r) {
+		return models[r.ordinal()];
+	}
+
+	/* private members goes below */
+
+	private final int seasonLen;
+	private final double alpha;
+	private final double beta;
+	private final double gamma;
+
+	/*
+	 * Strongest earthquake of every region, upper bound of its predictions
+	 */
+	private final double[] maxima;
+
+	private EarthquakeSubscription subscription;
+	private EarthquakeView followed;
+
+	private void update(int region, long time, double magnitude) {
+		if (models[region] == null) {
+			models[region] = new OnlineHoltWinters(seasonLen, alpha, beta,
+					gamma);
+		}
+		models[region].update(time, magnitude);
+		maxima[region] = Math.max(maxima[region], magnitude);
+	}
+
+}
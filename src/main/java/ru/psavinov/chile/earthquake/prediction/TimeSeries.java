@@ -0,0 +1,219 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable time series in primitive arrays: timestamps in ascending order and
+ * values. Series is sorted once when built, statistics used by predictors are
+ * computed once as well.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class TimeSeries {
+
+	private final long[] times;
+	private final double[] values;
+	private final double average;
+	private final double maximum;
+
+	/**
+	 * Create series, arrays are copied and sorted by time, values with equal
+	 * time keep their order
+	 *
+	 * @param times
+	 *            Timestamps, epoch millis
+	 * @param values
+	 *            Values
+	 */
+	public TimeSeries(long[] times, double[] values) {
+		this(times, values, times.length);
+	}
+
+	/**
+	 * Create series from list-based series
+	 *
+	 * @param series
+	 *            Series
+	 *
+	 * @return Primitive series
+	 */
+	public static TimeSeries of(Series series) {
+		List<SeriesItem> items = series.getItems();
+		long[] times = new long[items.size()];
+		double[] values = new double[items.size()];
+		for (int i = 0; i < items.size(); i++) {
+			times[i] = items.get(i).getDate().getTime();
+			values[i] = items.get(i).getValue();
+		}
+		return new TimeSeries(times, values, times.length);
+	}
+
+	/**
+	 * Growable series builder
+	 */
+	public static class Builder {
+
+		private long[] times;
+		private double[] values;
+		private int size;
+
+		public Builder() {
+			this(16);
+		}
+
+		public Builder(int capacity) {
+			times = new long[Math.max(capacity, 1)];
+			values = new double[Math.max(capacity, 1)];
+		}
+
+		/**
+		 * Add value, in any time order
+		 *
+		 * @return This builder
+		 */
+		public Builder add(long time, double value) {
+			if (size == times.length) {
+				times = Arrays.copyOf(times, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			times[size] = time;
+			values[size++] = value;
+			return this;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public TimeSeries build() {
+			return new TimeSeries(times, values, size);
+		}
+	}
+
+	public int size() {
+		return times.length;
+	}
+
+	public long getTime(int index) {
+		return times[index];
+	}
+
+	public double getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Get timestamp of the first value
+	 *
+	 * @return Epoch millis, 0 if the series is empty
+	 */
+	public long getFirstTime() {
+		return times.length == 0 ? 0 : times[0];
+	}
+
+	/**
+	 * Get timestamp of the last value
+	 *
+	 * @return Epoch millis, 0 if the series is empty
+	 */
+	public long getLastTime() {
+		return times.length == 0 ? 0 : times[times.length - 1];
+	}
+
+	/**
+	 * Get average time between values
+	 *
+	 * @return Millis, 0 if there are less than two values
+	 */
+	public long getAverageInterval() {
+		return times.length < 2 ? 0 : (getLastTime() - getFirstTime())
+				/ (times.length - 1);
+	}
+
+	/**
+	 * Get average value
+	 *
+	 * @return Average, 0 if the series is empty
+	 */
+	public double getAverage() {
+		return average;
+	}
+
+	/**
+	 * Get largest value
+	 *
+	 * @return Largest value, 0 if the series is empty
+	 */
+	public double getMaximum() {
+		return maximum;
+	}
+
+	/* private members goes below */
+
+	private TimeSeries(long[] times, double[] values, int size) {
+		if (values.length < size) {
+			throw new IllegalArgumentException(
+					"Timestamps and values counts differ!");
+		}
+
+		this.times = Arrays.copyOf(times, size);
+		this.values = Arrays.copyOf(values, size);
+		if (!isSorted(this.times)) {
+			sort(this.times, this.values);
+		}
+
+		double sum = 0.0D;
+		double max = size == 0 ? 0.0D : Double.NEGATIVE_INFINITY;
+		for (double value : this.values) {
+			sum += value;
+			max = Math.max(max, value);
+		}
+		this.average = size == 0 ? 0.0D : sum / size;
+		this.maximum = max;
+	}
+
+	/**
+	 * Values array, shared, must not be modified
+	 */
+	double[] values() {
+		return values;
+	}
+
+	private static boolean isSorted(long[] times) {
+		for (int i = 1; i < times.length; i++) {
+			if (times[i] < times[i - 1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Stable sort by time, rarely needed as series are usually built in time
+	 * order
+	 */
+	private static void sort(final long[] times, double[] values) {
+		Integer[] order = new Integer[times.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Long.compare(times[a], times[b]);
+			}
+		});
+
+		long[] sortedTimes = new long[times.length];
+		double[] sortedValues = new double[times.length];
+		for (int i = 0; i < order.length; i++) {
+			sortedTimes[i] = times[order[i]];
+			sortedValues[i] = values[order[i]];
+		}
+		System.arraycopy(sortedTimes, 0, times, 0, times.length);
+		System.arraycopy(sortedValues, 0, values, 0, values.length);
+	}
+
+}
@@ -0,0 +1,130 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Date codec agrees with SimpleDateFormat and Calendar in the default time
+ * zone, and stays correct when shared by many threads
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class DateCodecTest {
+
+	private static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+	/*
+	 * 1900-01-01 - 2100-01-01, whole seconds
+	 */
+	private static final long FROM = -2208988800L;
+	private static final long RANGE = 6311433600L;
+
+	@Test
+	public void formatMatchesSimpleDateFormat() {
+		SimpleDateFormat format = new SimpleDateFormat(PATTERN);
+		Calendar calendar = Calendar.getInstance();
+		Random random = new Random(29);
+		for (int i = 0; i < 100000; i++) {
+			long millis = randomMillis(random);
+			calendar.setTimeInMillis(millis);
+
+			assertEquals(format.format(new Date(millis)), DateCodec
+					.format(millis));
+			assertEquals(calendar.get(Calendar.YEAR), DateCodec.yearOf(millis));
+			assertEquals(calendar.get(Calendar.MONTH), DateCodec
+					.monthOf(millis));
+		}
+	}
+
+	@Test
+	public void toEpochMillisMatchesSimpleDateFormat() throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat(PATTERN);
+		Random random = new Random(31);
+		for (int i = 0; i < 100000; i++) {
+			String text = format.format(new Date(randomMillis(random)));
+
+			assertEquals(text, format.parse(text).getTime(), parse(text));
+		}
+	}
+
+	@Test
+	public void leapDaysAndSeparator() throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat(PATTERN);
+		String[] dates = { "2000-02-29 12:00:00", "2012-02-29 23:59:59",
+				"2100-03-01 00:00:00", "1970-01-01 00:00:00",
+				"2014-04-01 20:46:45" };
+		for (String text : dates) {
+			long millis = parse(text);
+			StringBuilder b = new StringBuilder("[");
+			DateCodec.append(b, millis, ';');
+
+			assertEquals(format.parse(text).getTime(), millis);
+			assertEquals(text, DateCodec.format(millis));
+			assertEquals("[" + text.replace(' ', ';'), b.toString());
+		}
+	}
+
+	@Test
+	public void concurrentUse() throws Exception {
+		final int count = 20000;
+		final long[] millis = new long[count];
+		final String[] texts = new String[count];
+		final long[] parsed = new long[count];
+		SimpleDateFormat format = new SimpleDateFormat(PATTERN);
+		Random random = new Random(37);
+		for (int i = 0; i < count; i++) {
+			millis[i] = randomMillis(random);
+			texts[i] = format.format(new Date(millis[i]));
+			parsed[i] = format.parse(texts[i]).getTime();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			Future<?>[] futures = new Future<?>[8];
+			for (int t = 0; t < futures.length; t++) {
+				final int shift = t * count / futures.length;
+				futures[t] = executor.submit(new Callable<Void>() {
+					public Void call() {
+						for (int n = 0; n < count * 5; n++) {
+							int i = (n + shift) % count;
+							assertEquals(texts[i], DateCodec.format(millis[i]));
+							assertEquals(texts[i], parsed[i], parse(texts[i]));
+						}
+						return null;
+					}
+				});
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/* private members goes below */
+
+	private static long randomMillis(Random random) {
+		return (FROM + (long) (random.nextDouble() * RANGE)) * 1000L;
+	}
+
+	private static long parse(String text) {
+		return DateCodec.toEpochMillis(Integer.parseInt(text.substring(0, 4)),
+				Integer.parseInt(text.substring(5, 7)), Integer.parseInt(text
+						.substring(8, 10)), Integer.parseInt(text.substring(
+						11, 13)), Integer.parseInt(text.substring(14, 16)),
+				Integer.parseInt(text.substring(17, 19)));
+	}
+
+}
@@ -0,0 +1,187 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.util.Calendar;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ru.psavinov.chile.earthquake.EarthquakeAggregator.Dimension;
+
+/**
+ * Count matrices of a single aggregation pass over the bundled base equal
+ * counts of the earthquakes grouped one by one with Calendar fields and
+ * linear bucket search
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeAggregatorTest {
+
+	private static final double[] MAGNITUDES = { 3, 4, 5, 6, 7 };
+	private static final double[] DEPTHS = { 10, 35, 70, 300 };
+
+	private static EarthquakeCatalog catalog;
+	private static Earthquake[] quakes;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		catalog = new EarthquakeCatalog();
+		InputStream stream = EarthquakeBase.class
+				.getResourceAsStream(EarthquakeBase.RESOURCE_BASE);
+		try {
+			new EmscParser(catalog).parse(stream);
+		} finally {
+			stream.close();
+		}
+		catalog.sort();
+
+		quakes = new Earthquake[catalog.size()];
+		for (int row = 0; row < quakes.length; row++) {
+			quakes[row] = catalog.get(row);
+		}
+	}
+
+	@Test
+	public void singlePassMatchesGrouping() {
+		EarthquakeAggregator aggregator = new EarthquakeAggregator();
+		CountMatrix byRegion = aggregator.count(EarthquakeAggregator
+				.byRegion());
+		CountMatrix byMonth = aggregator
+				.count(EarthquakeAggregator.byMonth());
+		CountMatrix byDepth = aggregator.count(EarthquakeAggregator
+				.byDepth(DEPTHS));
+		CountMatrix regionMagnitude = aggregator.count(EarthquakeAggregator
+				.byRegion(), EarthquakeAggregator.byMagnitude(MAGNITUDES));
+		CountMatrix yearMonth = aggregator.count(EarthquakeAggregator.byYear(
+				2010, 2012), EarthquakeAggregator.byMonth());
+		CountMatrix cube = aggregator.count(EarthquakeAggregator.byRegion(),
+				EarthquakeAggregator.byMagnitude(MAGNITUDES),
+				EarthquakeAggregator.byDepth(DEPTHS));
+		aggregator.aggregate(catalog);
+
+		int regions = Region.values().length;
+		double[] regionCounts = new double[regions];
+		double[] monthCounts = new double[12];
+		double[] depthCounts = new double[DEPTHS.length + 1];
+		double[][] regionMagnitudeCounts = new double[regions][MAGNITUDES.length + 1];
+		double[][] yearMonthCounts = new double[3][12];
+		int[][][] cubeCounts = new int[regions][MAGNITUDES.length + 1][DEPTHS.length + 1];
+		Calendar calendar = Calendar.getInstance();
+		for (Earthquake quake : quakes) {
+			calendar.setTime(quake.getDateTime());
+			int region = quake.getRegion().ordinal();
+			int month = calendar.get(Calendar.MONTH);
+			int year = calendar.get(Calendar.YEAR);
+			int magnitude = bucket(MAGNITUDES, quake.getMagnitude());
+			int depth = bucket(DEPTHS, quake.getDepth());
+
+			regionCounts[region]++;
+			monthCounts[month]++;
+			depthCounts[depth]++;
+			regionMagnitudeCounts[region][magnitude]++;
+			if (year >= 2010 && year <= 2012) {
+				yearMonthCounts[year - 2010][month]++;
+			}
+			cubeCounts[region][magnitude][depth]++;
+		}
+
+		assertArrayEquals(regionCounts, byRegion.toArray(), 0);
+		assertArrayEquals(monthCounts, byMonth.toArray(), 0);
+		assertArrayEquals(depthCounts, byDepth.toArray(), 0);
+		assertTable(regionMagnitudeCounts, regionMagnitude.toTable());
+		assertTable(yearMonthCounts, yearMonth.toTable());
+		for (int region = 0; region < regions; region++) {
+			for (int magnitude = 0; magnitude <= MAGNITUDES.length; magnitude++) {
+				for (int depth = 0; depth <= DEPTHS.length; depth++) {
+					assertEquals(cubeCounts[region][magnitude][depth], cube
+							.get(region, magnitude, depth));
+				}
+			}
+		}
+
+		assertEquals(quakes.length, byRegion.getTotal());
+		assertEquals(quakes.length, regionMagnitude.getTotal());
+		assertEquals(quakes.length, cube.getTotal());
+		assertEquals(sum(yearMonthCounts), yearMonth.getTotal());
+	}
+
+	@Test
+	public void rowsAreVisitedOnce() {
+		final int[] visits = new int[catalog.size()];
+		Dimension counting = new Dimension() {
+
+			public int getSize() {
+				return 1;
+			}
+
+			public int bucketOf(EarthquakeCatalog catalog, int row) {
+				visits[row]++;
+				return 0;
+			}
+		};
+		EarthquakeAggregator aggregator = new EarthquakeAggregator();
+		aggregator.count(counting);
+		aggregator.count(EarthquakeAggregator.byRegion());
+		aggregator.count(EarthquakeAggregator.byMonth());
+		aggregator.aggregate(catalog);
+
+		for (int row = 0; row < visits.length; row++) {
+			assertEquals("row " + row, 1, visits[row]);
+		}
+	}
+
+	@Test
+	public void magnitudeEdgesAreInclusive() {
+		EarthquakeCatalog small = new EarthquakeCatalog();
+		float[] magnitudes = { 2.9F, 3F, 3.1F, 4F, 4.5F, 7F };
+		for (int i = 0; i < magnitudes.length; i++) {
+			small.add(i + 1, 1000L * i, magnitudes[i], -30, -71, 10,
+					Region.Coquimbo, ScaleType.ML);
+		}
+
+		EarthquakeAggregator aggregator = new EarthquakeAggregator();
+		CountMatrix matrix = aggregator.count(EarthquakeAggregator
+				.byMagnitude(3, 4, 7));
+		aggregator.aggregate(small);
+
+		assertArrayEquals(new double[] { 1, 2, 2, 1 }, matrix.toArray(), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void descendingEdges() {
+		EarthquakeAggregator.byDepth(10, 5);
+	}
+
+	/* private members goes below */
+
+	private static int bucket(double[] edges, Double value) {
+		int bucket = 0;
+		while (bucket < edges.length
+				&& value.floatValue() >= (float) edges[bucket]) {
+			bucket++;
+		}
+		return bucket;
+	}
+
+	private static void assertTable(double[][] expected, double[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals(expected[i], actual[i], 0);
+		}
+	}
+
+	private static int sum(double[][] table) {
+		int sum = 0;
+		for (double[] row : table) {
+			for (double value : row) {
+				sum += (int) value;
+			}
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,74 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Queries of the base loaded from the bundled resource, with the journal in a
+ * temporary home directory
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeBaseTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String home;
+	private EarthquakeBase base;
+
+	@Before
+	public void setUp() throws Exception {
+		home = System.getProperty("user.home");
+		System.setProperty("user.home", folder.getRoot().getPath());
+		base = new EarthquakeBase(false);
+	}
+
+	@After
+	public void tearDown() {
+		System.setProperty("user.home", home);
+	}
+
+	@Test
+	public void byTimeKeepsRangeOfTheFilter() {
+		long from = DateCodec.toEpochMillis(2010, 2, 27, 0, 0, 0);
+		long to = DateCodec.toEpochMillis(2010, 3, 1, 0, 0, 0);
+		EarthquakeFilter filter = new EarthquakeFilter().between(from, to);
+
+		int count = 0;
+		Iterator<Earthquake> quakes = base.getByTime(
+				new Date(DateCodec.toEpochMillis(2010, 1, 1, 0, 0, 0)),
+				new Date(DateCodec.toEpochMillis(2011, 1, 1, 0, 0, 0)), filter);
+		while (quakes.hasNext()) {
+			long time = quakes.next().getDateTime().getTime();
+			assertTrue(time >= from && time < to);
+			count++;
+		}
+		assertTrue(count > 0);
+		assertEquals(base.getByTime(new Date(from), new Date(to)).size(),
+				count);
+	}
+
+	@Test
+	public void byTimeOutsideRangeOfTheFilterIsEmpty() {
+		EarthquakeFilter filter = new EarthquakeFilter().between(
+				DateCodec.toEpochMillis(2010, 2, 27, 0, 0, 0),
+				DateCodec.toEpochMillis(2010, 3, 1, 0, 0, 0));
+		assertFalse(base.getByTime(
+				new Date(DateCodec.toEpochMillis(2011, 1, 1, 0, 0, 0)),
+				new Date(DateCodec.toEpochMillis(2012, 1, 1, 0, 0, 0)), filter)
+				.hasNext());
+	}
+
+}
@@ -0,0 +1,147 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Catalog deduplication keyed by EMSC event id, with date/time, region and
+ * magnitude as the key of earthquakes without one
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeCatalogTest {
+
+	private static final long TIME = 1388534400000L;
+
+	@Test
+	public void sameIdIsDuplicate() {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+
+		assertTrue(add(catalog, 370019, TIME, Region.Maule, 4.2F));
+		assertFalse(add(catalog, 370019, TIME + 60000, Region.Biobio, 5.1F));
+		assertEquals(1, catalog.size());
+		assertEquals(0, catalog.find(370019));
+	}
+
+	@Test
+	public void differentIdsShareTimestamp() {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+
+		assertTrue(add(catalog, 370019, TIME, Region.Maule, 4.2F));
+		assertTrue(add(catalog, 370020, TIME, Region.Maule, 4.2F));
+		assertEquals(2, catalog.size());
+		assertEquals(1, catalog.find(370020));
+	}
+
+	@Test
+	public void rowsWithoutIdUseLegacyKey() {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+
+		assertTrue(add(catalog, 0, TIME + 300, Region.Maule, 4.2F));
+		assertFalse(add(catalog, 0, TIME + 700, Region.Maule, 4.2F));
+		assertTrue(add(catalog, 0, TIME, Region.Biobio, 4.2F));
+		assertTrue(add(catalog, 0, TIME, Region.Maule, 4.3F));
+		assertEquals(3, catalog.size());
+		assertEquals(-1, catalog.find(0));
+		assertEquals(0, catalog.find(TIME, Region.Maule, 4.2F));
+	}
+
+	@Test
+	public void idIsAttachedToLegacyRow() {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		add(catalog, 0, TIME, Region.Maule, 4.2F);
+
+		assertFalse(add(catalog, 370019, TIME, Region.Maule, 4.2F));
+		assertEquals(1, catalog.size());
+		assertEquals(0, catalog.find(370019));
+		assertEquals(370019, catalog.getEventId(0));
+		assertFalse(add(catalog, 370019, TIME, Region.Maule, 4.2F));
+	}
+
+	@Test
+	public void keysFollowSort() {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		for (int i = 0; i < 1000; i++) {
+			add(catalog, 500000 + i, TIME - i * 60000L, Region.Maule, 3.0F + i
+					% 30 / 10F);
+		}
+		assertFalse(catalog.isSorted());
+		catalog.sort();
+
+		for (int row = 0; row < catalog.size(); row++) {
+			assertEquals(row, catalog.find(catalog.getEventId(row)));
+			assertEquals(row, catalog.find(catalog.getTime(row), Region.Maule,
+					catalog.getMagnitude(row)));
+		}
+		assertFalse(add(catalog, 500123, TIME, Region.Maule, 7F));
+	}
+
+	@Test
+	public void bundledBaseKeepsEventIds() throws Exception {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		InputStream stream = EarthquakeBase.class
+				.getResourceAsStream(EarthquakeBase.RESOURCE_BASE);
+		try {
+			new EmscParser(catalog).parse(stream);
+		} finally {
+			stream.close();
+		}
+		catalog.sort();
+
+		Set<Long> ids = new HashSet<Long>();
+		for (int row = 0; row < catalog.size(); row++) {
+			long id = catalog.getEventId(row);
+			if (id > 0) {
+				assertTrue(ids.add(id));
+				assertEquals(row, catalog.find(id));
+			}
+		}
+		assertFalse(ids.isEmpty());
+		assertEquals(0, catalog.addAll(catalog.copy()));
+	}
+
+	@Test
+	public void equalityOfEarthquakes() {
+		Earthquake first = quake(370019L, TIME, 4.2D);
+		Earthquake same = quake(370019L, TIME + 60000, 5.0D);
+		Earthquake other = quake(370020L, TIME, 4.2D);
+		Earthquake noId = quake(null, TIME, 4.2D);
+
+		assertEquals(first, same);
+		assertEquals(first.hashCode(), same.hashCode());
+		assertNotEquals(first, other);
+		assertNotEquals(first, noId);
+		assertNotEquals(noId, first);
+		assertEquals(noId, quake(null, TIME, 4.2D));
+		assertEquals(noId.hashCode(), quake(null, TIME, 4.2D).hashCode());
+		assertNotEquals(noId, quake(null, TIME, 4.3D));
+	}
+
+	/* private members goes below */
+
+	private static boolean add(EarthquakeCatalog catalog, long eventId,
+			long time, Region region, float magnitude) {
+		return catalog.add(eventId, time, magnitude, -35, -71, 10, region,
+				ScaleType.ML);
+	}
+
+	private static Earthquake quake(Long eventId, long time, double magnitude) {
+		Earthquake quake = new Earthquake();
+		quake.setEventId(eventId);
+		quake.setDateTime(new Date(time));
+		quake.setRegion(Region.Maule);
+		quake.setMagnitude(magnitude);
+		return quake;
+	}
+
+}
@@ -0,0 +1,124 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Journal append, replay and compaction of the recorded EMSC page: 6
+ * earthquakes of Chile, the latest on 2014-04-05
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EarthquakeJournal journal;
+	private EarthquakeCatalog catalog;
+
+	@Before
+	public void setUp() throws Exception {
+		journal = new EarthquakeJournal(folder.getRoot());
+		catalog = new EarthquakeCatalog();
+		InputStream stream = getClass().getResourceAsStream("emsc-page.csv");
+		try {
+			new EmscParser(catalog).parse(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void replayRestoresAppendedRows() throws Exception {
+		journal.append(catalog, 0, 4);
+		journal.append(catalog, 4, catalog.size());
+
+		EarthquakeCatalog replayed = replay(new EarthquakeCatalog());
+		assertRows(catalog, replayed);
+	}
+
+	@Test
+	public void replayRejectsDuplicates() throws Exception {
+		journal.append(catalog, 0, catalog.size());
+		journal.append(catalog, 0, catalog.size());
+
+		assertEquals(catalog.size(), replay(new EarthquakeCatalog()).size());
+	}
+
+	@Test
+	public void compactionReplacesJournalWithSnapshot() throws Exception {
+		journal.append(catalog, 0, catalog.size());
+		assertTrue(journal.needsCompaction(catalog.size()));
+
+		journal.compact(catalog).join();
+		assertTrue(journal.getSnapshotFile().exists());
+		assertTrue(journal.getJournalFiles().isEmpty());
+		assertFalse(journal.needsCompaction(catalog.size()));
+
+		assertRows(catalog, EarthquakeSnapshot.read(journal.getSnapshotFile()));
+	}
+
+	@Test
+	public void rowsAppendedDuringCompactionAreKept() throws Exception {
+		journal.append(catalog, 0, 4);
+		EarthquakeCatalog compacted = catalog.copy();
+		Thread compaction = journal.compact(compacted);
+
+		/*
+		 * Journal is rotated before compact() returns, later rows go to a
+		 * fresh journal whatever the compaction thread is doing
+		 */
+		journal.append(catalog, 4, catalog.size());
+		compaction.join();
+
+		List<File> files = journal.getJournalFiles();
+		assertEquals(1, files.size());
+		EarthquakeCatalog loaded = replay(EarthquakeSnapshot.read(journal
+				.getSnapshotFile()));
+		assertRows(catalog, loaded);
+	}
+
+	/* private members goes below */
+
+	private EarthquakeCatalog replay(EarthquakeCatalog target)
+			throws Exception {
+		for (File file : journal.getJournalFiles()) {
+			new ParallelEmscParser(target, ForkJoinPool.commonPool())
+					.parse(file);
+		}
+		return target;
+	}
+
+	private static void assertRows(EarthquakeCatalog expected,
+			EarthquakeCatalog actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int row = 0; row < expected.size(); row++) {
+			int found = actual.find(expected.getEventId(row));
+			assertTrue(found >= 0);
+			assertEquals(expected.getTime(row), actual.getTime(found));
+			assertEquals(expected.getRegion(row), actual.getRegion(found));
+			assertEquals(expected.getScaleType(row), actual.getScaleType(found));
+			assertEquals(expected.getMagnitude(row), actual.getMagnitude(found),
+					0f);
+			assertEquals(expected.getLatitude(row), actual.getLatitude(found),
+					0f);
+			assertEquals(expected.getLongitude(row),
+					actual.getLongitude(found), 0f);
+			assertEquals(expected.getDepth(row), actual.getDepth(found), 0f);
+		}
+	}
+
+}
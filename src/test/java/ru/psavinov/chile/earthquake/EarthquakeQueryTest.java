@@ -0,0 +1,165 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import ru.psavinov.chile.earthquake.EarthquakeQuery.Order;
+
+/**
+ * Planned queries over the bundled base return exactly what a scan of all
+ * rows returns, for every order, with and without a limit, whichever index
+ * the planner picks
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+@RunWith(Parameterized.class)
+public class EarthquakeQueryTest {
+
+	private static final int[] LIMITS = { -1, 0, 1, 7 };
+
+	private static EarthquakeCatalog catalog;
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> filters() {
+		long y2010 = DateCodec.toEpochMillis(2010, 1, 1, 0, 0, 0);
+		long y2011 = DateCodec.toEpochMillis(2011, 1, 1, 0, 0, 0);
+		long march = DateCodec.toEpochMillis(2014, 3, 1, 0, 0, 0);
+		return Arrays.asList(new Object[][] {
+				{ "all", new EarthquakeFilter() },
+				{ "region", new EarthquakeFilter().regions(Region.Biobio) },
+				{ "regions",
+						new EarthquakeFilter().regions(Region.Tarapaca,
+								Region.Antofagasta) },
+				{ "time", new EarthquakeFilter().between(y2010, y2011) },
+				{ "magnitude", new EarthquakeFilter().magnitudeGT(5) },
+				{ "magnitude range",
+						new EarthquakeFilter().magnitudeGE(4).magnitudeLT(4.5) },
+				{ "depth", new EarthquakeFilter().depth(0, 30) },
+				{ "scale", new EarthquakeFilter().scaleTypes(ScaleType.MB) },
+				{ "box", new EarthquakeFilter().box(-34, -32, -72, -70) },
+				{ "distance",
+						new EarthquakeFilter().distance(-33.45, -70.66, 300) },
+				{ "region and time",
+						new EarthquakeFilter().regions(Region.Maule).between(
+								y2010, y2011) },
+				{ "region, magnitude and time",
+						new EarthquakeFilter().regions(Region.Tarapaca)
+								.magnitudeGE(4).between(march, Long.MAX_VALUE) },
+				{ "box and magnitude",
+						new EarthquakeFilter().box(-40, -30, -75, -68)
+								.magnitudeLE(3.5) },
+				{ "distance, region and depth",
+						new EarthquakeFilter().distance(-20.3, -70.3, 150)
+								.regions(Region.Tarapaca).depth(20, 60) },
+				{ "nothing", new EarthquakeFilter().magnitudeGT(10) },
+				{ "empty time", new EarthquakeFilter().between(y2011, y2010) } });
+	}
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		catalog = new EarthquakeCatalog();
+		InputStream stream = EarthquakeBase.class
+				.getResourceAsStream(EarthquakeBase.RESOURCE_BASE);
+		try {
+			new EmscParser(catalog).parse(stream);
+		} finally {
+			stream.close();
+		}
+		catalog.sort();
+	}
+
+	private final EarthquakeFilter filter;
+
+	public EarthquakeQueryTest(String name, EarthquakeFilter filter) {
+		this.filter = filter;
+	}
+
+	@Test
+	public void matchesScan() {
+		for (Order order : Order.values()) {
+			List<Integer> expected = scan(order);
+			for (int limit : LIMITS) {
+				List<Integer> rows = limit < 0 ? expected : expected.subList(0,
+						Math.min(limit, expected.size()));
+				EarthquakeQuery query = query(order, limit);
+				String plan = query + " " + query.explain();
+
+				assertEquals(plan, keys(rows), keys(query));
+				assertEquals(plan, rows.size(), query(order, limit).count());
+				assertEquals(plan, rows.size(), query(order, limit).toSet()
+						.size());
+			}
+		}
+	}
+
+	/* private members goes below */
+
+	private EarthquakeQuery query(Order order, int limit) {
+		EarthquakeQuery query = new EarthquakeQuery(catalog, filter)
+				.orderBy(order);
+		return limit < 0 ? query : query.limit(limit);
+	}
+
+	/*
+	 * Matching rows in the requested order: catalog order is date/time order,
+	 * equal magnitudes are kept in date/time order by the stable sort
+	 */
+	private List<Integer> scan(Order order) {
+		List<Integer> rows = new ArrayList<Integer>();
+		for (int row = 0; row < catalog.size(); row++) {
+			if (filter.accept(catalog, row)) {
+				rows.add(row);
+			}
+		}
+		if (order == Order.MAGNITUDE_ASC || order == Order.MAGNITUDE_DESC) {
+			Collections.sort(rows, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return Float.compare(catalog.getMagnitude(a),
+							catalog.getMagnitude(b));
+				}
+			});
+		}
+		if (order == Order.TIME_DESC || order == Order.MAGNITUDE_DESC) {
+			Collections.reverse(rows);
+		}
+		return rows;
+	}
+
+	private static List<String> keys(List<Integer> rows) {
+		List<String> keys = new ArrayList<String>();
+		for (int row : rows) {
+			keys.add(key(catalog.get(row)));
+		}
+		return keys;
+	}
+
+	private static List<String> keys(EarthquakeQuery query) {
+		List<String> keys = new ArrayList<String>();
+		for (Earthquake quake : query) {
+			keys.add(key(quake));
+		}
+		return keys;
+	}
+
+	private static String key(Earthquake quake) {
+		return quake.getDateTime().getTime() + " " + quake.getRegion() + " "
+				+ quake.getMagnitude() + " " + quake.getLatitude() + " "
+				+ quake.getLongitude() + " " + quake.getDepth() + " "
+				+ quake.getEventId();
+	}
+
+}
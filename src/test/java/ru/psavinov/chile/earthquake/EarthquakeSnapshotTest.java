@@ -0,0 +1,162 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Binary snapshot of the bundled base: round-trip of every column, corrupted
+ * files are rejected with IOException and the base falls back to the bundled
+ * resource
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeSnapshotTest {
+
+	private static final int HEADER_LENGTH = 12;
+
+	/**
+	 * Columns before the regions: event id, date/time and 4 floats
+	 */
+	private static final int ROW_LENGTH_BEFORE_REGIONS = 8 + 8 + 4 * 4;
+
+	private static EarthquakeCatalog bundled;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+	private String home;
+
+	@BeforeClass
+	public static void load() throws Exception {
+		bundled = new EarthquakeCatalog();
+		InputStream stream = EarthquakeBase.class
+				.getResourceAsStream(EarthquakeBase.RESOURCE_BASE);
+		try {
+			new EmscParser(bundled).parse(stream);
+		} finally {
+			stream.close();
+		}
+		bundled.sort();
+	}
+
+	@Before
+	public void setUp() {
+		file = new File(folder.getRoot(), EarthquakeJournal.SNAPSHOT_FILE);
+		home = System.getProperty("user.home");
+		System.setProperty("user.home", folder.getRoot().getPath());
+	}
+
+	@After
+	public void tearDown() {
+		System.setProperty("user.home", home);
+	}
+
+	@Test
+	public void roundTripKeepsEveryColumn() throws IOException {
+		EarthquakeSnapshot.write(file, bundled);
+		EarthquakeCatalog read = EarthquakeSnapshot.read(file);
+
+		int count = bundled.size();
+		assertEquals(count, read.size());
+		assertArrayEquals(head(bundled.getEventIds(), count), head(
+				read.getEventIds(), count));
+		assertArrayEquals(head(bundled.getTimes(), count), head(
+				read.getTimes(), count));
+		assertArrayEquals(head(bundled.getMagnitudes(), count), head(
+				read.getMagnitudes(), count), 0f);
+		assertArrayEquals(head(bundled.getLatitudes(), count), head(
+				read.getLatitudes(), count), 0f);
+		assertArrayEquals(head(bundled.getLongitudes(), count), head(
+				read.getLongitudes(), count), 0f);
+		assertArrayEquals(head(bundled.getDepths(), count), head(
+				read.getDepths(), count), 0f);
+		assertArrayEquals(head(bundled.getRegionOrdinals(), count), head(
+				read.getRegionOrdinals(), count));
+		assertArrayEquals(head(bundled.getScaleTypeOrdinals(), count), head(
+				read.getScaleTypeOrdinals(), count));
+
+		long eventId = bundled.getEventId(0);
+		assertEquals(bundled.find(eventId), read.find(eventId));
+	}
+
+	@Test
+	public void unknownRegionOrdinalIsCorruption() throws IOException {
+		EarthquakeSnapshot.write(file, bundled);
+		corruptRegion();
+		assertCorrupted();
+	}
+
+	@Test
+	public void truncatedFileIsCorruption() throws IOException {
+		EarthquakeSnapshot.write(file, bundled);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(raf.length() - 1);
+		} finally {
+			raf.close();
+		}
+		assertCorrupted();
+	}
+
+	@Test
+	public void baseFallsBackFromCorruptedSnapshot() throws Exception {
+		EarthquakeSnapshot.write(file, bundled);
+		corruptRegion();
+
+		EarthquakeBase base = new EarthquakeBase(false);
+		assertEquals(bundled.size(), base.getCatalog().size());
+	}
+
+	/* private members goes below */
+
+	private void corruptRegion() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(HEADER_LENGTH + (long) bundled.size()
+					* ROW_LENGTH_BEFORE_REGIONS);
+			raf.write(0x7f);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void assertCorrupted() {
+		try {
+			EarthquakeSnapshot.read(file);
+			fail("Corrupted snapshot was read");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(),
+					e.getMessage().startsWith("Corrupted snapshot " + file));
+		}
+	}
+
+	private static long[] head(long[] values, int count) {
+		return Arrays.copyOf(values, count);
+	}
+
+	private static float[] head(float[] values, int count) {
+		return Arrays.copyOf(values, count);
+	}
+
+	private static byte[] head(byte[] values, int count) {
+		return Arrays.copyOf(values, count);
+	}
+
+}
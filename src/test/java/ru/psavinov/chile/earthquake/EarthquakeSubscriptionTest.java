@@ -0,0 +1,176 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Polling and delivery of polled earthquakes to subscribers, base is loaded
+ * from the bundled resource with the journal in a temporary home directory
+ * and synced against a local feed. The next page brings 3 new earthquakes:
+ * Tarapaca M3.6 and M2.9, Antofagasta M4.0.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakeSubscriptionTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private String url;
+	private String home;
+
+	private volatile byte[] page;
+	private volatile String etag;
+	private volatile CountDownLatch stall;
+
+	@Before
+	public void setUp() throws IOException {
+		home = System.getProperty("user.home");
+		System.setProperty("user.home", folder.getRoot().getPath());
+
+		serve("emsc-page.csv");
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/feed", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange);
+			}
+		});
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort()
+				+ "/feed?region=chile";
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+		System.setProperty("user.home", home);
+	}
+
+	@Test
+	public void pollDeliversMatchingEarthquakesOncePublished()
+			throws Exception {
+		EarthquakeBase base = new EarthquakeBase(true, url);
+		EarthquakeSubscription subscription = base.subscribe(
+				new EarthquakeFilter().regions(Region.Tarapaca).magnitudeGE(3),
+				10);
+
+		serve("emsc-next-page.csv");
+		assertEquals(3, base.poll());
+		assertEquals(1, subscription.getQueued());
+
+		Earthquake quake = subscription.poll();
+		assertEquals(Long.valueOf(370100), quake.getEventId());
+		assertEquals(3.6, quake.getMagnitude(), 1e-6);
+		assertTrue(base.getCatalog().find(370100) >= 0);
+		assertNull(subscription.poll());
+		assertEquals(1, subscription.getLatencies().getTotal());
+		assertEquals(0, subscription.getDropped());
+	}
+
+	@Test
+	public void startupSyncIsNotDelivered() throws Exception {
+		serve("emsc-next-page.csv");
+		EarthquakeBase base = new EarthquakeBase(true, url);
+		assertTrue(base.getCatalog().find(370100) >= 0);
+
+		EarthquakeSubscription subscription = base.subscribe(
+				new EarthquakeFilter(), 10);
+		assertEquals(0, base.poll());
+		assertEquals(0, subscription.getQueued());
+	}
+
+	@Test(timeout = 10000)
+	public void slowFeedDoesNotBlockAnalytics() throws Exception {
+		final EarthquakeBase base = new EarthquakeBase(true, url);
+		serve("emsc-next-page.csv");
+		stall = new CountDownLatch(1);
+
+		final AtomicInteger added = new AtomicInteger(-1);
+		Thread poll = new Thread(new Runnable() {
+			public void run() {
+				try {
+					added.set(base.poll());
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		poll.start();
+		while (stalled == 0) {
+			Thread.sleep(10);
+		}
+
+		/*
+		 * Feed is stalled in the middle of the poll
+		 */
+		GutenbergRichter analytics = base.analyze(30, null);
+		analytics.cancel();
+
+		stall.countDown();
+		poll.join();
+		assertEquals(3, added.get());
+	}
+
+	/* private members goes below */
+
+	private volatile int stalled;
+
+	private void serve(String resource) throws IOException {
+		InputStream stream = getClass().getResourceAsStream(resource);
+		try {
+			page = IOUtils.toByteArray(stream);
+		} finally {
+			stream.close();
+		}
+		etag = "\"" + resource + "\"";
+	}
+
+	private void respond(HttpExchange exchange) throws IOException {
+		try {
+			CountDownLatch latch = stall;
+			if (latch != null) {
+				stalled++;
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			if (etag.equals(exchange.getRequestHeaders().getFirst(
+					"If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+			byte[] body = page;
+			exchange.getResponseHeaders().set("ETag", etag);
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream stream = exchange.getResponseBody();
+			stream.write(body);
+			stream.close();
+		} finally {
+			exchange.close();
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * EMSC sync against a local feed serving a recorded page: 6 earthquakes of
+ * Chile and one of West Chile Rise, the latest on 2014-04-05
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EmscSyncTest {
+
+	private static final String ETAG = "\"page-1\"";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private String url;
+	private File stateFile;
+	private byte[] page;
+
+	private final List<String> queries = new ArrayList<String>();
+	private final List<Integer> statuses = new ArrayList<Integer>();
+	private volatile int status = 200;
+
+	@Before
+	public void setUp() throws IOException {
+		InputStream stream = getClass().getResourceAsStream("emsc-page.csv");
+		try {
+			page = IOUtils.toByteArray(stream);
+		} finally {
+			stream.close();
+		}
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/feed", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort()
+				+ "/feed?region=chile";
+		stateFile = new File(folder.getRoot(), "sync.properties");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void firstSyncFetchesWholeFeed() throws Exception {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		EmscSync sync = new EmscSync(url, stateFile);
+
+		assertEquals(6, sync.sync(catalog));
+		assertEquals(6, catalog.size());
+		assertEquals("region=chile", queries.get(0));
+		assertEquals("2014-04-05 10:28:44", DateCodec.format(sync.getLastTime()));
+	}
+
+	@Test
+	public void nextSyncStartsBeforeLatestEarthquake() throws Exception {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		new EmscSync(url, stateFile).sync(catalog);
+
+		/*
+		 * State is kept in the file, two days of overlap are requested again
+		 * and skipped as duplicates on merge
+		 */
+		EarthquakeCatalog fetched = new EarthquakeCatalog();
+		assertEquals(6, new EmscSync(url, stateFile).sync(catalog, fetched));
+		assertEquals("region=chile&" + EmscSync.START_DATE_PARAMETER
+				+ "=2014-04-03", queries.get(1));
+		assertEquals(0, catalog.addAll(fetched));
+		assertEquals(6, catalog.size());
+	}
+
+	@Test
+	public void unchangedFeedIsNotFetchedAgain() throws Exception {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		new EmscSync(url, stateFile).sync(catalog);
+		new EmscSync(url, stateFile).sync(catalog);
+
+		EarthquakeCatalog fetched = new EarthquakeCatalog();
+		assertEquals(0, new EmscSync(url, stateFile).sync(catalog, fetched));
+		assertEquals(Integer.valueOf(304), statuses.get(2));
+		assertEquals(0, fetched.size());
+	}
+
+	@Test
+	public void failedRequestIngestsNothing() throws Exception {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		EmscSync sync = new EmscSync(url, stateFile);
+
+		status = 503;
+		assertEquals(0, sync.sync(catalog));
+		assertEquals(0, catalog.size());
+		assertEquals(0, sync.getLastTime());
+		assertFalse(stateFile.exists());
+
+		status = 200;
+		assertEquals(6, sync.sync(catalog));
+	}
+
+	@Test
+	public void uncommittedFetchIsRepeated() throws Exception {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		EmscSync sync = new EmscSync(url, stateFile);
+		assertEquals(6, sync.fetch(catalog, new EarthquakeCatalog()));
+		assertEquals(0, sync.getLastTime());
+		assertFalse(stateFile.exists());
+
+		/*
+		 * Fetched earthquakes were not stored, the same request is repeated
+		 * unconditionally
+		 */
+		EarthquakeCatalog fetched = new EarthquakeCatalog();
+		assertEquals(6, sync.fetch(catalog, fetched));
+		assertEquals("region=chile", queries.get(1));
+		assertEquals(Integer.valueOf(200), statuses.get(1));
+
+		catalog.addAll(fetched);
+		sync.commit();
+		assertTrue(stateFile.exists());
+		assertEquals("2014-04-05 10:28:44", DateCodec.format(new EmscSync(url,
+				stateFile).getLastTime()));
+	}
+
+	/* private members goes below */
+
+	private synchronized void serve(HttpExchange exchange) throws IOException {
+		try {
+			queries.add(exchange.getRequestURI().getRawQuery());
+			int code = status;
+			if (code == 200
+					&& ETAG.equals(exchange.getRequestHeaders().getFirst(
+							"If-None-Match"))) {
+				code = 304;
+			}
+			statuses.add(code);
+
+			if (code != 200) {
+				exchange.sendResponseHeaders(code, -1);
+				return;
+			}
+			exchange.getResponseHeaders().set("ETag", ETAG);
+			exchange.sendResponseHeaders(code, page.length);
+			OutputStream body = exchange.getResponseBody();
+			body.write(page);
+			body.close();
+		} finally {
+			exchange.close();
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Gutenberg-Richter statistics recover the parameters of synthetic catalogs:
+ * magnitudes above 2.0 are drawn from the exponential law of the b value,
+ * rounded to 0.1 like EMSC magnitudes, and a few incomplete bins below are
+ * added for the completeness estimate to skip
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class GutenbergRichterTest {
+
+	private static final long START = 1388534400000L;
+	private static final long MINUTE = 60000L;
+	private static final int COUNT = 20000;
+
+	@Test
+	public void bValueOfSyntheticSample() {
+		for (double b : new double[] { 0.8, 1.0, 1.3 }) {
+			GutenbergRichter analytics = new GutenbergRichter(30, null);
+			analytics.add(sample(new Random(7), b));
+
+			MagnitudeDistribution distribution = analytics
+					.getDistribution(null);
+			double completeness = distribution.getCompleteness();
+			double estimate = distribution.getBValue(completeness);
+			double error = distribution.getBValueError(completeness);
+
+			assertEquals(2.0, completeness, 1e-9);
+			assertEquals("b " + b, b, estimate, 0.05);
+			assertTrue("b " + b + ", error " + error, error > 0
+					&& Math.abs(estimate - b) < 3 * error);
+			assertEquals(Math.log10(COUNT) + b * 2.0, distribution
+					.getAValue(completeness), 0.1);
+		}
+	}
+
+	@Test
+	public void regionsAndWindow() {
+		EarthquakeCatalog catalog = sample(new Random(13), 1.0);
+		GutenbergRichter analytics = new GutenbergRichter(1, null);
+		analytics.add(catalog);
+
+		int total = 0;
+		for (Region region : Region.values()) {
+			MagnitudeDistribution distribution = analytics
+					.getDistribution(region);
+			total += distribution.getTotal();
+			if (distribution.getTotal() > 1000) {
+				assertEquals(region.name(), 1.0, distribution
+						.getBValue(2.0), 0.15);
+			}
+		}
+		assertEquals(catalog.size(), total);
+
+		/*
+		 * One day window holds the earthquakes of the last day
+		 */
+		long end = analytics.getWindowEnd();
+		int window = 0;
+		for (int row = 0; row < catalog.size(); row++) {
+			if (catalog.getTime(row) >= end - 86400000L) {
+				window++;
+			}
+		}
+		assertTrue(end > catalog.getTime(catalog.size() - 1));
+		assertTrue(window > 0 && window < catalog.size());
+		assertEquals(window, analytics.getWindowDistribution(null).getTotal());
+	}
+
+	/* private members goes below */
+
+	/*
+	 * COUNT complete earthquakes, one a minute, and incomplete bins 1.0 - 1.9
+	 * with counts growing to the completeness bin
+	 */
+	private static EarthquakeCatalog sample(Random random, double b) {
+		EarthquakeCatalog catalog = new EarthquakeCatalog();
+		Region[] regions = Region.values();
+		int row = 0;
+		for (int bin = 10; bin < 20; bin++) {
+			for (int i = 0; i < (bin - 9) * 100; i++) {
+				add(catalog, row++, regions[row % regions.length], bin / 10F);
+			}
+		}
+		int incomplete = row;
+		double beta = b * Math.log(10);
+		for (int i = 0; i < COUNT; i++) {
+			double magnitude = 1.95 - Math.log(1 - random.nextDouble()) / beta;
+			add(catalog, row++, regions[row % regions.length], Math
+					.round(magnitude * 10) / 10F);
+		}
+		assertEquals(incomplete + COUNT, catalog.size());
+		return catalog;
+	}
+
+	private static void add(EarthquakeCatalog catalog, int row, Region region,
+			float magnitude) {
+		catalog.add(row + 1, START + row * MINUTE, magnitude, -30, -71, 10,
+				region, ScaleType.ML);
+	}
+
+}
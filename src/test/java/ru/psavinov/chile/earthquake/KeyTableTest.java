@@ -0,0 +1,71 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Open addressing key table behaves like a map of boxed keys, through
+ * resizes, replacements and keys sharing their low bits
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class KeyTableTest {
+
+	@Test
+	public void matchesHashMap() {
+		Random random = new Random(23);
+		KeyTable table = new KeyTable(0);
+		Map<Long, Integer> expected = new HashMap<Long, Integer>();
+		for (int i = 0; i < 50000; i++) {
+			long key;
+			switch (i % 3) {
+			case 0:
+				key = random.nextInt(20000) + 1;
+				break;
+			case 1:
+				key = -(random.nextInt(20000) + 1);
+				break;
+			default:
+				key = (long) random.nextInt(64) << 40 | 1;
+			}
+			table.put(key, i);
+			expected.put(key, i);
+		}
+
+		assertEquals(expected.size(), table.size());
+		for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+			assertEquals(entry.getValue().intValue(), table.get(entry.getKey()));
+		}
+		for (long key = 20001; key < 30000; key++) {
+			assertEquals(-1, table.get(key));
+			assertEquals(-1, table.get(-key));
+		}
+	}
+
+	@Test
+	public void copyIsIndependent() {
+		KeyTable table = new KeyTable(4);
+		table.put(370019, 0);
+		KeyTable copy = table.copy();
+		copy.put(370019, 5);
+		copy.put(370020, 6);
+
+		assertEquals(0, table.get(370019));
+		assertEquals(-1, table.get(370020));
+		assertEquals(1, table.size());
+		assertEquals(5, copy.get(370019));
+		assertEquals(2, copy.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroKey() {
+		new KeyTable(4).put(0, 1);
+	}
+
+}
@@ -0,0 +1,109 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ru.psavinov.chile.earthquake.exception.MalformedRecordException;
+
+/**
+ * Parallel import against the sequential parser, on input large enough to be
+ * split into several ranges
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class ParallelEmscParserTest {
+
+	private static final int ROWS = 40000;
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private static final String[] LABELS = { "TARAPACA, CHILE",
+			"OFFSHORE VALPARAISO, CHILE", "LIBERTADOR O`HIGGINS, CHILE",
+			"WEST CHILE RISE", "NEAR COAST OF AISEN, CHILE" };
+
+	private static ForkJoinPool pool;
+
+	@BeforeClass
+	public static void setUp() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void matchesSequentialParse() throws Exception {
+		byte[] data = csv(-1).getBytes(ASCII);
+
+		EarthquakeCatalog sequential = new EarthquakeCatalog();
+		int added = new EmscParser(sequential).parse(data, 0, data.length);
+		EarthquakeCatalog parallel = new EarthquakeCatalog();
+		assertEquals(added, new ParallelEmscParser(parallel, pool)
+				.parse(ByteBuffer.wrap(data)));
+
+		assertEquals(sequential.size(), parallel.size());
+		for (int row = 0; row < sequential.size(); row++) {
+			assertEquals(sequential.getEventId(row), parallel.getEventId(row));
+			assertEquals(sequential.getTime(row), parallel.getTime(row));
+		}
+	}
+
+	@Test
+	public void reportsLineOfInput() throws Exception {
+		/*
+		 * Header is line 1, row i is line i + 2
+		 */
+		int broken = ROWS - 10;
+		byte[] data = csv(broken).getBytes(ASCII);
+
+		try {
+			new ParallelEmscParser(new EarthquakeCatalog(), pool)
+					.parse(ByteBuffer.wrap(data));
+			fail("Malformed record accepted");
+		} catch (MalformedRecordException e) {
+			assertEquals(broken + 2, e.getLine());
+		}
+
+		try {
+			new EmscParser(new EarthquakeCatalog()).parse(data, 0, data.length);
+			fail("Malformed record accepted");
+		} catch (MalformedRecordException e) {
+			assertEquals(broken + 2, e.getLine());
+		}
+	}
+
+	/* private members goes below */
+
+	/*
+	 * Export with a header and a row with broken magnitude, if any
+	 */
+	private static String csv(int broken) {
+		StringBuilder b = new StringBuilder(ROWS * 100);
+		b.append("Date;Time;Latitude;Longitude;Depth;;Scale;Magnitude;Region;Updated;Id;\n");
+		long time = 1072915200000L;
+		for (int i = 0; i < ROWS; i++) {
+			time += 60000;
+			DateCodec.append(b, time, ';');
+			b.append(";-33.45;-70.66;")
+					.append(i % 100)
+					.append("; ;ML;")
+					.append(i == broken ? "x.y" : String.valueOf(2 + i % 50 / 10.0))
+					.append(';')
+					.append(LABELS[i % LABELS.length])
+					.append(";2014-04-05 10:43;").append(i + 1).append(";\n");
+		}
+		return b.toString();
+	}
+
+}
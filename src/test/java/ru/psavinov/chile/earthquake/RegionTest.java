@@ -0,0 +1,126 @@
+package ru.psavinov.chile.earthquake;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import ru.psavinov.chile.earthquake.exception.UnknownRegionException;
+
+/**
+ * Region resolver against every EMSC label of the feed filter, region aliases,
+ * enum and display names
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+@RunWith(Enclosed.class)
+public class RegionTest {
+
+	@RunWith(Parameterized.class)
+	public static class Labels {
+
+		@Parameters(name = "{0}")
+		public static Collection<Object[]> labels() {
+			List<Object[]> labels = new ArrayList<Object[]>(Arrays.asList(new Object[][] {
+					/*
+					 * EMSC labels of the feed filter
+					 */
+					{ "AISEN, CHILE", Region.Aysen },
+					{ "ANTOFAGASTA, CHILE", Region.Antofagasta },
+					{ "ARAUCANIA, CHILE", Region.Araucania },
+					{ "ATACAMA, CHILE", Region.Atacama },
+					{ "BIO-BIO, CHILE", Region.Biobio },
+					{ "COQUIMBO, CHILE", Region.Coquimbo },
+					{ "ISLA CHILOE, LOS LAGOS, CHILE", Region.LosLagos },
+					{ "LIBERTADOR O`HIGGINS, CHILE", Region.OHiggins },
+					{ "LOS LAGOS, CHILE", Region.LosLagos },
+					{ "MAGALLANES, CHILE", Region.Magallanes },
+					{ "MAULE, CHILE", Region.Maule },
+					{ "NEAR COAST OF AISEN, CHILE", Region.Aysen },
+					{ "OFF COAST OF AISEN, CHILE", Region.Aysen },
+					{ "OFF COAST OF ANTOFAGASTA, CHILE", Region.Antofagasta },
+					{ "OFF COAST OF ARAUCANIA, CHILE", Region.Araucania },
+					{ "OFF COAST OF ATACAMA, CHILE", Region.Atacama },
+					{ "OFF COAST OF BIO-BIO, CHILE", Region.Biobio },
+					{ "OFF COAST OF COQUIMBO, CHILE", Region.Coquimbo },
+					{ "OFF COAST OF LOS LAGOS, CHILE", Region.LosLagos },
+					{ "OFF COAST OF MAULE, CHILE", Region.Maule },
+					{ "OFF COAST OF O`HIGGINS, CHILE", Region.OHiggins },
+					{ "OFF COAST OF TARAPACA, CHILE", Region.Tarapaca },
+					{ "OFF COAST OF VALPARAISO, CHILE", Region.Valparaiso },
+					{ "OFFSHORE ANTOFAGASTA, CHILE", Region.Antofagasta },
+					{ "OFFSHORE ARAUCANIA, CHILE", Region.Araucania },
+					{ "OFFSHORE ATACAMA, CHILE", Region.Atacama },
+					{ "OFFSHORE BIO-BIO, CHILE", Region.Biobio },
+					{ "OFFSHORE COQUIMBO, CHILE", Region.Coquimbo },
+					{ "OFFSHORE LOS LAGOS, CHILE", Region.LosLagos },
+					{ "OFFSHORE MAULE, CHILE", Region.Maule },
+					{ "OFFSHORE O`HIGGINS, CHILE", Region.OHiggins },
+					{ "OFFSHORE TARAPACA, CHILE", Region.Tarapaca },
+					{ "OFFSHORE VALPARAISO, CHILE", Region.Valparaiso },
+					{ "REGION METROPOLITANA, CHILE", Region.Metropolitana },
+					{ "TARAPACA, CHILE", Region.Tarapaca },
+					{ "VALPARAISO, CHILE", Region.Valparaiso },
+					/*
+					 * Aliases
+					 */
+					{ "O`Higgins", Region.OHiggins },
+					{ "Libertador O`Higgins", Region.OHiggins },
+					{ "Region Metropolitana", Region.Metropolitana },
+					{ "Antarctica Chilena", Region.Magallanes },
+					{ "La Araucania", Region.Araucania },
+					{ "Arica", Region.Arica_y_Parinacota },
+					{ "Parinacota", Region.Arica_y_Parinacota },
+					/*
+					 * Case and surrounding blanks do not matter
+					 */
+					{ "offshore bio-bio, chile", Region.Biobio },
+					{ "  Los Rios, Chile ", Region.LosRios } }));
+
+			for (Region r : Region.values()) {
+				labels.add(new Object[] { r.name(), r });
+				labels.add(new Object[] { r.getDisplayName(), r });
+			}
+			return labels;
+		}
+
+		private final String label;
+		private final Region region;
+
+		public Labels(String label, Region region) {
+			this.label = label;
+			this.region = region;
+		}
+
+		@Test
+		public void resolves() throws UnknownRegionException {
+			assertEquals(region, Region.getRegion(label));
+			/*
+			 * Memoised label resolves the same
+			 */
+			assertEquals(region, Region.getRegion(label));
+		}
+
+	}
+
+	public static class Unknown {
+
+		/*
+		 * Part of the feed filter, but not a region of Chile, parser skips it
+		 */
+		@Test(expected = UnknownRegionException.class)
+		public void rejectsWestChileRise() throws UnknownRegionException {
+			Region.getRegion("WEST CHILE RISE");
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Transform based autocorrelation agrees with the direct O(n^2) sums of the
+ * original Holt-Winters predictor, on noise, on periodic series and on small
+ * integer counts full of exact ties
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class AutocorrelationTest {
+
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void coefficientsMatchDirectSums() {
+		Random random = new Random(5);
+		for (int count = 2; count <= 300; count += 7) {
+			double[] values = noise(random, count);
+			double mean = mean(values);
+			int maxLag = count - 1;
+
+			double[] r = Autocorrelation.compute(values, count, mean, maxLag);
+			assertEquals(maxLag + 1, r.length);
+			for (int k = 0; k <= maxLag; k++) {
+				assertEquals("count " + count + ", lag " + k,
+						r(values, count, mean, k), r[k], DELTA);
+			}
+		}
+	}
+
+	@Test
+	public void seasonLengthMatchesDirectSearch() {
+		Random random = new Random(17);
+		for (int count = 1; count <= 400; count += 3) {
+			double[][] series = { noise(random, count),
+					periodic(random, count, 1 + random.nextInt(12)),
+					counts(random, count) };
+			for (double[] values : series) {
+				double mean = mean(values);
+				assertEquals("count " + count, seasonLength(values, count,
+						mean), Autocorrelation.seasonLength(values, count, mean,
+						count / 2));
+			}
+		}
+	}
+
+	@Test
+	public void onlyFirstValuesAreUsed() {
+		double[] values = periodic(new Random(3), 120, 8);
+		double[] padded = new double[200];
+		System.arraycopy(values, 0, padded, 0, values.length);
+		for (int i = values.length; i < padded.length; i++) {
+			padded[i] = 1000;
+		}
+		double mean = mean(values);
+
+		assertEquals(seasonLength(values, 120, mean),
+				Autocorrelation.seasonLength(padded, 120, mean, 60));
+	}
+
+	@Test
+	public void constantSeries() {
+		double[] values = { 4, 4, 4, 4, 4, 4 };
+
+		assertTrue(Double.isNaN(Autocorrelation.compute(values, 6, 4, 3)[1]));
+		assertEquals(1, Autocorrelation.seasonLength(values, 6, 4, 3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void lagTooLarge() {
+		Autocorrelation.compute(new double[] { 1, 2, 3 }, 3, 2, 3);
+	}
+
+	/* private members goes below */
+
+	/*
+	 * Season length search of the original predictor
+	 */
+	private static int seasonLength(double[] values, int count, double mean) {
+		double maxVal = -1D;
+		int maxK = 1;
+		for (int k = 1; k <= count / 2; k++) {
+			double corr = r(values, count, mean, k);
+			if (corr > maxVal) {
+				maxVal = corr;
+				maxK = k;
+			}
+		}
+		return maxK;
+	}
+
+	private static double r(double[] values, int count, double mean, int k) {
+		double sumTop = 0.0D;
+		double sumBottom = 0.0D;
+		for (int i = 0; i < count - k; i++) {
+			double deviation = values[i] - mean;
+			sumTop += deviation * (values[i + k] - mean);
+			sumBottom += deviation * deviation;
+		}
+		return sumBottom == 0.0D ? Double.NaN : sumTop / sumBottom;
+	}
+
+	private static double mean(double[] values) {
+		double sum = 0;
+		for (double value : values) {
+			sum += value;
+		}
+		return values.length == 0 ? 0 : sum / values.length;
+	}
+
+	private static double[] noise(Random random, int count) {
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = random.nextGaussian() * 10;
+		}
+		return values;
+	}
+
+	private static double[] periodic(Random random, int count, int period) {
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = 20 + 5 * Math.sin(2 * Math.PI * i / period)
+					+ random.nextGaussian();
+		}
+		return values;
+	}
+
+	/*
+	 * Daily event counts, a handful of distinct values
+	 */
+	private static double[] counts(Random random, int count) {
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = random.nextInt(3);
+		}
+		return values;
+	}
+
+}
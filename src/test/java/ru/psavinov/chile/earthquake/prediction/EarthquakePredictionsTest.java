@@ -0,0 +1,152 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.psavinov.chile.earthquake.EarthquakeBase;
+import ru.psavinov.chile.earthquake.Region;
+import ru.psavinov.chile.earthquake.exception.PredictionException;
+
+/**
+ * Batch predictions and forecasts of all regions, run in parallel on one
+ * catalog pass, equal the ones made region by region
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class EarthquakePredictionsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String home;
+	private EarthquakeBase base;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		home = System.getProperty("user.home");
+		System.setProperty("user.home", folder.getRoot().getPath());
+		base = new EarthquakeBase(false);
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+		System.setProperty("user.home", home);
+	}
+
+	@Test
+	public void predictionsEqualSingleRegion() throws InterruptedException {
+		long start = System.currentTimeMillis();
+		Map<Region, EarthquakePrediction> predictions = EarthquakePredictor
+				.getPredictions(base, executor);
+
+		assertFalse(predictions.isEmpty());
+		for (Region r : Region.values()) {
+			EarthquakePrediction single = EarthquakePredictor
+					.getPredictionByRegion(base, r);
+			EarthquakePrediction batch = predictions.get(r);
+			if (single == null) {
+				assertNull(r.name(), batch);
+				continue;
+			}
+			assertNotNull(r.name(), batch);
+			assertEquals(r.name(), single.getMagnitude(), batch
+					.getMagnitude(), 0.0D);
+			assertTrue(batch.getDateTime().getTime() > start);
+		}
+	}
+
+	@Test
+	public void forecastsEqualSingleRegion() throws InterruptedException {
+		Map<Region, ForecastHorizon> forecasts = EarthquakePredictor
+				.getForecasts(base, executor, null, 3, 0.95);
+
+		assertFalse(forecasts.isEmpty());
+		for (Region r : Region.values()) {
+			ForecastHorizon single;
+			try {
+				single = EarthquakePredictor.getForecastByRegion(base, r, 3,
+						0.95);
+			} catch (PredictionException e) {
+				assertNull(r.name(), forecasts.get(r));
+				continue;
+			}
+			assertHorizon(r, single, forecasts.get(r));
+		}
+	}
+
+	@Test
+	public void tunedPredictionsEqualSequentialTuning()
+			throws InterruptedException {
+		long now = System.currentTimeMillis();
+		Map<Region, EarthquakePrediction> predictions = EarthquakePredictor
+				.getPredictions(base, executor, new HoltWintersTuner(executor,
+						null));
+
+		HoltWintersTuner tuner = new HoltWintersTuner(executor, null);
+		for (Region r : Region.values()) {
+			TimeSeries series = EarthquakePredictor.series(base.getCatalog(),
+					r);
+			EarthquakePrediction single = EarthquakePredictor.predict(r,
+					series, tuner.tune(r, series), now);
+			EarthquakePrediction batch = predictions.get(r);
+			if (single == null) {
+				assertNull(r.name(), batch);
+				continue;
+			}
+			assertNotNull(r.name(), batch);
+			assertEquals(r.name(), single.getMagnitude(), batch
+					.getMagnitude(), 0.0D);
+		}
+	}
+
+	@Test
+	public void executorDoesNotChangeResults() throws InterruptedException {
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			Map<Region, ForecastHorizon> expected = EarthquakePredictor
+					.getForecasts(base, single, null, 5, 0.9);
+			Map<Region, ForecastHorizon> actual = EarthquakePredictor
+					.getForecasts(base, executor, null, 5, 0.9);
+
+			assertEquals(expected.keySet(), actual.keySet());
+			for (Region r : expected.keySet()) {
+				assertHorizon(r, expected.get(r), actual.get(r));
+			}
+		} finally {
+			single.shutdown();
+		}
+	}
+
+	/* private members goes below */
+
+	private static void assertHorizon(Region r, ForecastHorizon expected,
+			ForecastHorizon actual) {
+		assertNotNull(r.name(), actual);
+		assertEquals(r.name(), expected.size(), actual.size());
+		assertEquals(expected.getLevel(), actual.getLevel(), 0.0D);
+		for (int step = 0; step < expected.size(); step++) {
+			assertEquals(expected.getTime(step), actual.getTime(step));
+			assertEquals(expected.getValue(step), actual.getValue(step), 0.0D);
+			assertEquals(expected.getLower(step), actual.getLower(step), 0.0D);
+			assertEquals(expected.getUpper(step), actual.getUpper(step), 0.0D);
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import ru.psavinov.chile.earthquake.EarthquakeBase;
+import ru.psavinov.chile.earthquake.EarthquakeCatalog;
+import ru.psavinov.chile.earthquake.EmscParser;
+import ru.psavinov.chile.earthquake.Region;
+import ru.psavinov.chile.earthquake.exception.PredictionException;
+
+/**
+ * Next earthquake magnitude of every region on the bundled base, with default
+ * parameters. Guards prediction output against unnoticed changes, null stands
+ * for a region which could not be predicted.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+@RunWith(Parameterized.class)
+public class EarthquakePredictorTest {
+
+	/**
+	 * 2026-01-01 00:00:00 UTC
+	 */
+	private static final long NOW = 1767225600000L;
+
+	private static EarthquakeCatalog catalog;
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> regions() {
+		return Arrays.asList(new Object[][] { { Region.Tarapaca, 2.5 },
+				{ Region.Antofagasta, 5.2 }, { Region.Atacama, 3.1 },
+				{ Region.Coquimbo, 3.6 }, { Region.Valparaiso, 6.5 },
+				{ Region.OHiggins, null }, { Region.Maule, 4.7 },
+				{ Region.Biobio, 2.8 }, { Region.Araucania, 5.0 },
+				{ Region.LosLagos, 4.7 }, { Region.Aysen, 5.1 },
+				{ Region.Magallanes, null }, { Region.Metropolitana, 1.4 },
+				{ Region.LosRios, null }, { Region.Arica_y_Parinacota, null } });
+	}
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		catalog = new EarthquakeCatalog();
+		InputStream stream = EarthquakeBase.class
+				.getResourceAsStream(EarthquakeBase.RESOURCE_BASE);
+		try {
+			new EmscParser(catalog).parse(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	private final Region region;
+	private final Double magnitude;
+
+	public EarthquakePredictorTest(Region region, Double magnitude) {
+		this.region = region;
+		this.magnitude = magnitude;
+	}
+
+	@Test
+	public void predictsRegion() throws PredictionException {
+		TimeSeries series = EarthquakePredictor.series(catalog, region);
+		EarthquakePrediction prediction = EarthquakePredictor.predict(region,
+				series, HoltWintersParameters.DEFAULT, NOW);
+
+		if (magnitude == null) {
+			assertNull(prediction);
+			return;
+		}
+		assertEquals(magnitude, prediction.getMagnitude(), 0.0D);
+		/*
+		 * Plausible magnitude, never above the strongest earthquake seen
+		 */
+		assertTrue(prediction.getMagnitude() > 0
+				&& prediction.getMagnitude() <= HoltWintersPredictor.round(series
+						.getMaximum()));
+		assertTrue(prediction.getDateTime().getTime() > NOW);
+
+		/*
+		 * Horizon starts with the predicted value
+		 */
+		HoltWintersParameters p = HoltWintersParameters.DEFAULT;
+		ForecastHorizon horizon = new HoltWintersPredictor(series, p.getAlpha(),
+				p.getBeta(), p.getGamma(), p.getWindow()).forecast(3, 0.95);
+		assertEquals(prediction.getMagnitude(), horizon.getValue(0), 0.0D);
+		for (int step = 0; step < horizon.size(); step++) {
+			assertTrue(horizon.getLower(step) >= 0);
+			assertTrue(horizon.getLower(step) <= horizon.getValue(step)
+					&& horizon.getValue(step) <= horizon.getUpper(step));
+		}
+	}
+
+}
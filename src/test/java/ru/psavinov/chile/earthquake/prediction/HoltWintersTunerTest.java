@@ -0,0 +1,101 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.psavinov.chile.earthquake.Region;
+
+/**
+ * Tuned parameters carry the season length they were scored with. Period of
+ * the test series changes from 6 to 9 values in its scored part, so season
+ * length of the values before the scored ones differs from the one of the
+ * whole series.
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class HoltWintersTunerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ExecutorService executor;
+	private TimeSeries series;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(2);
+
+		Random random = new Random(11);
+		int count = 600;
+		long[] times = new long[count];
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++) {
+			int season = i < count / 2 ? 6 : 9;
+			times[i] = i * 3600000L;
+			values[i] = 4 + Math.sin(2 * Math.PI * i / season) + 0.2
+					* random.nextGaussian();
+		}
+		series = new TimeSeries(times, values);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void seasonLengthIsTheScoredOne() throws InterruptedException {
+		HoltWintersParameters parameters = new HoltWintersTuner(executor, null)
+				.tune(series);
+
+		double[] values = series.values();
+		int from = values.length
+				- Math.min(HoltWintersTuner.EVALUATED, values.length / 2);
+		assertEquals(HoltWintersTuner.seasonLength(values, from),
+				parameters.getSeasonLen());
+		assertTrue(parameters.getSeasonLen() > 0);
+		assertTrue(parameters.getSeasonLen() != new HoltWintersPredictor(
+				series, parameters.getAlpha(), parameters.getBeta(),
+				parameters.getGamma(), parameters.getWindow()).getSeasonLen());
+
+		HoltWintersPredictor predictor = new HoltWintersPredictor(series,
+				parameters.getAlpha(), parameters.getBeta(),
+				parameters.getGamma(), parameters.getWindow(),
+				parameters.getSeasonLen());
+		assertEquals(parameters.getSeasonLen(), predictor.getSeasonLen());
+	}
+
+	@Test
+	public void cacheKeepsSeasonLength() throws InterruptedException {
+		File cacheFile = new File(folder.getRoot(), "parameters.properties");
+		HoltWintersParameters tuned = new HoltWintersTuner(executor, cacheFile)
+				.tune(Region.Biobio, series);
+		HoltWintersParameters cached = new HoltWintersTuner(executor,
+				cacheFile).tune(Region.Biobio, series);
+
+		assertEquals(tuned, cached);
+		assertEquals(tuned.getSeasonLen(), cached.getSeasonLen());
+	}
+
+	@Test
+	public void shortSeriesGetsDefaults() throws InterruptedException {
+		TimeSeries few = new TimeSeries(new long[] { 0, 1 }, new double[] { 1,
+				2 });
+		assertEquals(HoltWintersParameters.DEFAULT, new HoltWintersTuner(
+				executor, null).tune(few));
+		assertEquals(0, HoltWintersParameters.DEFAULT.getSeasonLen());
+	}
+
+}
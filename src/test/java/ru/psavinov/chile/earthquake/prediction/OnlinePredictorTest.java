@@ -0,0 +1,90 @@
+package ru.psavinov.chile.earthquake.prediction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ru.psavinov.chile.earthquake.EarthquakeBase;
+import ru.psavinov.chile.earthquake.EarthquakeCatalog;
+import ru.psavinov.chile.earthquake.EmscParser;
+import ru.psavinov.chile.earthquake.Region;
+
+/**
+ * Online models seeded from the bundled base agree with the batch predictor
+ * on season length, predictions stay within the observed magnitudes
+ *
+ * @author Pavel Savinov // savinovpa@gmail.com
+ *
+ */
+public class OnlinePredictorTest {
+
+	private static EarthquakeCatalog catalog;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		catalog = new EarthquakeCatalog();
+		InputStream stream = EarthquakeBase.class
+				.getResourceAsStream(EarthquakeBase.RESOURCE_BASE);
+		try {
+			new EmscParser(catalog).parse(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void seasonLengthMatchesBatchPredictor() {
+		OnlinePredictor predictor = new OnlinePredictor(4, 0.7, 0.7, 0.7);
+		predictor.add(catalog);
+
+		for (Region r : Region.values()) {
+			TimeSeries series = EarthquakePredictor.series(catalog, r);
+			if (series.size() == 0) {
+				assertNull(r.name(), predictor.getModel(r));
+				continue;
+			}
+			assertEquals(r.name(), new HoltWintersPredictor(series, 0.7, 0.7,
+					0.7, 80).getSeasonLen(), predictor.getModel(r)
+					.getSeasonLen());
+		}
+	}
+
+	@Test
+	public void predictionsAreBoundedAndRounded() {
+		OnlinePredictor predictor = new OnlinePredictor(4, 0.7, 0.7, 0.7);
+		predictor.add(catalog);
+
+		int predicted = 0;
+		for (Region r : Region.values()) {
+			EarthquakePrediction prediction = predictor.getPrediction(r);
+			if (prediction == null) {
+				continue;
+			}
+			double magnitude = prediction.getMagnitude();
+			assertTrue(r.name(), magnitude > 0
+					&& magnitude <= HoltWintersPredictor.round(EarthquakePredictor
+							.series(catalog, r).getMaximum()));
+			assertEquals(r.name(), HoltWintersPredictor.round(magnitude),
+					magnitude, 0.0D);
+			predicted++;
+		}
+		assertTrue(predicted > 0);
+	}
+
+	@Test
+	public void regionWithoutHistoryUsesDefaultSeasonLength() {
+		OnlinePredictor predictor = new OnlinePredictor(4, 0.7, 0.7, 0.7);
+		predictor.add(new EarthquakeCatalog());
+		assertNull(predictor.getPrediction(Region.Biobio));
+
+		predictor.add(catalog.get(0));
+		assertEquals(4, predictor.getModel(catalog.get(0).getRegion())
+				.getSeasonLen());
+	}
+
+}